@@ -91,6 +91,7 @@ CREATE TABLE Vehicle_Detail
     odo              INT,
     picture          NVARCHAR(MAX),
     [status]         NVARCHAR(50),
+    version          BIGINT       NOT NULL DEFAULT 0, -- @Version (khoá lạc quan)
     CONSTRAINT FK_VDetail_Vehicle FOREIGN KEY (vehicle_id) REFERENCES Vehicle_Model (vehicle_id),
     CONSTRAINT FK_VDetail_Station FOREIGN KEY (station_id) REFERENCES Station (station_id)
 );
@@ -126,6 +127,7 @@ CREATE TABLE Booking
     actual_return_time   DATETIME2,
     deposit              DECIMAL(10, 2) NOT NULL,
     [status]             NVARCHAR(50),
+    version              BIGINT         NOT NULL DEFAULT 0, -- @Version (khoá lạc quan)
     CONSTRAINT FK_Booking_Station FOREIGN KEY (station_id) REFERENCES Station (station_id),
     CONSTRAINT FK_Booking_Renter FOREIGN KEY (renter_id) REFERENCES [User] (user_id),
     CONSTRAINT FK_Booking_Vehicle FOREIGN KEY (vehicle_model_id) REFERENCES Vehicle_Model (vehicle_id),
@@ -252,6 +254,74 @@ CREATE TABLE Inspection_After
     CONSTRAINT FK_Inspection_After_Staff FOREIGN KEY (staff_id) REFERENCES [User] (user_id)
 );
 
+-- ============================
+-- (18) Daily_Revenue
+-- Tổng hợp doanh thu theo ngày + trạm, cộng dồn khi lưu Payment
+-- ============================
+CREATE TABLE Daily_Revenue
+(
+    revenue_date  DATE           NOT NULL,
+    station_id    INT            NOT NULL,
+    total         DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    payment_count INT            NOT NULL DEFAULT 0,
+    CONSTRAINT PK_Daily_Revenue PRIMARY KEY (revenue_date, station_id),
+    CONSTRAINT FK_Daily_Revenue_Station FOREIGN KEY (station_id) REFERENCES Station (station_id)
+);
+
+-- Backfill cho DB đã có dữ liệu Payment (chạy 1 lần khi nâng cấp)
+INSERT INTO Daily_Revenue (revenue_date, station_id, total, payment_count)
+SELECT CAST(p.paid_at AS DATE), b.station_id, SUM(p.total), COUNT(*)
+FROM Payment p
+         JOIN Booking b ON b.booking_id = p.booking_id
+GROUP BY CAST(p.paid_at AS DATE), b.station_id;
+
+-- ============================
+-- (19) Staff_Performance
+-- Tổng hợp hiệu suất nhân viên, tính lại khi có Inspection / Contract / Review / trả xe + đối soát định kỳ
+-- ============================
+CREATE TABLE Staff_Performance
+(
+    staff_id       INT       NOT NULL PRIMARY KEY,
+    handovers      INT       NOT NULL DEFAULT 0,
+    contract_count INT       NOT NULL DEFAULT 0,
+    on_time_count  INT       NOT NULL DEFAULT 0,
+    rating_count   INT       NOT NULL DEFAULT 0,
+    rating_sum     INT       NOT NULL DEFAULT 0,
+    rating_good    INT       NOT NULL DEFAULT 0,
+    updated_at     DATETIME2 NOT NULL DEFAULT SYSUTCDATETIME(),
+    CONSTRAINT FK_Staff_Performance_User FOREIGN KEY (staff_id) REFERENCES [User] (user_id)
+);
+
+-- Backfill (ứng dụng cũng tự đối soát lại lúc khởi động)
+INSERT INTO Staff_Performance (staff_id, handovers, contract_count, on_time_count, rating_count, rating_sum, rating_good)
+SELECT u.user_id,
+       (SELECT COUNT(*) FROM Inspection i WHERE i.staff_id = u.user_id),
+       (SELECT COUNT(*) FROM Contract c WHERE c.staff_id = u.user_id),
+       (SELECT COUNT(*)
+        FROM Contract c
+                 JOIN Booking b ON b.booking_id = c.booking_id
+        WHERE c.staff_id = u.user_id
+          AND b.actual_return_time <= b.expected_return_time),
+       (SELECT COUNT(r.rating) FROM Contract c JOIN Review r ON r.booking_id = c.booking_id WHERE c.staff_id = u.user_id),
+       (SELECT ISNULL(SUM(r.rating), 0)
+        FROM Contract c
+                 JOIN Review r ON r.booking_id = c.booking_id
+        WHERE c.staff_id = u.user_id),
+       (SELECT COUNT(*)
+        FROM Contract c
+                 JOIN Review r ON r.booking_id = c.booking_id
+        WHERE c.staff_id = u.user_id
+          AND r.rating >= 4)
+FROM [User] u
+WHERE u.role = 'STAFF';
+
+-- Nâng cấp DB cũ (cột version cho khoá lạc quan VehicleDetail / Booking):
+-- ALTER TABLE Vehicle_Detail ADD version BIGINT NOT NULL DEFAULT 0;
+-- ALTER TABLE Booking ADD version BIGINT NOT NULL DEFAULT 0;
+
+-- Index cho phân trang keyset danh sách nhân viên (ORDER BY full_name, user_id)
+CREATE INDEX IX_User_Role_FullName ON [User] (role, full_name, user_id);
+
 
 -- ========================
 -- 1. User
@@ -270,25 +340,28 @@ GO
 INSERT INTO Station (station_name, [address], [location])
 VALUES (N'Cho thuê Xe điện VinFast - Thảo Điền',
         N'Hầm gửi xe B3 - Vincom Mega Mall, 161 Võ Nguyên Giáp, Thảo Điền, Thủ Đức, Hồ Chí Minh',
-        N'10.801,-106.730'),
+        N'10.801,106.730'),
        (N'Cho thuê Xe điện VinFast - Tân Cảng',
         N'208 Nguyễn Hữu Cảnh, Vinhomes Tân Cảng, Bình Thạnh, Hồ Chí Minh',
-        N'10.793,-106.721'),
+        N'10.793,106.721'),
        (N'Cho thuê Xe điện VinFast - Quận 1',
         N'Tầng hầm B2 - Vincom Đồng Khởi, 70 Lê Thánh Tôn, Quận 1, TP. Hồ Chí Minh',
-        N'10.776,-106.700'),
+        N'10.776,106.700'),
        (N'Cho thuê Xe điện VinFast - Quận 7',
         N'Crescent Mall, 101 Tôn Dật Tiên, Tân Phú, Quận 7, TP. Hồ Chí Minh',
-        N'10.732,-106.721'),
+        N'10.732,106.721'),
        (N'Cho thuê Xe điện VinFast - Gò Vấp',
         N'Trung tâm thương mại Emart, 366 Phan Văn Trị, Gò Vấp, TP. Hồ Chí Minh',
-        N'10.839,-106.667'),
+        N'10.839,106.667'),
        (N'Cho thuê Xe điện VinFast - Bình Tân',
         N'AEON Mall Bình Tân, 1 Đường số 17A, Bình Trị Đông B, Bình Tân, TP. Hồ Chí Minh',
-        N'10.755,-106.611'),
+        N'10.755,106.611'),
        (N'Cho thuê Xe điện VinFast - Phú Nhuận',
         N'Co.opmart Nguyễn Kiệm, 571 Nguyễn Kiệm, Phú Nhuận, TP. Hồ Chí Minh',
-        N'10.801,-106.679');
+        N'10.801,106.679');
+
+-- Nâng cấp DB cũ (seed trước đây lưu kinh độ âm, TP.HCM là kinh độ Đông):
+-- UPDATE Station SET [location] = REPLACE([location], ',-', ',') WHERE [location] LIKE '%,-%';
 GO
 
 -- ========================
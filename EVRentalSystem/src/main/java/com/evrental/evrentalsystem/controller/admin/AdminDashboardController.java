@@ -4,8 +4,11 @@ import com.evrental.evrentalsystem.response.admin.*;
 import com.evrental.evrentalsystem.response.vehicle.FixingVehicleResponse;
 import com.evrental.evrentalsystem.service.AdminDashboardService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("api/admin")
@@ -51,10 +54,26 @@ public class AdminDashboardController {
         return dashboard.getActivityFeed(limit);
     }
 
+    //API: http://localhost:8084/EVRentalSystem/api/admin/overview/export?from=2024-01-01&to=2024-12-31&format=xlsx
+    // format=csv: sheet=revenue|stations|bookings (mặc định revenue); format=xlsx: cả 3 sheet
     @GetMapping("/overview/export")
-    public ResponseEntity<byte[]> exportOverview(@RequestParam(required = false) String from,
-                                                 @RequestParam(required = false) String to,
-                                                 @RequestParam(required = false, defaultValue = "csv") String format) {
-        return dashboard.exportOverview(from, to, format);
+    public ResponseEntity<StreamingResponseBody> exportOverview(@RequestParam(required = false) String from,
+                                                                @RequestParam(required = false) String to,
+                                                                @RequestParam(required = false, defaultValue = "csv") String format,
+                                                                @RequestParam(required = false) String sheet) {
+        return dashboard.exportOverview(from, to, format, sheet);
+    }
+
+    //API: http://localhost:8084/EVRentalSystem/api/admin/overview/cache-stats
+    @GetMapping("/overview/cache-stats")
+    public DashboardCacheStatsResponse getCacheStats() {
+        return dashboard.getCacheStats();
+    }
+
+    // SSE: event "activity" (ActivityFeedResponse.Activity) và "kpi" (OverviewMetricsResponse)
+    //API: http://localhost:8084/EVRentalSystem/api/admin/overview/stream
+    @GetMapping(value = "/overview/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        return dashboard.streamOverview();
     }
 }
@@ -27,9 +27,11 @@ public class StaffAdminController {
             @RequestParam(required = false) String position,
             @RequestParam(required = false) String status,
             @RequestParam(defaultValue = "1") int page,
-            @RequestParam(defaultValue = "20") int size
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "true") boolean includeKpis
     ) {
-        return staffAdminService.getStaffList(search, stationId, position, status, page, size);
+        return staffAdminService.getStaffList(search, stationId, position, status, page, size, cursor, includeKpis);
     }
 
     @GetMapping("/{id}")
@@ -13,10 +13,14 @@ import com.evrental.evrentalsystem.response.admin.GetAllUserResponse;
 import com.evrental.evrentalsystem.response.admin.GetRenterDetailResponse;
 import com.evrental.evrentalsystem.service.AdminService;
 import com.evrental.evrentalsystem.service.UserService;
-import com.evrental.evrentalsystem.util.ImageUtil;
+import com.evrental.evrentalsystem.storage.ImageResponder;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.util.List;
@@ -28,6 +32,7 @@ import java.util.Optional;
 public class UserManagementController {
 
     private final AdminService adminService;
+    private final ImageResponder imageResponder;
 
     //API: http://localhost:8084/EVRentalSystem/api/user-management/renters
     @GetMapping("/renters")
@@ -56,9 +61,11 @@ public class UserManagementController {
     }
 
     @GetMapping("/{userId}/renter-detail/image")
-    public ResponseEntity<byte[]> getRenterDetailImage(
+    public ResponseEntity<Resource> getRenterDetailImage(
             @PathVariable Integer userId,
-            @RequestParam(name = "type", defaultValue = "cccd_front") String type) {
+            @RequestParam(name = "type", defaultValue = "cccd_front") String type,
+            @RequestParam(name = "v", required = false) String version,
+            WebRequest request) {
 
         Optional<RenterDetail> opt = adminService.findByUserId(userId);
         if (opt.isEmpty()) return ResponseEntity.notFound().build();
@@ -84,11 +91,7 @@ public class UserManagementController {
                 return ResponseEntity.badRequest().build();
         }
 
-        byte[] bytes = adminService.decodeImage(base64);
-        if (bytes == null || bytes.length == 0) return ResponseEntity.notFound().build();
-
-        String mime = adminService.detectMime(bytes);
-        return ImageUtil.buildImageResponse(bytes, mime);
+        return imageResponder.serveVersioned(base64, version, false, request);
     }
 
     //API: http://localhost:8084/EVRentalSystem/api/user-management/{userId}/renter-detail
@@ -128,6 +131,9 @@ public class UserManagementController {
             }
             Booking updatedBooking = adminService.updateRenterBooking(request);
             return ResponseEntity.ok(updatedBooking);
+        } catch (OptimisticLockingFailureException e) {
+            // Xe / booking vừa bị thao tác khác cập nhật, đã thử lại vẫn xung đột
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Dữ liệu vừa được cập nhật, vui lòng thử lại");
         } catch (RuntimeException e) {
             // Trả về lỗi 400 cho các lỗi nghiệp vụ (sai trạng thái, xe bận...)
             return ResponseEntity.badRequest().body(e.getMessage());
@@ -9,6 +9,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.*;
+import com.evrental.evrentalsystem.service.FleetInventory;
 import com.evrental.evrentalsystem.service.VehicleAdminService;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -19,6 +20,7 @@ import org.springframework.data.domain.Pageable;
 public class VehicleAdminController {
 
     private final VehicleDetailRepository vehicleDetailRepository;
+    private final FleetInventory fleetInventory;
 
     private final VehicleAdminService service;
 
@@ -34,18 +36,21 @@ public class VehicleAdminController {
         Integer stationId = (Integer) payload.get("stationId");
         Map<VehicleStatus, Long> stats = new LinkedHashMap<>();
 
-        if (stationId == null || stationId == 0) {
-            stats.put(VehicleStatus.AVAILABLE, vehicleDetailRepository.countByStatus(VehicleStatus.AVAILABLE));
-            stats.put(VehicleStatus.RENTED, vehicleDetailRepository.countByStatus(VehicleStatus.RENTED));
-            stats.put(VehicleStatus.RENTED, vehicleDetailRepository.countByStatus(VehicleStatus.RENTED));
-        } else {
-            stats.put(VehicleStatus.AVAILABLE, vehicleDetailRepository.countByStatus(VehicleStatus.AVAILABLE));
-            stats.put(VehicleStatus.RENTED, vehicleDetailRepository.countByStatus(VehicleStatus.RENTED));
-            stats.put(VehicleStatus.RENTED, vehicleDetailRepository.countByStatus(VehicleStatus.RENTED));
-        }
+        // stationId = 0 / null: toàn hệ thống
+        Integer scope = stationId == null || stationId == 0 ? null : stationId;
+        stats.put(VehicleStatus.AVAILABLE, countByStatus(scope, VehicleStatus.AVAILABLE));
+        stats.put(VehicleStatus.RENTED, countByStatus(scope, VehicleStatus.RENTED));
 
         return ResponseEntity.ok(stats);
     }
+
+    private long countByStatus(Integer stationId, VehicleStatus status) {
+        if (fleetInventory.isReady()) return fleetInventory.count(stationId, null, status);
+        return stationId == null
+                ? vehicleDetailRepository.countByStatus(status)
+                : vehicleDetailRepository.countByStationIdAndStatus(stationId, status);
+    }
+
     @GetMapping("/vehicles")
 
     public ResponseEntity<?> listVehicles(
@@ -1,16 +1,19 @@
 package com.evrental.evrentalsystem.controller.admin;
 
-import com.evrental.evrentalsystem.entity.VehicleDetail;
-import com.evrental.evrentalsystem.entity.VehicleModel;
+import com.evrental.evrentalsystem.repository.projection.VehicleModelCardProjection;
 import com.evrental.evrentalsystem.enums.VehicleStatus;
 import com.evrental.evrentalsystem.request.*;
 import com.evrental.evrentalsystem.response.admin.*;
 import com.evrental.evrentalsystem.service.VehicleManagementService;
-import com.evrental.evrentalsystem.util.ImageUtil;
+import com.evrental.evrentalsystem.storage.ImageCache;
+import com.evrental.evrentalsystem.storage.ImageResponder;
+import com.evrental.evrentalsystem.storage.ImageVariant;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.HashMap;
@@ -23,6 +26,8 @@ import java.util.Map;
 public class VehicleManagementController {
 
     private final VehicleManagementService vehicleManagementService;
+    private final ImageResponder imageResponder;
+    private final ImageCache imageCache;
 
     // <editor-fold desc="This is the section for vehicle detail management">
     //API: http://localhost:8084/EVRentalSystem/vehicle-management/vehicles
@@ -41,12 +46,16 @@ public class VehicleManagementController {
         return ResponseEntity.ok(resp);
     }
 
-    @GetMapping("/image/{vehicleDetailId}/*")
-    public ResponseEntity<byte[]> getVehicleDetailImage(@PathVariable Integer vehicleDetailId) {
-        VehicleDetail vd = vehicleManagementService.findVehicleDetailEntity(vehicleDetailId);
-        byte[] bytes = ImageUtil.decodeBase64(vd.getPicture());
-        String mimeType = ImageUtil.detectImageMimeType(bytes);
-        return ImageUtil.buildImageResponse(bytes, mimeType);
+    // {version} = hash nội dung ảnh (xem getVehicleDetailById) nên URL cache được vĩnh viễn
+    // ?variant=thumbnail|card|full -> bản JPEG thu nhỏ sinh lúc upload; bỏ trống -> ảnh gốc
+    @GetMapping("/image/{vehicleDetailId}/{version}")
+    public ResponseEntity<Resource> getVehicleDetailImage(@PathVariable Integer vehicleDetailId,
+                                                          @PathVariable String version,
+                                                          @RequestParam(name = "variant", required = false) String variant,
+                                                          WebRequest request) {
+        return imageResponder.serveCached(ImageCache.Kind.VEHICLE_DETAIL, vehicleDetailId, version,
+                ImageVariant.parse(variant), true, request,
+                () -> vehicleManagementService.findVehicleDetailEntity(vehicleDetailId).getPicture());
     }
 
     //API: http://localhost:8084/EVRentalSystem/api/vehicle-management/{vehicleDetailId}/status
@@ -140,7 +149,7 @@ public class VehicleManagementController {
     //API: http://localhost:8084/EVRentalSystem/vehicle-management/models/brand-model
     @GetMapping("/models/brand-model")
     public ResponseEntity<List<Map<String, String>>> getBrandModelNames() {
-        List<VehicleModel> models = vehicleManagementService.findAllVehicleModels();
+        List<VehicleModelCardProjection> models = vehicleManagementService.findAllVehicleModels();
 
         List<Map<String, String>> response = models.stream()
                 .map(m -> {
@@ -154,12 +163,20 @@ public class VehicleManagementController {
         return ResponseEntity.ok(response);
     }
 
-    @GetMapping("/model-image/{modelId}/*")
-    public ResponseEntity<byte[]> getVehicleModelImage(@PathVariable Integer modelId) {
-        VehicleModel vd = vehicleManagementService.findVehicleModelEntity(modelId);
-        byte[] bytes = ImageUtil.decodeBase64(vd.getPicture());
-        String mimeType = ImageUtil.detectImageMimeType(bytes);
-        return ImageUtil.buildImageResponse(bytes, mimeType);
+    @GetMapping("/model-image/{modelId}/{version}")
+    public ResponseEntity<Resource> getVehicleModelImage(@PathVariable Integer modelId,
+                                                         @PathVariable String version,
+                                                         @RequestParam(name = "variant", required = false) String variant,
+                                                         WebRequest request) {
+        return imageResponder.serveCached(ImageCache.Kind.VEHICLE_MODEL, modelId, version,
+                ImageVariant.parse(variant), true, request,
+                () -> vehicleManagementService.findVehicleModelEntity(modelId).getPicture());
+    }
+
+    //API: http://localhost:8084/EVRentalSystem/vehicle-management/image-cache/stats
+    @GetMapping("/image-cache/stats")
+    public ImageCacheStatsResponse getImageCacheStats() {
+        return imageCache.stats();
     }
 
     //API: http://localhost:8084/EVRentalSystem/api/vehicle-management/create-model
@@ -206,10 +223,12 @@ public class VehicleManagementController {
 
     //API: http://localhost:8084/EVRentalSystem/vehicle-management/get-all-about-station
     @GetMapping("/get-all-about-station")
-    public ResponseEntity<GetAllAboutStationResponse> getAllAboutStation() {
+    public ResponseEntity<byte[]> getAllAboutStation() {
         try {
-            GetAllAboutStationResponse response = vehicleManagementService.getAllAboutStation();
-            return ResponseEntity.ok(response);
+            // JSON của GetAllAboutStationResponse đã serialize sẵn trong StationSnapshotCache
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(vehicleManagementService.getAllAboutStationJson());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
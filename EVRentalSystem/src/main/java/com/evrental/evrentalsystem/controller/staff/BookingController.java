@@ -9,6 +9,7 @@ import com.evrental.evrentalsystem.service.StaffService;
 import com.evrental.evrentalsystem.response.staff.BookingsInStationResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -64,6 +65,9 @@ public class BookingController {
 
             return ResponseEntity.ok(ApiResponse.success("Booking status updated successfully", null));
 
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error("Booking was modified concurrently, please retry", null));
         } catch (Exception e) {
             log.error("❌ Error updating booking status for id {}: {}", id, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -1,6 +1,7 @@
 package com.evrental.evrentalsystem.controller.user;
 
 import com.evrental.evrentalsystem.response.admin.TopStationsResponse;
+import com.evrental.evrentalsystem.response.vehicle.NearbyStationResponse;
 import com.evrental.evrentalsystem.response.vehicle.VehicleAtStationResponse;
 import com.evrental.evrentalsystem.service.StationService;
 import lombok.RequiredArgsConstructor;
@@ -36,6 +37,17 @@ public class StationController {
         return ResponseEntity.ok(models);
     }
 
+    //API tìm trạm gần nhất, có vehicleModelId thì chỉ lấy trạm còn xe trống của model đó
+    //http://localhost:8084/EVRentalSystem/api/stations/nearest?lat=10.78&lng=106.70&limit=5&vehicleModelId=1
+    @GetMapping("/nearest")
+    public ResponseEntity<List<NearbyStationResponse>> findNearestStations(
+            @RequestParam double lat,
+            @RequestParam double lng,
+            @RequestParam(defaultValue = "5") int limit,
+            @RequestParam(required = false) Integer vehicleModelId) {
+        return ResponseEntity.ok(stationService.findNearestStations(lat, lng, limit, vehicleModelId));
+    }
+
     @GetMapping
     public List<Map<String, Object>> listAll() {
         String sql = "SELECT station_id, station_name FROM Station ORDER BY station_name ASC";
@@ -8,22 +8,17 @@ import com.evrental.evrentalsystem.response.user.UpdateUserProfile;
 import com.evrental.evrentalsystem.response.user.UserLoginResponse;
 import com.evrental.evrentalsystem.response.user.UserResponse;
 import com.evrental.evrentalsystem.service.UserService;
+import com.evrental.evrentalsystem.storage.ImageResponder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.http.MediaType;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.http.*;
 
-import javax.imageio.ImageIO;
-import javax.imageio.ImageReader;
-import javax.imageio.stream.ImageInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Base64;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
 
@@ -34,6 +29,9 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ImageResponder imageResponder;
+
     @PostMapping(value = "/register", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<ApiResponse<UserResponse>> register(
             @RequestParam("username") String username,
@@ -103,90 +101,31 @@ public class UserController {
         }
     }
 
-    // --- Image endpoints: decode base64 and return bytes with proper Content-Type ---
+    // --- Image endpoints: stream ảnh từ BlobStore (hỗ trợ Range / Last-Modified) ---
     @GetMapping("/{userId}/renter-detail/cccd-front")
-    public ResponseEntity<byte[]> getCccdFront(@PathVariable Integer userId) {
-        return buildImageResponse(userService.getCccdFrontBase64(userId));
+    public ResponseEntity<Resource> getCccdFront(@PathVariable Integer userId,
+                                                 @RequestParam(name = "v", required = false) String version,
+                                                 WebRequest request) {
+        return buildImageResponse(userService.getCccdFrontImage(userId), version, request);
     }
 
     @GetMapping("/{userId}/renter-detail/cccd-back")
-    public ResponseEntity<byte[]> getCccdBack(@PathVariable Integer userId) {
-        return buildImageResponse(userService.getCccdBackBase64(userId));
+    public ResponseEntity<Resource> getCccdBack(@PathVariable Integer userId,
+                                                @RequestParam(name = "v", required = false) String version,
+                                                WebRequest request) {
+        return buildImageResponse(userService.getCccdBackImage(userId), version, request);
     }
 
     @GetMapping("/{userId}/renter-detail/driver-license")
-    public ResponseEntity<byte[]> getDriverLicense(@PathVariable Integer userId) {
-        return buildImageResponse(userService.getDriverLicenseBase64(userId));
-    }
-
-    // Helper to decode base64 and produce ResponseEntity<byte[]>
-    private ResponseEntity<byte[]> buildImageResponse(Optional<String> base64Opt) {
-        if (base64Opt.isEmpty() || base64Opt.get().isBlank()) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
-        }
-        try {
-            String base64Raw = base64Opt.get().trim();
-            // if stored with data URI prefix like "data:image/png;base64,...."
-            String mime = null;
-            if (base64Raw.startsWith("data:")) {
-                int comma = base64Raw.indexOf(',');
-                String meta = base64Raw.substring(5, comma); // image/png;base64
-                if (meta.contains(";")) {
-                    mime = meta.split(";")[0];
-                }
-                base64Raw = base64Raw.substring(comma + 1);
-            }
-
-            byte[] imageBytes = Base64.getDecoder().decode(base64Raw);
-
-            // If mime unknown, try to detect via ImageIO
-            if (mime == null) {
-                mime = detectImageMimeType(imageBytes); // e.g. "image/png" or null
-            }
-            if (mime == null) {
-                mime = "application/octet-stream";
-            }
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType(mime));
-            headers.setContentLength(imageBytes.length);
-            headers.setCacheControl(CacheControl.noCache());
-
-            return new ResponseEntity<>(imageBytes, headers, HttpStatus.OK);
-        } catch (IllegalArgumentException ex) {
-            // base64 decode error
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
-        } catch (Exception ex) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
-        }
+    public ResponseEntity<Resource> getDriverLicense(@PathVariable Integer userId,
+                                                     @RequestParam(name = "v", required = false) String version,
+                                                     WebRequest request) {
+        return buildImageResponse(userService.getDriverLicenseImage(userId), version, request);
     }
 
-    // Try to detect image format using ImageIO readers
-    private String detectImageMimeType(byte[] imageBytes) {
-        try (InputStream is = new ByteArrayInputStream(imageBytes);
-             ImageInputStream iis = ImageIO.createImageInputStream(is)) {
-
-            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
-            if (readers.hasNext()) {
-                ImageReader r = readers.next();
-                String format = r.getFormatName().toLowerCase(); // e.g. "png", "jpeg"
-                switch (format) {
-                    case "png":
-                        return "image/png";
-                    case "jpeg":
-                    case "jpg":
-                        return "image/jpeg";
-                    case "gif":
-                        return "image/gif";
-                    case "bmp":
-                        return "image/bmp";
-                    default:
-                        return "image/" + format;
-                }
-            }
-        } catch (IOException ignored) {
-        }
-        return null;
+    // Giấy tờ cá nhân: chỉ cache private; URL có ?v=<hash> thì immutable, không có thì revalidate bằng ETag
+    private ResponseEntity<Resource> buildImageResponse(Optional<String> image, String version, WebRequest request) {
+        return imageResponder.serveVersioned(image.orElse(null), version, false, request);
     }
 
     //API http://localhost:8084/EVRentalSystem/api/users/{userId}/profile
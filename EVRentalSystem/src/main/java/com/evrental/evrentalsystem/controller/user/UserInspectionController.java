@@ -6,14 +6,15 @@ import com.evrental.evrentalsystem.repository.InspectionAfterRepository;
 import com.evrental.evrentalsystem.repository.InspectionRepository;
 import com.evrental.evrentalsystem.request.UserUpdateInspectionStatusRequest;
 import com.evrental.evrentalsystem.service.InspectionService;
+import com.evrental.evrentalsystem.storage.ImageResponder;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.Value;
-import org.springframework.http.HttpHeaders;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.*;
 
@@ -24,6 +25,9 @@ public class UserInspectionController {
     private final InspectionService inspectionService;
     private final InspectionRepository inspectionRepository;
     private final InspectionAfterRepository inspectionAfterRepository;
+    private final ImageResponder imageResponder;
+
+    private static final CacheControl PICTURE_CACHE = CacheControl.noCache().cachePrivate();
     @Data
     public static class BookingIdRequest {
         private Integer bookingId;
@@ -75,7 +79,7 @@ public class UserInspectionController {
      * Trả ảnh từ base64 decode (dạng image/png hoặc jpeg)
      */
     @GetMapping("/{inspectionId}/picture")
-    public ResponseEntity<?> getInspectionPicture(@PathVariable Integer inspectionId) {
+    public ResponseEntity<?> getInspectionPicture(@PathVariable Integer inspectionId, WebRequest request) {
         try {
             Optional<Inspection> opt = inspectionRepository.findById(inspectionId);
             if (opt.isEmpty()) {
@@ -89,23 +93,8 @@ public class UserInspectionController {
                         .body(Map.of("message", "No picture available"));
             }
 
-            // Tách phần base64 (nếu có prefix data:image/...)
-            String picBase64 = inspection.getPicture();
-            int commaIdx = picBase64.indexOf(',');
-            String base64Pure = commaIdx >= 0 ? picBase64.substring(commaIdx + 1) : picBase64;
-
-            byte[] imageBytes = Base64.getDecoder().decode(base64Pure);
-
-            // Xác định content type nếu có prefix data:image/png;base64,...
-            String contentType = "image/png";
-            if (picBase64.startsWith("data:image/jpeg")) {
-                contentType = "image/jpeg";
-            }
-
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"inspection-" + inspectionId + ".png\"")
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(imageBytes);
+            // Stream từ BlobStore (hoặc base64 cũ chưa migrate), hỗ trợ Range / Last-Modified
+            return imageResponder.serve(inspection.getPicture(), PICTURE_CACHE, "inspection-" + inspectionId, request);
         } catch (Exception ex) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", ex.getMessage()));
@@ -113,7 +102,7 @@ public class UserInspectionController {
     }
 
     @GetMapping("/{inspectionAfterId}/picture-after")
-    public ResponseEntity<?> getInspectionPictureAfter(@PathVariable Integer inspectionAfterId) {
+    public ResponseEntity<?> getInspectionPictureAfter(@PathVariable Integer inspectionAfterId, WebRequest request) {
         try {
             Optional<InspectionAfter> opt = inspectionAfterRepository.findById(inspectionAfterId);
             if (opt.isEmpty()) {
@@ -127,23 +116,8 @@ public class UserInspectionController {
                         .body(Map.of("message", "No picture available"));
             }
 
-            // Tách phần base64 (nếu có prefix data:image/...)
-            String picBase64 = inspection.getPicture();
-            int commaIdx = picBase64.indexOf(',');
-            String base64Pure = commaIdx >= 0 ? picBase64.substring(commaIdx + 1) : picBase64;
-
-            byte[] imageBytes = Base64.getDecoder().decode(base64Pure);
-
-            // Xác định content type nếu có prefix data:image/png;base64,...
-            String contentType = "image/png";
-            if (picBase64.startsWith("data:image/jpeg")) {
-                contentType = "image/jpeg";
-            }
-
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"inspection-" + inspectionAfterId + ".png\"")
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(imageBytes);
+            // Stream từ BlobStore (hoặc base64 cũ chưa migrate), hỗ trợ Range / Last-Modified
+            return imageResponder.serve(inspection.getPicture(), PICTURE_CACHE, "inspection-" + inspectionAfterId, request);
         } catch (Exception ex) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", ex.getMessage()));
@@ -1,16 +1,20 @@
 package com.evrental.evrentalsystem.controller.user;
 
-import com.evrental.evrentalsystem.entity.VehicleModel;
+import com.evrental.evrentalsystem.repository.projection.VehicleModelCardProjection;
+import com.evrental.evrentalsystem.response.vehicle.AvailabilitySearchResponse;
 import com.evrental.evrentalsystem.response.vehicle.VehicleDetailResponse;
 import com.evrental.evrentalsystem.response.vehicle.VehicleWithIdResponse;
 import com.evrental.evrentalsystem.service.VehicleService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +32,17 @@ public class VehicleController {
         return vehicleService.getAvailableVehicles();
     }
 
+    //API tìm xe trống theo khoảng thời gian, đếm theo trạm + model (stationId / vehicleModelId không bắt buộc)
+    //http://localhost:8084/EVRentalSystem/api/vehicles/availability?start=2025-11-01T08:00:00&end=2025-11-03T08:00:00
+    @GetMapping("/availability")
+    public ResponseEntity<List<AvailabilitySearchResponse>> searchAvailability(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) Integer stationId,
+            @RequestParam(required = false) Integer vehicleModelId) {
+        return ResponseEntity.ok(vehicleService.searchAvailability(start, end, stationId, vehicleModelId));
+    }
+
     @GetMapping("/{vehicleModelId}/details")
     public ResponseEntity<List<VehicleWithIdResponse>> getDetailsByVehicleModelId(
             @PathVariable Integer vehicleModelId) {
@@ -41,7 +56,7 @@ public class VehicleController {
     //API: http://localhost:8084/EVRentalSystem/api/vehicles/brands
     @GetMapping("/brands")
     public ResponseEntity<List<Map<String, String>>> getBrandModelNames() {
-        List<VehicleModel> models = vehicleService.findAllVehicleModels();
+        List<VehicleModelCardProjection> models = vehicleService.findAllVehicleModels();
 
         List<Map<String, String>> response = models.stream()
                 .map(m -> {
@@ -1,6 +1,9 @@
 package com.evrental.evrentalsystem.entity;
 
 import com.evrental.evrentalsystem.enums.BookingStatus;
+import com.evrental.evrentalsystem.service.DashboardCacheInvalidator;
+import com.evrental.evrentalsystem.service.FleetChangePublisher;
+import com.evrental.evrentalsystem.service.StaffPerformanceListener;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -12,6 +15,7 @@ import java.time.temporal.ChronoUnit;
 @AllArgsConstructor
 @Entity
 @Table(name = "Booking")
+@EntityListeners({DashboardCacheInvalidator.class, StaffPerformanceListener.class, FleetChangePublisher.class})
 public class Booking {
 
     @Id
@@ -48,4 +52,8 @@ public class Booking {
     @Enumerated(EnumType.STRING)
     private BookingStatus status;
 
+    // Khoá lạc quan cho gán xe / đổi trạng thái đồng thời (VehicleReservationService)
+    @Version
+    private Long version;
+
 }
@@ -1,6 +1,7 @@
 package com.evrental.evrentalsystem.entity;
 
 import com.evrental.evrentalsystem.enums.ContractStatusEnum;
+import com.evrental.evrentalsystem.service.StaffPerformanceListener;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
@@ -10,6 +11,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Entity
 @Table(name = "Contract")
+@EntityListeners(StaffPerformanceListener.class)
 public class Contract {
 //    Staff manage contract
     @ManyToOne(fetch = FetchType.LAZY)
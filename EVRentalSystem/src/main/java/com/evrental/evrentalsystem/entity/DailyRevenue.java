@@ -0,0 +1,39 @@
+package com.evrental.evrentalsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Bảng tổng hợp doanh thu theo ngày + trạm.
+ * Được cộng dồn mỗi khi Payment được lưu (BookingPaymentService),
+ * để biểu đồ doanh thu chỉ cần 1 lần quét theo khoảng ngày.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "Daily_Revenue")
+@IdClass(DailyRevenue.Key.class)
+public class DailyRevenue {
+
+    @Id
+    private LocalDate revenueDate;
+
+    @Id
+    private Integer stationId;
+
+    private Double total;
+
+    private Integer paymentCount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate revenueDate;
+        private Integer stationId;
+    }
+}
@@ -2,6 +2,7 @@ package com.evrental.evrentalsystem.entity;
 
 import com.evrental.evrentalsystem.enums.InspectionStatusEnum;
 import com.evrental.evrentalsystem.enums.PartCarName;
+import com.evrental.evrentalsystem.service.StaffPerformanceListener;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
@@ -11,6 +12,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Entity
 @Table(name = "Inspection")
+@EntityListeners(StaffPerformanceListener.class)
 public class Inspection {
 
     @Id
@@ -1,5 +1,6 @@
 package com.evrental.evrentalsystem.entity;
 
+import com.evrental.evrentalsystem.service.StaffPerformanceListener;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
@@ -10,6 +11,7 @@ import java.time.LocalDateTime;
 @Builder
 @Entity
 @Table(name = "Review")
+@EntityListeners(StaffPerformanceListener.class)
 public class Review {
 
     @Id
@@ -0,0 +1,36 @@
+package com.evrental.evrentalsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bảng tổng hợp hiệu suất theo nhân viên (lượt bàn giao, hợp đồng, trả xe đúng hạn, đánh giá).
+ * Được tính lại cho từng nhân viên khi Inspection / Contract / Review / trả xe thay đổi
+ * (StaffPerformanceTracker) và đối soát định kỳ toàn bảng.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "Staff_Performance")
+public class StaffPerformance {
+
+    @Id
+    private Integer staffId;
+
+    private Integer handovers;
+
+    private Integer contractCount;
+
+    private Integer onTimeCount;
+
+    private Integer ratingCount;
+
+    private Integer ratingSum;
+
+    private Integer ratingGood;
+
+    private LocalDateTime updatedAt;
+}
@@ -1,6 +1,7 @@
     package com.evrental.evrentalsystem.entity;
 
     import com.evrental.evrentalsystem.enums.VehicleStatus;
+    import com.evrental.evrentalsystem.service.FleetChangePublisher;
     import jakarta.persistence.*;
     import lombok.*;
 
@@ -9,6 +10,7 @@
     @AllArgsConstructor
     @Entity
     @Table(name = "Vehicle_Detail")
+    @EntityListeners(FleetChangePublisher.class)
     public class VehicleDetail {
 
         @Id
@@ -34,4 +36,8 @@
         private VehicleStatus status;
 
         private String color;
+
+        // Khoá lạc quan: 2 thao tác cùng đổi trạng thái 1 xe thì thao tác commit sau bị từ chối (VehicleReservationService)
+        @Version
+        private Long version;
     }
@@ -1,5 +1,6 @@
 package com.evrental.evrentalsystem.entity;
 
+import com.evrental.evrentalsystem.service.FleetChangePublisher;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -10,6 +11,7 @@ import java.util.List;
 @AllArgsConstructor
 @Entity
 @Table(name = "Vehicle_Model")
+@EntityListeners(FleetChangePublisher.class)
 public class VehicleModel {
 
     @Id
@@ -0,0 +1,24 @@
+package com.evrental.evrentalsystem.event;
+
+import com.evrental.evrentalsystem.entity.Booking;
+import com.evrental.evrentalsystem.enums.BookingStatus;
+
+import java.time.LocalDateTime;
+
+/** Booking được tạo / sửa / xoá (status = null). Chỉ mang id xe / trạm / model và các mốc thời gian. */
+public record BookingChangedEvent(Integer bookingId, Integer vehicleId, Integer stationId, Integer modelId,
+                                  LocalDateTime startTime, LocalDateTime expectedReturnTime,
+                                  LocalDateTime actualReturnTime, BookingStatus status) {
+
+    public static BookingChangedEvent of(Booking b) {
+        return new BookingChangedEvent(b.getBookingId(),
+                b.getVehicleDetail() != null ? b.getVehicleDetail().getId() : null,
+                b.getStation() != null ? b.getStation().getStationId() : null,
+                b.getVehicleModel() != null ? b.getVehicleModel().getVehicleId() : null,
+                b.getStartTime(), b.getExpectedReturnTime(), b.getActualReturnTime(), b.getStatus());
+    }
+
+    public static BookingChangedEvent removed(Integer bookingId) {
+        return new BookingChangedEvent(bookingId, null, null, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,5 @@
+package com.evrental.evrentalsystem.event;
+
+/** Trạm được tạo / sửa / xoá (removed = true). */
+public record StationChangedEvent(Integer stationId, String stationName, boolean removed) {
+}
@@ -0,0 +1,23 @@
+package com.evrental.evrentalsystem.event;
+
+import com.evrental.evrentalsystem.entity.VehicleDetail;
+import com.evrental.evrentalsystem.enums.VehicleStatus;
+
+/**
+ * Xe được tạo / sửa / xoá (FleetChangePublisher). Chỉ mang cột của xe + id trạm / model:
+ * nơi nhận tự tra tên trạm / model. Xe bị xoá hẳn: removed = true, chỉ có vehicleId.
+ */
+public record VehicleChangedEvent(Integer vehicleId, Integer stationId, Integer modelId, VehicleStatus status,
+                                  String licensePlate, String color, boolean removed) {
+
+    public static VehicleChangedEvent of(VehicleDetail v) {
+        return new VehicleChangedEvent(v.getId(),
+                v.getStation() != null ? v.getStation().getStationId() : null,
+                v.getVehicleModel() != null ? v.getVehicleModel().getVehicleId() : null,
+                v.getStatus(), v.getLicensePlate(), v.getColor(), false);
+    }
+
+    public static VehicleChangedEvent removed(Integer vehicleId) {
+        return new VehicleChangedEvent(vehicleId, null, null, null, null, null, true);
+    }
+}
@@ -0,0 +1,5 @@
+package com.evrental.evrentalsystem.event;
+
+/** Mẫu xe được tạo / sửa / xoá (removed = true). */
+public record VehicleModelChangedEvent(Integer modelId, String brand, String model, boolean removed) {
+}
@@ -0,0 +1,7 @@
+package com.evrental.evrentalsystem.event;
+
+import com.evrental.evrentalsystem.enums.VehicleStatus;
+
+/** Đổi trạng thái xe bằng update hàng loạt (JPQL, không qua entity listener): chỉ biết id + trạng thái mới. */
+public record VehicleStatusChangedEvent(Integer vehicleId, VehicleStatus status) {
+}
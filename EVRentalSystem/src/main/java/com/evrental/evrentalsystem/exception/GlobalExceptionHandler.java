@@ -1,6 +1,7 @@
 package com.evrental.evrentalsystem.exception;
 
 import com.evrental.evrentalsystem.response.ApiResponse;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
@@ -40,6 +41,13 @@ public class GlobalExceptionHandler {
                 .body(ApiResponse.error(ex.getMessage(), false));
     }
 
+    // 🧩 Xe / booking vừa bị thao tác khác cập nhật, đã thử lại vẫn xung đột
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ApiResponse<Boolean>> handleOptimisticLock(OptimisticLockingFailureException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(ApiResponse.error("Dữ liệu vừa được cập nhật bởi thao tác khác, vui lòng thử lại", false));
+    }
+
     // 🧩 Bắt lỗi chung (server, null pointer, v.v.)
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiResponse<Boolean>> handleGeneralException(Exception ex) {
@@ -1,18 +1,24 @@
 package com.evrental.evrentalsystem.repository;
 
 import com.evrental.evrentalsystem.entity.Booking;
-import com.evrental.evrentalsystem.enums.BookingStatus;
-import jakarta.transaction.Transactional;
+import com.evrental.evrentalsystem.repository.projection.BookingExportProjection;
+import com.evrental.evrentalsystem.repository.projection.BookingIntervalProjection;
+import com.evrental.evrentalsystem.repository.projection.OverviewKpiProjection;
+import com.evrental.evrentalsystem.repository.projection.RecentRentalProjection;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface BookingRepository extends JpaRepository<Booking, Integer> {
 
@@ -27,17 +33,33 @@ public interface BookingRepository extends JpaRepository<Booking, Integer> {
 
     Optional<Booking> findByBookingId(Integer bookingId);
 
-    @Modifying
-    @Transactional
-    @Query("UPDATE Booking u SET u.status = :status WHERE u.bookingId = :id")
-    int updateBookingStatus(@Param("id") int id, @Param("status") BookingStatus status);
-
     // User bookings
     List<Booking> findAllByRenter_UserId(Integer userId);
 
     // KPI: đếm booking theo start_time trong khoảng
     int countByStartTimeBetween(LocalDateTime start, LocalDateTime end);
 
+    // KPI tổng quan trong 1 round trip: doanh thu kỳ này / kỳ trước (Daily_Revenue),
+    // lượt thuê hôm nay / hôm qua, số khách hàng (COUNT, không load entity User)
+    @Query(value = """
+        SELECT
+          (SELECT COALESCE(SUM(r.total), 0) FROM Daily_Revenue r
+            WHERE r.revenue_date >= :fromDate AND r.revenue_date <= :toDate)          AS totalRevenue,
+          (SELECT COALESCE(SUM(r.total), 0) FROM Daily_Revenue r
+            WHERE r.revenue_date >= :prevFromDate AND r.revenue_date < :fromDate)     AS prevRevenue,
+          (SELECT COUNT(*) FROM Booking b
+            WHERE b.start_time >= :todayStart AND b.start_time < :tomorrowStart)      AS rentalsToday,
+          (SELECT COUNT(*) FROM Booking b
+            WHERE b.start_time >= :yesterdayStart AND b.start_time < :todayStart)     AS rentalsYesterday,
+          (SELECT COUNT(*) FROM [User] u WHERE u.role = 'RENTER')                      AS totalCustomers
+        """, nativeQuery = true)
+    OverviewKpiProjection overviewKpis(@Param("fromDate") LocalDate fromDate,
+                                       @Param("toDate") LocalDate toDate,
+                                       @Param("prevFromDate") LocalDate prevFromDate,
+                                       @Param("yesterdayStart") LocalDateTime yesterdayStart,
+                                       @Param("todayStart") LocalDateTime todayStart,
+                                       @Param("tomorrowStart") LocalDateTime tomorrowStart);
+
     @Query("""
    select count(b) from Booking b
    where b.station.stationId = :stationId
@@ -63,4 +85,74 @@ public interface BookingRepository extends JpaRepository<Booking, Integer> {
     default List<Booking> findTopNByOrderByCreatedAtDesc(int n) {
         return findRecent(PageRequest.of(0, n));
     }
+
+    // Recent rentals cho dashboard: booking + tên khách + biển số + tổng thanh toán trong 1 câu
+    @Query("""
+        select b.bookingId          as bookingId,
+               r.fullName           as customerName,
+               v.licensePlate       as licensePlate,
+               b.startTime          as startTime,
+               b.actualReturnTime   as actualReturnTime,
+               b.status             as status,
+               p.total              as total
+        from Booking b
+        join b.renter r
+        left join b.vehicleDetail v
+        left join Payment p on p.booking = b
+        order by b.createdAt desc
+    """)
+    List<RecentRentalProjection> findRecentRentals(Pageable pageable);
+
+    default List<RecentRentalProjection> findTopNRecentRentals(int n) {
+        return findRecentRentals(PageRequest.of(0, n));
+    }
+
+    // Export dashboard: đọc dạng stream theo lô (fetch size), phải gọi trong transaction
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+        select b.bookingId          as bookingId,
+               b.createdAt          as createdAt,
+               b.startTime          as startTime,
+               b.expectedReturnTime as expectedReturnTime,
+               b.actualReturnTime   as actualReturnTime,
+               b.status             as status,
+               r.fullName           as customerName,
+               s.stationName        as stationName,
+               vm.model             as model,
+               v.licensePlate       as licensePlate,
+               b.deposit            as deposit,
+               p.total              as total
+        from Booking b
+        join b.renter r
+        join b.station s
+        join b.vehicleModel vm
+        left join b.vehicleDetail v
+        left join Payment p on p.booking = b
+        where b.startTime >= :start and b.startTime < :end
+        order by b.startTime, b.bookingId
+    """)
+    Stream<BookingExportProjection> streamForExport(@Param("start") LocalDateTime start,
+                                                    @Param("end") LocalDateTime end);
+
+    // Booking còn giữ xe (chưa Completed / Cancelled) để dựng VehicleAvailabilityIndex
+    @Query("""
+        select b.bookingId          as bookingId,
+               v.id                 as vehicleDetailId,
+               s.stationId          as stationId,
+               vm.vehicleId         as vehicleModelId,
+               b.startTime          as startTime,
+               b.expectedReturnTime as expectedReturnTime,
+               b.actualReturnTime   as actualReturnTime,
+               b.status             as status
+        from Booking b
+        join b.station s
+        join b.vehicleModel vm
+        left join b.vehicleDetail v
+        where b.status not in (com.evrental.evrentalsystem.enums.BookingStatus.Completed,
+                               com.evrental.evrentalsystem.enums.BookingStatus.Cancelled)
+    """)
+    List<BookingIntervalProjection> findOpenIntervals();
 }
@@ -0,0 +1,44 @@
+package com.evrental.evrentalsystem.repository;
+
+import com.evrental.evrentalsystem.entity.DailyRevenue;
+import com.evrental.evrentalsystem.repository.projection.DailyRevenueProjection;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyRevenueRepository extends JpaRepository<DailyRevenue, DailyRevenue.Key> {
+
+    // Cộng dồn (amount có thể âm khi payment bị sửa) vào dòng (ngày, trạm), tạo mới nếu chưa có
+    @Modifying
+    @Transactional
+    @Query(value = """
+        MERGE Daily_Revenue WITH (HOLDLOCK) AS t
+        USING (SELECT :revenueDate AS revenue_date, :stationId AS station_id) AS s
+          ON t.revenue_date = s.revenue_date AND t.station_id = s.station_id
+        WHEN MATCHED THEN
+          UPDATE SET t.total = t.total + :amount,
+                     t.payment_count = t.payment_count + :count
+        WHEN NOT MATCHED THEN
+          INSERT (revenue_date, station_id, total, payment_count)
+          VALUES (:revenueDate, :stationId, :amount, :count);
+        """, nativeQuery = true)
+    int addRevenue(@Param("revenueDate") LocalDate revenueDate,
+                   @Param("stationId") Integer stationId,
+                   @Param("amount") Double amount,
+                   @Param("count") Integer count);
+
+    // Doanh thu theo ngày (mọi trạm) trong khoảng [from, to] - 1 lần quét
+    @Query("""
+        select r.revenueDate as revenueDate, sum(r.total) as total
+        from DailyRevenue r
+        where r.revenueDate >= :from and r.revenueDate <= :to
+        group by r.revenueDate
+    """)
+    List<DailyRevenueProjection> sumByDayBetween(@Param("from") LocalDate from,
+                                                 @Param("to") LocalDate to);
+}
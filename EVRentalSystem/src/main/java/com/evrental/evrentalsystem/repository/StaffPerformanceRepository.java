@@ -0,0 +1,73 @@
+package com.evrental.evrentalsystem.repository;
+
+import com.evrental.evrentalsystem.entity.StaffPerformance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+public interface StaffPerformanceRepository extends JpaRepository<StaffPerformance, Integer> {
+
+    // Số liệu gốc của từng STAFF, cùng định nghĩa với các subquery cũ trong StaffAdminService
+    String STATS = """
+        SELECT u.user_id                AS staff_id,
+               ISNULL(h.handovers, 0)   AS handovers,
+               ISNULL(k.contracts, 0)   AS contract_count,
+               ISNULL(k.on_time, 0)     AS on_time_count,
+               ISNULL(rv.rated, 0)      AS rating_count,
+               ISNULL(rv.rating_sum, 0) AS rating_sum,
+               ISNULL(rv.good, 0)       AS rating_good
+        FROM [User] u
+        OUTER APPLY (SELECT COUNT(*) AS handovers
+                     FROM Inspection i WHERE i.staff_id = u.user_id) h
+        OUTER APPLY (SELECT COUNT(*) AS contracts,
+                            SUM(CASE WHEN b.actual_return_time IS NOT NULL
+                                      AND b.actual_return_time <= b.expected_return_time THEN 1 ELSE 0 END) AS on_time
+                     FROM Contract c JOIN Booking b ON b.booking_id = c.booking_id
+                     WHERE c.staff_id = u.user_id) k
+        OUTER APPLY (SELECT COUNT(r.rating) AS rated,
+                            SUM(r.rating) AS rating_sum,
+                            SUM(CASE WHEN r.rating >= 4 THEN 1 ELSE 0 END) AS good
+                     FROM Contract c JOIN Review r ON r.booking_id = c.booking_id
+                     WHERE c.staff_id = u.user_id) rv
+        WHERE u.role = 'STAFF'
+        """;
+
+    String UPSERT = """
+        ON t.staff_id = s.staff_id
+        WHEN MATCHED THEN
+          UPDATE SET t.handovers = s.handovers, t.contract_count = s.contract_count,
+                     t.on_time_count = s.on_time_count, t.rating_count = s.rating_count,
+                     t.rating_sum = s.rating_sum, t.rating_good = s.rating_good,
+                     t.updated_at = SYSUTCDATETIME()
+        WHEN NOT MATCHED BY TARGET THEN
+          INSERT (staff_id, handovers, contract_count, on_time_count, rating_count, rating_sum, rating_good, updated_at)
+          VALUES (s.staff_id, s.handovers, s.contract_count, s.on_time_count, s.rating_count, s.rating_sum,
+                  s.rating_good, SYSUTCDATETIME())
+        """;
+
+    // Tính lại các nhân viên được chỉ định
+    @Modifying
+    @Transactional
+    @Query(value = "MERGE Staff_Performance WITH (HOLDLOCK) AS t USING (" + STATS +
+            " AND u.user_id IN (:staffIds)) AS s " + UPSERT + ";", nativeQuery = true)
+    int refreshStaff(@Param("staffIds") Collection<Integer> staffIds);
+
+    // Tính lại nhân viên phụ trách hợp đồng của các booking (trả xe, review)
+    @Modifying
+    @Transactional
+    @Query(value = "MERGE Staff_Performance WITH (HOLDLOCK) AS t USING (" + STATS +
+            " AND u.user_id IN (SELECT c.staff_id FROM Contract c WHERE c.booking_id IN (:bookingIds))) AS s " +
+            UPSERT + ";", nativeQuery = true)
+    int refreshByBookings(@Param("bookingIds") Collection<Integer> bookingIds);
+
+    // Đối soát toàn bảng: sửa lệch (xoá hàng loạt, sửa tay trong DB...) và bỏ nhân viên không còn là STAFF
+    @Modifying
+    @Transactional
+    @Query(value = "MERGE Staff_Performance WITH (HOLDLOCK) AS t USING (" + STATS + ") AS s " + UPSERT +
+            " WHEN NOT MATCHED BY SOURCE THEN DELETE;", nativeQuery = true)
+    int reconcileAll();
+}
@@ -1,14 +1,51 @@
 package com.evrental.evrentalsystem.repository;
 
 import com.evrental.evrentalsystem.entity.Station;
+import com.evrental.evrentalsystem.repository.projection.StationRankingProjection;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface StationRepository extends JpaRepository<Station, Integer> {
     @Query("SELECT s FROM Station s WHERE s.address LIKE %:district%")
     List<Station> findByDistrict(@Param("district") String district);
 
+    // Top stations: lượt thuê hợp lệ + doanh thu của mọi trạm trong 1 câu, xếp hạng và TOP ngay trong DB
+    @Query(value = """
+        SELECT TOP (:limit)
+               s.station_id            AS stationId,
+               s.station_name          AS stationName,
+               COALESCE(bk.rentals, 0) AS rentals,
+               COALESCE(rv.revenue, 0) AS revenue
+        FROM Station s
+        LEFT JOIN (
+            SELECT b.station_id, COUNT(*) AS rentals
+            FROM Booking b
+            WHERE b.start_time >= :start AND b.start_time < :endEx
+              AND b.[status] IN ('Completed',
+                                 'Pending_Total_Payment',
+                                 'Pending_Total_Payment_Confirmation',
+                                 'Currently_Renting',
+                                 'Vehicle_Returned',
+                                 'Vehicle_Inspected_After_Pickup')
+            GROUP BY b.station_id
+        ) bk ON bk.station_id = s.station_id
+        LEFT JOIN (
+            SELECT r.station_id, SUM(r.total) AS revenue
+            FROM Daily_Revenue r
+            WHERE r.revenue_date >= :fromDate AND r.revenue_date <= :toDate
+            GROUP BY r.station_id
+        ) rv ON rv.station_id = s.station_id
+        ORDER BY rentals DESC, revenue DESC, s.station_id
+        """, nativeQuery = true)
+    List<StationRankingProjection> findTopStations(@Param("start") LocalDateTime start,
+                                                   @Param("endEx") LocalDateTime endEx,
+                                                   @Param("fromDate") LocalDate fromDate,
+                                                   @Param("toDate") LocalDate toDate,
+                                                   @Param("limit") int limit);
+
 }
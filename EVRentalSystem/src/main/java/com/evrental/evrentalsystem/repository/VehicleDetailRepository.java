@@ -11,8 +11,14 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import com.evrental.evrentalsystem.repository.projection.AvailableVehicleProjection;
+import com.evrental.evrentalsystem.repository.projection.VehicleCardProjection;
 import com.evrental.evrentalsystem.repository.projection.VehicleListProjection;
+import com.evrental.evrentalsystem.repository.projection.VehicleLocationProjection;
+import com.evrental.evrentalsystem.repository.projection.VehicleSearchProjection;
+import com.evrental.evrentalsystem.repository.projection.VehicleSlotProjection;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -47,14 +53,6 @@ public interface VehicleDetailRepository extends JpaRepository<VehicleDetail, In
     List<VehicleDetail> findFixingVehiclesByStation(@Param("stationId") Integer stationId);
 
 
-    @Query("""
-        SELECT v FROM VehicleDetail v
-        LEFT JOIN FETCH v.vehicleModel
-        LEFT JOIN FETCH v.station
-        WHERE v.id = :id
-    """)
-    Optional<VehicleDetail> findDetailWithModelAndStation(@Param("id") Integer id);
-
 
     List<VehicleDetail> findAllByVehicleModel_VehicleIdAndStation_StationIdAndStatus(
             Integer vehicleModelId,
@@ -62,9 +60,16 @@ public interface VehicleDetailRepository extends JpaRepository<VehicleDetail, In
             VehicleStatus status
     );
 
+    boolean existsByVehicleModel_VehicleIdAndStation_StationIdAndStatus(
+            Integer vehicleModelId,
+            Integer stationId,
+            VehicleStatus status
+    );
+
+    /** Không qua entity listener: caller phải phát VehicleStatusChangedEvent để các chỉ mục trong bộ nhớ không lệch. */
     @Modifying
     @Transactional
-    @Query("UPDATE VehicleDetail v SET v.status = :status WHERE v.id = :id")
+    @Query("UPDATE VehicleDetail v SET v.status = :status, v.version = v.version + 1 WHERE v.id = :id")
     int updateVehicleStatusById(@Param("id") Integer id, @Param("status") VehicleStatus status);
 
     Optional<VehicleDetail> findFirstByVehicleModelAndStatus(VehicleModel vehicleModel, VehicleStatus status);
@@ -79,15 +84,18 @@ public interface VehicleDetailRepository extends JpaRepository<VehicleDetail, In
                                                  @Param("status") String status);
 
 
+    // Chỉ id xe + trạm, không tải cột ảnh của xe / model
     @Query("""
-        SELECT vd
+        SELECT vd.id        AS vehicleDetailId,
+               s.stationId  AS stationId,
+               s.stationName AS stationName,
+               s.address    AS stationAddress
         FROM VehicleDetail vd
-        JOIN FETCH vd.station s
-        JOIN FETCH vd.vehicleModel vm
-        WHERE vm.vehicleId = :vehicleModelId
+        JOIN vd.station s
+        WHERE vd.vehicleModel.vehicleId = :vehicleModelId
           AND upper(vd.status) <> 'DELETED'
     """)
-    List<VehicleDetail> findByVehicleModelId(@Param("vehicleModelId") Integer vehicleModelId);
+    List<VehicleLocationProjection> findByVehicleModelId(@Param("vehicleModelId") Integer vehicleModelId);
 
 
     VehicleDetail findByLicensePlate(String licensePlate);
@@ -109,7 +117,83 @@ public interface VehicleDetailRepository extends JpaRepository<VehicleDetail, In
     long countByStatus(@Param("status") VehicleStatus status);
 
 
-    List<VehicleDetail> findByStationStationId(Integer stationId);
+    // Danh sách xe theo trạm, không tải cột ảnh (chỉ 71 ký tự đầu = tham chiếu "sha256:<hex>")
+    @Query("""
+        select vm.vehicleId                     as modelId,
+               vm.brand                         as brand,
+               vm.model                         as model,
+               vm.price                         as price,
+               vm.seats                         as seats,
+               substring(vm.picture, 1, 71)     as modelPictureRef,
+               v.id                             as detailId,
+               v.licensePlate                   as licensePlate,
+               v.batteryCapacity                as batteryCapacity,
+               v.odo                            as odo,
+               substring(v.picture, 1, 71)      as detailPictureRef,
+               v.status                         as status,
+               v.color                          as color,
+               s.stationId                      as stationId,
+               s.stationName                    as stationName
+        from VehicleDetail v
+        join v.vehicleModel vm
+        join v.station s
+        where s.stationId = :stationId
+        order by vm.vehicleId, v.id
+    """)
+    List<VehicleCardProjection> findCardsByStationId(@Param("stationId") Integer stationId);
+
+    // Như findCardsByStationId, lọc thêm model + trạng thái
+    @Query("""
+        select vm.vehicleId                     as modelId,
+               vm.brand                         as brand,
+               vm.model                         as model,
+               vm.price                         as price,
+               vm.seats                         as seats,
+               substring(vm.picture, 1, 71)     as modelPictureRef,
+               v.id                             as detailId,
+               v.licensePlate                   as licensePlate,
+               v.batteryCapacity                as batteryCapacity,
+               v.odo                            as odo,
+               substring(v.picture, 1, 71)      as detailPictureRef,
+               v.status                         as status,
+               v.color                          as color,
+               s.stationId                      as stationId,
+               s.stationName                    as stationName
+        from VehicleDetail v
+        join v.vehicleModel vm
+        join v.station s
+        where vm.vehicleId = :modelId
+          and s.stationId = :stationId
+          and v.status = :status
+        order by v.id
+    """)
+    List<VehicleCardProjection> findCardsByModelAndStation(@Param("modelId") Integer modelId,
+                                                           @Param("stationId") Integer stationId,
+                                                           @Param("status") VehicleStatus status);
+
+    // 1 xe (kèm model, trạm) không tải cột ảnh
+    @Query("""
+        select vm.vehicleId                     as modelId,
+               vm.brand                         as brand,
+               vm.model                         as model,
+               vm.price                         as price,
+               vm.seats                         as seats,
+               substring(vm.picture, 1, 71)     as modelPictureRef,
+               v.id                             as detailId,
+               v.licensePlate                   as licensePlate,
+               v.batteryCapacity                as batteryCapacity,
+               v.odo                            as odo,
+               substring(v.picture, 1, 71)      as detailPictureRef,
+               v.status                         as status,
+               v.color                          as color,
+               s.stationId                      as stationId,
+               s.stationName                    as stationName
+        from VehicleDetail v
+        join v.vehicleModel vm
+        left join v.station s
+        where v.id = :id
+    """)
+    Optional<VehicleCardProjection> findCardById(@Param("id") Integer id);
 
     Optional<VehicleDetail> findById(Integer id);
 
@@ -125,7 +209,8 @@ select
     s.stationId                     as stationId,
     s.stationName                   as stationName,
     v.odo                           as odo,
-    coalesce(v.picture, vm.picture) as picture,
+    substring(v.picture, 1, 71)     as picture,
+    substring(vm.picture, 1, 71)    as modelPicture,
     vm.vehicleId                    as vehicleId
 from VehicleDetail v
 join v.vehicleModel vm
@@ -152,6 +237,27 @@ where upper(v.status) <> 'DELETED'
             Pageable pageable
     );
 
+    // Cùng cột với searchVehicleList nhưng lấy theo id (trang đã được VehicleSearchIndex lọc sẵn)
+    @Query("""
+select
+    v.id                            as id,
+    v.licensePlate                  as licensePlate,
+    vm.model                        as model,
+    vm.brand                        as brand,
+    v.status                        as status,
+    s.stationId                     as stationId,
+    s.stationName                   as stationName,
+    v.odo                           as odo,
+    substring(v.picture, 1, 71)     as picture,
+    substring(vm.picture, 1, 71)    as modelPicture,
+    vm.vehicleId                    as vehicleId
+from VehicleDetail v
+join v.vehicleModel vm
+join v.station s
+where v.id in :ids
+""")
+    List<VehicleListProjection> findVehicleListByIds(@Param("ids") Collection<Integer> ids);
+
 
     @Query("""
     select distinct vm.brand
@@ -184,9 +290,49 @@ where upper(v.status) <> 'DELETED'
             @Param("stationId") Integer stationId
     );
 
-    @Query("SELECT v FROM VehicleDetail v " +
-            "JOIN FETCH v.station " +
-            "JOIN FETCH v.vehicleModel " +
-            "WHERE v.status = 'AVAILABLE'")
-    List<VehicleDetail> findAllAvailableWithStationAndModel();
+    @Query("""
+        select v.id            as vehicleDetailId,
+               v.licensePlate  as licensePlate,
+               v.color         as color,
+               v.status        as status,
+               s.stationId     as stationId,
+               vm.vehicleId    as vehicleModelId,
+               vm.brand        as brand,
+               vm.model        as modelName
+        from VehicleDetail v
+        join v.station s
+        join v.vehicleModel vm
+        where v.status = com.evrental.evrentalsystem.enums.VehicleStatus.AVAILABLE
+    """)
+    List<AvailableVehicleProjection> findAllAvailableWithStationAndModel();
+
+    // Toàn bộ xe chưa xoá, chỉ các cột khoá cho VehicleAvailabilityIndex
+    @Query("""
+        select v.id            as vehicleDetailId,
+               s.stationId     as stationId,
+               vm.vehicleId    as vehicleModelId,
+               v.status        as status
+        from VehicleDetail v
+        join v.station s
+        join v.vehicleModel vm
+        where v.status <> com.evrental.evrentalsystem.enums.VehicleStatus.DELETED
+    """)
+    List<VehicleSlotProjection> findAllSlots();
+
+    // Xe chưa xoá kèm biển số / tên trạm / hãng / model cho VehicleSearchIndex
+    @Query("""
+        select v.id            as vehicleDetailId,
+               v.licensePlate  as licensePlate,
+               v.status        as status,
+               s.stationId     as stationId,
+               s.stationName   as stationName,
+               vm.vehicleId    as vehicleModelId,
+               vm.brand        as brand,
+               vm.model        as modelName
+        from VehicleDetail v
+        join v.station s
+        join v.vehicleModel vm
+        where v.status <> com.evrental.evrentalsystem.enums.VehicleStatus.DELETED
+    """)
+    List<VehicleSearchProjection> findAllForSearch();
 }
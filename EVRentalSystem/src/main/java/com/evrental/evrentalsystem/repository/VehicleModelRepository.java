@@ -1,37 +1,87 @@
 package com.evrental.evrentalsystem.repository;
 
 import com.evrental.evrentalsystem.entity.VehicleModel;
+import com.evrental.evrentalsystem.repository.projection.VehicleCardProjection;
+import com.evrental.evrentalsystem.repository.projection.VehicleModelCardProjection;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface VehicleModelRepository extends JpaRepository<VehicleModel, Integer> {
     VehicleModel findByVehicleId(Integer vehicleId);
 
+    // Đếm xe AVAILABLE trong subquery rồi mới join model: không GROUP BY cột ảnh,
+    // cột ảnh chỉ lấy 71 ký tự đầu (tham chiếu "sha256:<hex>") để dựng URL
     @Query(value = """
-        SELECT 
+        SELECT
           vm.vehicle_id AS vehicleModelId,
           vm.brand,
           vm.model,
           vm.price,
           vm.seats,
-          vm.picture AS modelPicture,
-          COUNT(vd.id) AS availableCount
+          LEFT(vm.picture, 71) AS modelPictureRef,
+          c.availableCount
         FROM Vehicle_Model vm
-        LEFT JOIN Vehicle_Detail vd
-          ON vd.vehicle_id = vm.vehicle_id
-          AND (:stationId IS NULL OR :stationId = 0 OR vd.station_id = :stationId)
-          AND vd.[status] = 'AVAILABLE'
-        GROUP BY vm.vehicle_id, vm.brand, vm.model, vm.price, vm.seats, vm.picture
-        HAVING COUNT(vd.id) > 0
+        JOIN (
+          SELECT vd.vehicle_id, COUNT(*) AS availableCount
+          FROM Vehicle_Detail vd
+          WHERE vd.[status] = 'AVAILABLE'
+            AND (:stationId IS NULL OR :stationId = 0 OR vd.station_id = :stationId)
+          GROUP BY vd.vehicle_id
+        ) c ON c.vehicle_id = vm.vehicle_id
         """, nativeQuery = true)
     List<Object[]> findVehicleModelsByStation(@Param("stationId") Integer stationId);
 
 
-    @Query("SELECT DISTINCT vm FROM VehicleModel vm " +
-            "LEFT JOIN FETCH vm.vehicleDetails vd " +
-            "LEFT JOIN FETCH vd.station s")
-    List<VehicleModel> findAllWithDetailsAndStation();
+    // Toàn bộ model + xe + trạm dạng phẳng, không tải cột ảnh (xem VehicleCardProjection)
+    @Query("""
+        select vm.vehicleId                     as modelId,
+               vm.brand                         as brand,
+               vm.model                         as model,
+               vm.price                         as price,
+               vm.seats                         as seats,
+               substring(vm.picture, 1, 71)     as modelPictureRef,
+               vd.id                            as detailId,
+               vd.licensePlate                  as licensePlate,
+               vd.batteryCapacity               as batteryCapacity,
+               vd.odo                           as odo,
+               substring(vd.picture, 1, 71)     as detailPictureRef,
+               vd.status                        as status,
+               vd.color                         as color,
+               s.stationId                      as stationId,
+               s.stationName                    as stationName
+        from VehicleModel vm
+        left join vm.vehicleDetails vd
+        left join vd.station s
+        order by vm.vehicleId, vd.id
+    """)
+    List<VehicleCardProjection> findAllWithDetailsAndStation();
+
+    // Danh sách mẫu xe không tải cột ảnh (xem VehicleModelCardProjection)
+    @Query("""
+        select vm.vehicleId                     as vehicleId,
+               vm.brand                         as brand,
+               vm.model                         as model,
+               vm.price                         as price,
+               vm.seats                         as seats,
+               substring(vm.picture, 1, 71)     as pictureRef
+        from VehicleModel vm
+        order by vm.vehicleId
+    """)
+    List<VehicleModelCardProjection> findAllCards();
+
+    @Query("""
+        select vm.vehicleId                     as vehicleId,
+               vm.brand                         as brand,
+               vm.model                         as model,
+               vm.price                         as price,
+               vm.seats                         as seats,
+               substring(vm.picture, 1, 71)     as pictureRef
+        from VehicleModel vm
+        where vm.vehicleId in :ids
+    """)
+    List<VehicleModelCardProjection> findCardsByIds(@Param("ids") Collection<Integer> ids);
 }
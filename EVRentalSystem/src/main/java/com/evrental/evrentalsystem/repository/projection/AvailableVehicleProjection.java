@@ -0,0 +1,15 @@
+package com.evrental.evrentalsystem.repository.projection;
+
+import com.evrental.evrentalsystem.enums.VehicleStatus;
+
+// Xe AVAILABLE cho cây trạm -> model -> xe (VehicleManagementService.getAllAboutStation)
+public interface AvailableVehicleProjection {
+    Integer getVehicleDetailId();
+    String  getLicensePlate();
+    String  getColor();
+    VehicleStatus getStatus();
+    Integer getStationId();
+    Integer getVehicleModelId();
+    String  getBrand();
+    String  getModelName();
+}
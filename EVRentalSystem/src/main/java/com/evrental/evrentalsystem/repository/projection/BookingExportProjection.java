@@ -0,0 +1,20 @@
+package com.evrental.evrentalsystem.repository.projection;
+
+import com.evrental.evrentalsystem.enums.BookingStatus;
+
+import java.time.LocalDateTime;
+
+public interface BookingExportProjection {
+    Integer       getBookingId();
+    LocalDateTime getCreatedAt();
+    LocalDateTime getStartTime();
+    LocalDateTime getExpectedReturnTime();
+    LocalDateTime getActualReturnTime();
+    BookingStatus getStatus();
+    String        getCustomerName();
+    String        getStationName();
+    String        getModel();
+    String        getLicensePlate();
+    Double        getDeposit();
+    Double        getTotal();
+}
@@ -0,0 +1,17 @@
+package com.evrental.evrentalsystem.repository.projection;
+
+import com.evrental.evrentalsystem.enums.BookingStatus;
+
+import java.time.LocalDateTime;
+
+// Khoảng thời gian giữ xe của booking chưa kết thúc (VehicleAvailabilityIndex)
+public interface BookingIntervalProjection {
+    Integer getBookingId();
+    Integer getVehicleDetailId();
+    Integer getStationId();
+    Integer getVehicleModelId();
+    LocalDateTime getStartTime();
+    LocalDateTime getExpectedReturnTime();
+    LocalDateTime getActualReturnTime();
+    BookingStatus getStatus();
+}
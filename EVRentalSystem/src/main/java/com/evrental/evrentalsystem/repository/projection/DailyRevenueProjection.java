@@ -0,0 +1,8 @@
+package com.evrental.evrentalsystem.repository.projection;
+
+import java.time.LocalDate;
+
+public interface DailyRevenueProjection {
+    LocalDate getRevenueDate();
+    Double getTotal();
+}
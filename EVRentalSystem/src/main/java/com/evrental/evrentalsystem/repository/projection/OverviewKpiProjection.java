@@ -0,0 +1,9 @@
+package com.evrental.evrentalsystem.repository.projection;
+
+public interface OverviewKpiProjection {
+    Number getTotalRevenue();
+    Number getPrevRevenue();
+    Number getRentalsToday();
+    Number getRentalsYesterday();
+    Number getTotalCustomers();
+}
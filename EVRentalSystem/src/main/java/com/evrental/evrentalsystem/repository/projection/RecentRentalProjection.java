@@ -0,0 +1,15 @@
+package com.evrental.evrentalsystem.repository.projection;
+
+import com.evrental.evrentalsystem.enums.BookingStatus;
+
+import java.time.LocalDateTime;
+
+public interface RecentRentalProjection {
+    Integer       getBookingId();
+    String        getCustomerName();
+    String        getLicensePlate();
+    LocalDateTime getStartTime();
+    LocalDateTime getActualReturnTime();
+    BookingStatus getStatus();
+    Double        getTotal();   // Payment.total, null nếu chưa thanh toán
+}
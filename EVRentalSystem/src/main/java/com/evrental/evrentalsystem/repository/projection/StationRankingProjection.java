@@ -0,0 +1,8 @@
+package com.evrental.evrentalsystem.repository.projection;
+
+public interface StationRankingProjection {
+    Integer getStationId();
+    String  getStationName();
+    Number  getRentals();
+    Number  getRevenue();
+}
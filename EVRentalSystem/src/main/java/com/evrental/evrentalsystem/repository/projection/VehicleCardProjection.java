@@ -0,0 +1,28 @@
+package com.evrental.evrentalsystem.repository.projection;
+
+import com.evrental.evrentalsystem.enums.VehicleStatus;
+
+/**
+ * 1 dòng model + xe (+ trạm) cho các danh sách xe, không kèm dữ liệu ảnh:
+ * cột ảnh chỉ lấy 71 ký tự đầu (đủ cho tham chiếu "sha256:&lt;hex&gt;") để dựng URL ảnh (ImageUrls).
+ * Các field của xe/trạm null khi model chưa có xe (left join).
+ */
+public interface VehicleCardProjection {
+    Integer getModelId();
+    String  getBrand();
+    String  getModel();
+    Double  getPrice();
+    Integer getSeats();
+    String  getModelPictureRef();
+
+    Integer getDetailId();
+    String  getLicensePlate();
+    String  getBatteryCapacity();
+    Integer getOdo();
+    String  getDetailPictureRef();
+    VehicleStatus getStatus();
+    String  getColor();
+
+    Integer getStationId();
+    String  getStationName();
+}
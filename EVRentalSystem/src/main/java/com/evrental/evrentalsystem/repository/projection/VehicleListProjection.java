@@ -12,5 +12,6 @@ public interface VehicleListProjection {
 
     // NEW
     Integer getVehicleId();   // ← alias: vehicleId
-    String  getPicture();     // ← alias: picture
+    String  getPicture();     // ← alias: picture (query: 71 ký tự đầu của ảnh xe; API: URL ảnh)
+    String  getModelPicture(); // ← alias: modelPicture (71 ký tự đầu của ảnh mẫu xe, dùng khi xe không có ảnh)
 }
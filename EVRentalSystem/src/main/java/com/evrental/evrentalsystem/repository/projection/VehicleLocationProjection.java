@@ -0,0 +1,9 @@
+package com.evrental.evrentalsystem.repository.projection;
+
+/** Xe + trạm đang đặt xe, không kèm dữ liệu ảnh. */
+public interface VehicleLocationProjection {
+    Integer getVehicleDetailId();
+    Integer getStationId();
+    String  getStationName();
+    String  getStationAddress();
+}
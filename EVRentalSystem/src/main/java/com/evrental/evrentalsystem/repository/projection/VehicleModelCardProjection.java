@@ -0,0 +1,14 @@
+package com.evrental.evrentalsystem.repository.projection;
+
+/**
+ * Mẫu xe cho các danh sách (catalog, tìm xe trống), không kèm dữ liệu ảnh:
+ * cột ảnh chỉ lấy 71 ký tự đầu (tham chiếu "sha256:&lt;hex&gt;") để dựng URL ảnh (ImageUrls).
+ */
+public interface VehicleModelCardProjection {
+    Integer getVehicleId();
+    String  getBrand();
+    String  getModel();
+    Double  getPrice();
+    Integer getSeats();
+    String  getPictureRef();
+}
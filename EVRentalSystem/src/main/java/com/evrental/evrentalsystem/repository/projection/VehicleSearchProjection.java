@@ -0,0 +1,15 @@
+package com.evrental.evrentalsystem.repository.projection;
+
+import com.evrental.evrentalsystem.enums.VehicleStatus;
+
+// Các cột text + khoá lọc của xe chưa xoá để dựng VehicleSearchIndex lúc khởi động
+public interface VehicleSearchProjection {
+    Integer getVehicleDetailId();
+    String  getLicensePlate();
+    VehicleStatus getStatus();
+    Integer getStationId();
+    String  getStationName();
+    Integer getVehicleModelId();
+    String  getBrand();
+    String  getModelName();
+}
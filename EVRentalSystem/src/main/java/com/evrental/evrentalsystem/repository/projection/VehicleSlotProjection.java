@@ -0,0 +1,11 @@
+package com.evrental.evrentalsystem.repository.projection;
+
+import com.evrental.evrentalsystem.enums.VehicleStatus;
+
+// Xe (id, trạm, model, trạng thái) để dựng VehicleAvailabilityIndex lúc khởi động
+public interface VehicleSlotProjection {
+    Integer getVehicleDetailId();
+    Integer getStationId();
+    Integer getVehicleModelId();
+    VehicleStatus getStatus();
+}
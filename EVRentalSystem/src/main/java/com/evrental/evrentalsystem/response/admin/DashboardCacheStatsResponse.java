@@ -0,0 +1,15 @@
+package com.evrental.evrentalsystem.response.admin;
+
+import lombok.*;
+
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class DashboardCacheStatsResponse {
+    private long hits;          // trả từ cache
+    private long coalesced;     // chờ chung 1 lần tính đang chạy
+    private long misses;        // phải tính lại
+    private double hitRate;     // (hits + coalesced) / tổng
+    private double avgLoadMillis;
+    private long invalidations;
+    private int size;
+    private long ttlSeconds;
+}
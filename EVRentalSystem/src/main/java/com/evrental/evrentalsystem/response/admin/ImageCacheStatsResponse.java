@@ -0,0 +1,19 @@
+package com.evrental.evrentalsystem.response.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data @NoArgsConstructor @AllArgsConstructor @Builder
+public class ImageCacheStatsResponse {
+    private long hits;          // trả thẳng từ bộ nhớ (không hỏi DB / đọc file)
+    private long misses;
+    private double hitRate;     // hits / (hits + misses)
+    private long evictions;     // bị đẩy ra do vượt maxBytes (LRU)
+    private long invalidations; // xoá do cập nhật xe / mẫu xe
+    private long rejected;      // ảnh lớn hơn giới hạn 1 entry, không cache
+    private int entries;
+    private long bytes;
+    private long maxBytes;
+}
@@ -14,6 +14,8 @@ public class StaffItemResponse {
     private int page;
     private int size;
     private long total;
+    // Khoá của dòng cuối, gửi lại qua ?cursor= để lấy trang kế (null khi hết dữ liệu)
+    private String nextCursor;
 
 
     @Data
@@ -0,0 +1,18 @@
+package com.evrental.evrentalsystem.response.vehicle;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NearbyStationResponse {
+    private Integer stationId;
+    private String stationName;
+    private String address;
+    private Double latitude;
+    private Double longitude;
+    private Double distanceKm;
+    private Integer vehicleModelId;   // null = đếm mọi model
+    private Long availableCount;
+}
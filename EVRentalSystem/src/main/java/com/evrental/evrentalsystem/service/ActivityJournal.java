@@ -0,0 +1,150 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.entity.*;
+import com.evrental.evrentalsystem.response.admin.ActivityFeedResponse;
+import com.evrental.evrentalsystem.util.AfterCommit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.evrental.evrentalsystem.service.DashboardTime.iso;
+
+/**
+ * Nhật ký hoạt động gần đây cho dashboard admin: ring buffer cố định, không khóa.
+ * Ghi: lấy số thứ tự bằng getAndIncrement rồi ghi đè slot (seq & MASK).
+ * Đọc: chụp lại tối đa CAPACITY slot, bỏ slot đã bị ghi đè giữa chừng (seq không khớp).
+ */
+@Slf4j
+@Component
+public class ActivityJournal {
+
+    public static final int CAPACITY = 512; // luỹ thừa của 2
+    private static final int MASK = CAPACITY - 1;
+
+    // Mới nhất trước, thời gian null xếp cuối; cùng thời gian thì seq lớn hơn trước
+    static final Comparator<Slot> NEWEST_FIRST = Comparator
+            .comparing((Slot s) -> s.entry.time(), Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+            .thenComparingLong(s -> s.seq)
+            .reversed();
+
+    private final AtomicReferenceArray<Slot> slots = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong head = new AtomicLong();
+    private volatile boolean warm;
+
+    // Nhận sự kiện mới (SSE dashboard...), không nhận dữ liệu warm-up
+    private final List<Consumer<Entry>> listeners = new CopyOnWriteArrayList<>();
+
+    // ===== Producers =====
+    public void booking(Booking b)    { record(Entry.booking(b)); }
+    public void payment(Payment p)    { record(Entry.payment(p)); }
+    public void fee(AdditionalFee f)  { record(Entry.fee(f)); }
+    public void contract(Contract c)  { record(Entry.contract(c)); }
+    public void report(Report r)      { record(Entry.report(r)); }
+
+    /** Ghi sự kiện; nếu đang trong transaction thì chỉ ghi sau khi commit thành công. */
+    public void record(Entry entry) {
+        AfterCommit.run(() -> publish(entry));
+    }
+
+    public void subscribe(Consumer<Entry> listener) {
+        listeners.add(listener);
+    }
+
+    private void publish(Entry entry) {
+        append(entry);
+        for (var l : listeners) {
+            try {
+                l.accept(entry);
+            } catch (Exception e) {
+                log.warn("Activity listener lỗi: {}", e.getMessage());
+            }
+        }
+    }
+
+    void append(Entry entry) {
+        long seq = head.getAndIncrement();
+        slots.set((int) (seq & MASK), new Slot(seq, entry));
+    }
+
+    /** Nạp dữ liệu ban đầu từ DB, bỏ qua sự kiện đã được ghi trực tiếp trong lúc khởi động. */
+    public void warm(List<Entry> entries) {
+        Set<Entry> present = new HashSet<>(latest(CAPACITY));
+        for (Entry e : entries) {
+            if (!present.contains(e)) append(e);
+        }
+        warm = true;
+    }
+
+    public boolean isWarm() {
+        return warm;
+    }
+
+    /** Tối đa limit sự kiện mới nhất, chỉ đọc bộ nhớ. */
+    public List<Entry> latest(int limit) {
+        long h = head.get();
+        long from = Math.max(0, h - CAPACITY);
+
+        List<Slot> snapshot = new ArrayList<>((int) (h - from));
+        for (long seq = h - 1; seq >= from; seq--) {
+            Slot s = slots.get((int) (seq & MASK));
+            if (s != null && s.seq == seq) {
+                snapshot.add(s);
+            }
+        }
+        snapshot.sort(NEWEST_FIRST);
+
+        int n = Math.min(Math.max(0, limit), snapshot.size());
+        List<Entry> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            out.add(snapshot.get(i).entry);
+        }
+        return out;
+    }
+
+    private record Slot(long seq, Entry entry) {}
+
+    public record Entry(LocalDateTime time, String type, String message) {
+
+        static Entry booking(Booking b) {
+            return new Entry(b.getCreatedAt(), "BOOKING",
+                    "Đơn thuê #" + b.getBookingId() + " được tạo");
+        }
+
+        static Entry payment(Payment p) {
+            return new Entry(p.getPaidAt(), "PAYMENT",
+                    "Thanh toán hoàn tất cho đơn #" + p.getBooking().getBookingId()
+                            + ": " + p.getTotal() + " VND");
+        }
+
+        static Entry fee(AdditionalFee f) {
+            return new Entry(f.getCreatedAt(), "FEE",
+                    "Phụ phí cho đơn #" + f.getBooking().getBookingId()
+                            + ": " + f.getFeeName() + " (" + f.getAmount() + " VND)");
+        }
+
+        static Entry contract(Contract c) {
+            return new Entry(c.getSignedAt(), "CONTRACT",
+                    "Hợp đồng cho đơn #" + c.getBooking().getBookingId() + " được ký");
+        }
+
+        static Entry report(Report r) {
+            return new Entry(r.getCreatedAt(), "REPORT",
+                    "Báo cáo từ nhân viên #" + r.getStaff().getUserId()
+                            + " về xe detail #" + r.getVehicleDetail().getId());
+        }
+
+        public ActivityFeedResponse.Activity toActivity() {
+            return new ActivityFeedResponse.Activity(iso(time), type, message);
+        }
+    }
+}
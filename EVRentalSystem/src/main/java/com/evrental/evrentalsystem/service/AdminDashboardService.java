@@ -5,6 +5,8 @@ import com.evrental.evrentalsystem.response.vehicle.FixingVehicleResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Service
 @RequiredArgsConstructor
@@ -14,25 +16,39 @@ public class AdminDashboardService {
     private final DashboardRecentService recent;
     private final DashboardActivityService activity;
     private final DashboardExportService export;
+    private final DashboardStreamService stream;
+    private final DashboardCache cache;
 
     // Tổng quan dashboard APIs
+    // Các API đọc được cache ngắn hạn + gộp request trùng (DashboardCache)
     public OverviewMetricsResponse getOverviewMetrics(String from, String to) {
-        return overview.metrics(from, to);
+        return cache.get(DashboardCache.key("metrics", from, to),
+                () -> overview.metrics(from, to));
     }
     public RevenueSeriesResponse getRevenueSeries(Integer period, String from, String to) {
-        return overview.revenueSeries(period, from, to);
+        return cache.get(DashboardCache.key("revenue-series", period, from, to),
+                () -> overview.revenueSeries(period, from, to));
     }
     public TopStationsResponse getTopStations(Integer limit, String from, String to) {
-        return station.topStations(limit, from, to);
+        return cache.get(DashboardCache.key("top-stations", limit, from, to),
+                () -> station.topStations(limit, from, to));
     }
     public RecentRentalsResponse getRecentRentals(Integer limit) {
-        return recent.recent(limit != null ? limit : 10);
+        int top = limit != null ? limit : 10;
+        return cache.get(DashboardCache.key("recent-rentals", top),
+                () -> recent.recent(top));
     }
     public ActivityFeedResponse getActivityFeed(Integer limit) {
         return activity.feed(limit != null ? limit : 10);
     }
-    public ResponseEntity<byte[]> exportOverview(String from, String to, String format) {
-        return export.exportOverview(from, to, format);
+    public ResponseEntity<StreamingResponseBody> exportOverview(String from, String to, String format, String sheet) {
+        return export.exportOverview(from, to, format, sheet);
+    }
+    public SseEmitter streamOverview() {
+        return stream.subscribe();
+    }
+    public DashboardCacheStatsResponse getCacheStats() {
+        return cache.stats();
     }
 
     // Station vehicle APIs
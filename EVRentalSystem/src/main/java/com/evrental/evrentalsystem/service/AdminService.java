@@ -8,13 +8,14 @@ import com.evrental.evrentalsystem.request.UpdateRenterDetailRequest;
 import com.evrental.evrentalsystem.request.UpdateReportStatusRequest;
 import com.evrental.evrentalsystem.response.admin.*;
 import com.evrental.evrentalsystem.response.vehicle.FixingVehicleResponse;
-import com.evrental.evrentalsystem.util.ImageUtil;
+import com.evrental.evrentalsystem.storage.ImageBlobs;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 //import lombok.extern.slf4j.Slf4j;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -35,13 +36,17 @@ public class AdminService {
     private final PaymentRepository paymentRepository;
     private final VehicleModelRepository vehicleModelRepository;
     private final InspectionRepository inspectionRepository;
+    private final VehicleReservationService reservationService;
+    private final FleetInventory fleetInventory;
 
     //Hàm lấy tổng số xe tại 1 trạm cụ thể cho admin.
     public TotalVehicleResponse getTotalVehiclesByStation(Integer stationId) {
         Station station = stationRepository.findById(stationId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy trạm với ID: " + stationId));
 
-        Long total = vehicleDetailRepository.countVehiclesByStationId(stationId);
+        Long total = fleetInventory.isReady()
+                ? fleetInventory.countAtStation(stationId)
+                : vehicleDetailRepository.countVehiclesByStationId(stationId);
         return new TotalVehicleResponse(station.getStationId(), station.getStationName(), total);
     }
 
@@ -50,7 +55,9 @@ public class AdminService {
         Station station = stationRepository.findById(stationId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy trạm với ID: " + stationId));
 
-        Long rented = vehicleDetailRepository.countRentedVehiclesByStationId(stationId);
+        Long rented = fleetInventory.isReady()
+                ? fleetInventory.countByStationAndStatus(stationId, VehicleStatus.RENTED)
+                : vehicleDetailRepository.countRentedVehiclesByStationId(stationId);
         return new RentedVehicleResponse(station.getStationId(), station.getStationName(), rented);
     }
 
@@ -110,18 +117,16 @@ public class AdminService {
         dto.setIsRisky(e.getIsRisky());
 
         // build URL cho từng ảnh (controller truyền baseImageUrl)
-        dto.setCccdFrontUrl(baseImageUrl + "?type=cccd_front");
-        dto.setCccdBackUrl(baseImageUrl + "?type=cccd_back");
-        dto.setDriverLicenseUrl(baseImageUrl + "?type=driver_license");
+        dto.setCccdFrontUrl(imageUrl(baseImageUrl, "cccd_front", e.getCccdFront()));
+        dto.setCccdBackUrl(imageUrl(baseImageUrl, "cccd_back", e.getCccdBack()));
+        dto.setDriverLicenseUrl(imageUrl(baseImageUrl, "driver_license", e.getDriverLicense()));
         return dto;
     }
 
-    public byte[] decodeImage(String base64) {
-        return ImageUtil.decodeBase64(base64);
-    }
-
-    public String detectMime(byte[] bytes) {
-        return ImageUtil.detectImageMimeType(bytes);
+    // &v=<hash>: URL đổi khi ảnh đổi nên endpoint ảnh trả được cache immutable
+    private static String imageUrl(String baseImageUrl, String type, String image) {
+        String version = ImageBlobs.versionOf(image);
+        return baseImageUrl + "?type=" + type + (version != null ? "&v=" + version : "");
     }
 
     @Transactional
@@ -339,8 +344,19 @@ public class AdminService {
         return builder.build();
     }
 
-    @Transactional
     public Booking updateRenterBooking(BookingUpdateRequest request) {
+        Booking current = bookingRepository.findById(request.getBookingId())
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng ID: " + request.getBookingId()));
+        Integer oldVehicleId = current.getVehicleDetail() != null ? current.getVehicleDetail().getId() : null;
+
+        // Khoá xe cũ + xe mới; đọc lại và ghi trong 1 transaction có kiểm tra @Version, xung đột thì thử lại
+        return reservationService.execute(
+                Arrays.asList(VehicleReservationService.vehicleKey(oldVehicleId),
+                        VehicleReservationService.vehicleKey(request.getVehicleDetailId())),
+                () -> applyBookingUpdate(request));
+    }
+
+    private Booking applyBookingUpdate(BookingUpdateRequest request) {
         // 1. Tìm Booking
         Booking booking = bookingRepository.findById(request.getBookingId())
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng ID: " + request.getBookingId()));
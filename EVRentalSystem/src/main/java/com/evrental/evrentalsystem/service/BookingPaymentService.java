@@ -5,6 +5,7 @@ import com.evrental.evrentalsystem.entity.Payment;
 import com.evrental.evrentalsystem.entity.Promotion;
 import com.evrental.evrentalsystem.enums.BookingStatus;
 import com.evrental.evrentalsystem.repository.BookingRepository;
+import com.evrental.evrentalsystem.repository.DailyRevenueRepository;
 import com.evrental.evrentalsystem.repository.PaymentRepository;
 import com.evrental.evrentalsystem.repository.PromotionRepository;
 import com.evrental.evrentalsystem.request.UpdatePaymentRequest;
@@ -22,6 +23,8 @@ public class BookingPaymentService {
     private final BookingRepository bookingRepository;
     private final PromotionRepository promotionRepository;
     private final PaymentRepository paymentRepository;
+    private final DailyRevenueRepository dailyRevenueRepository;
+    private final ActivityJournal activityJournal;
 
     /**
      * Cập nhật Booking (gán promotion nếu có) và tạo / cập nhật Payment cho booking.
@@ -57,6 +60,8 @@ public class BookingPaymentService {
         // Tạo hoặc cập nhật Payment
         Payment payment = paymentRepository.findByBooking(booking)
                 .map(existing -> {
+                    // Trừ số cũ khỏi bảng tổng hợp trước khi ghi đè
+                    rollup(existing.getPaidAt(), booking, existing.getTotal(), -1);
                     existing.setTotal(req.getTotal());
                     existing.setPaidAt(LocalDateTime.now());
                     return existing;
@@ -70,8 +75,21 @@ public class BookingPaymentService {
                 });
 
         Payment savedPayment = paymentRepository.save(payment);
+        rollup(savedPayment.getPaidAt(), booking, savedPayment.getTotal(), 1);
+        activityJournal.payment(savedPayment);
 
         // trả về payment đã lưu
         return savedPayment;
     }
+
+    // Cập nhật Daily_Revenue theo ngày thanh toán + trạm của booking (sign = +1 cộng, -1 trừ)
+    private void rollup(LocalDateTime paidAt, Booking booking, Double total, int sign) {
+        if (paidAt == null || total == null) return;
+        dailyRevenueRepository.addRevenue(
+                paidAt.toLocalDate(),
+                booking.getStation().getStationId(),
+                sign * total,
+                sign
+        );
+    }
 }
\ No newline at end of file
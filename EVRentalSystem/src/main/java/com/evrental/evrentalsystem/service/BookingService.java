@@ -12,7 +12,9 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -26,6 +28,9 @@ public class BookingService {
     private final VehicleDetailRepository vehicleDetailRepository;
     private final StationRepository stationRepository;
     private final BookingRepository bookingRepository;
+    private final ActivityJournal activityJournal;
+    private final VehicleAvailabilityIndex availabilityIndex;
+    private final VehicleReservationService reservationService;
 
     public BookingResponseDTO createBooking(BookingRequest request) {
         BookingResponseDTO response = new BookingResponseDTO();
@@ -39,33 +44,21 @@ public class BookingService {
         Station station = stationRepository.findById(request.getStationId())
                 .orElseThrow(() -> new RuntimeException("Station not found"));
 
-        VehicleDetail vehicleDetail = vehicleDetailRepository
-                .findFirstByVehicleModelAndStatus(model, VehicleStatus.AVAILABLE)
-                .orElse(null);
-
-        if (vehicleDetail == null) {
-            response.setMessage("No available vehicle for this model");
-            return response;
-        }
-
         // Tính số ngày thuê
         long days = ChronoUnit.DAYS.between(request.getStartTime(), request.getExpectedReturnTime());
         if (days <= 0) days = 1; // Nếu thuê trong cùng ngày, tính 1 ngày
 
         double totalAmount = model.getPrice() * days * 1000;
 
-        Booking booking = new Booking();
-        booking.setRenter(user);
-        booking.setVehicleModel(model);
-        booking.setVehicleDetail(null);
-        booking.setStation(station);
-        booking.setStartTime(request.getStartTime());
-        booking.setExpectedReturnTime(request.getExpectedReturnTime());
-        booking.setDeposit(request.getDeposit());
-        booking.setStatus(BookingStatus.Pending_Deposit_Payment);
-        bookingRepository.save(booking);
+        // Kiểm tra xe trống + lưu booking dưới khoá (trạm, model): 2 request cùng lúc không lấy trùng suất cuối
+        Booking booking = reservationService.execute(
+                Arrays.asList(VehicleReservationService.poolKey(station.getStationId(), model.getVehicleId())),
+                () -> reserve(request, user, model, station));
 
-        vehicleDetailRepository.save(vehicleDetail);
+        if (booking == null) {
+            response.setMessage("No available vehicle for this model");
+            return response;
+        }
 
         // Mapping sang response
         response.setBookingId(booking.getBookingId());
@@ -80,6 +73,35 @@ public class BookingService {
         return response;
     }
 
+    private Booking reserve(BookingRequest request, User user, VehicleModel model, Station station) {
+        if (!hasFreeVehicle(station, model, request.getStartTime(), request.getExpectedReturnTime())) {
+            return null;
+        }
+
+        Booking booking = new Booking();
+        booking.setRenter(user);
+        booking.setVehicleModel(model);
+        booking.setVehicleDetail(null);
+        booking.setStation(station);
+        booking.setStartTime(request.getStartTime());
+        booking.setExpectedReturnTime(request.getExpectedReturnTime());
+        booking.setDeposit(request.getDeposit());
+        booking.setStatus(BookingStatus.Pending_Deposit_Payment);
+        bookingRepository.save(booking);
+        activityJournal.booking(booking);
+        return booking;
+    }
+
+    // Xe đúng model tại trạm đã chọn, không bị booking khác giữ trong [start, expectedReturn)
+    private boolean hasFreeVehicle(Station station, VehicleModel model, LocalDateTime start, LocalDateTime end) {
+        if (availabilityIndex.isReady()) {
+            return availabilityIndex.hasCapacity(station.getStationId(), model.getVehicleId(), start, end);
+        }
+        // Index chưa dựng xong: chỉ kiểm tra còn xe AVAILABLE tại trạm
+        return vehicleDetailRepository.existsByVehicleModel_VehicleIdAndStation_StationIdAndStatus(
+                model.getVehicleId(), station.getStationId(), VehicleStatus.AVAILABLE);
+    }
+
     public String confirmDepositPayment(ConfirmDepositPaymentRequest request) {
         Booking booking = bookingRepository.findByBookingId(request.getBookingId())
                 .orElseThrow(() -> new RuntimeException("Not found booking!"));
@@ -21,6 +21,7 @@ public class ContractService {
     private final ContractRepository contractRepository;
     private final MailService mailService;
      private final OtpService otpService;
+    private final ActivityJournal activityJournal;
 
     @Transactional
     public String sendOtpForContract(Integer bookingId, String email) {
@@ -48,6 +49,7 @@ public class ContractService {
             contract.setSignedAt(LocalDateTime.now());
             contract.setStatus(ContractStatusEnum.SIGNED);
             contractRepository.save(contract);
+            activityJournal.contract(contract);
             Booking booking = bookingRepository.findByBookingId(bookingId)
                     .orElseThrow(() -> new RuntimeException("Không tìm thấy bookingId: " + bookingId));
             booking.setStatus(BookingStatus.Pending_Vehicle_Pickup); // hoặc "APPROVED" / "ACTIVE" tùy theo business
@@ -2,14 +2,29 @@ package com.evrental.evrentalsystem.service;
 
 import com.evrental.evrentalsystem.repository.*;
 import com.evrental.evrentalsystem.response.admin.ActivityFeedResponse;
+import com.evrental.evrentalsystem.service.ActivityJournal.Entry;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static com.evrental.evrentalsystem.service.DashboardTime.*;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class DashboardActivityService {
@@ -18,60 +33,117 @@ public class DashboardActivityService {
     private final AdditionalFeeRepository additionalFeeRepository;
     private final ContractRepository contractRepository;
     private final ReportRepository reportRepository;
+    private final ActivityJournal journal;
+
+    // Mỗi nguồn 1 luồng, giới hạn 5 luồng cho cả service (Java 17 chưa có virtual thread)
+    private static final int SOURCES = 5;
+    private final AtomicInteger threadSeq = new AtomicInteger();
+    private final ExecutorService pool = Executors.newFixedThreadPool(SOURCES, r -> {
+        Thread t = new Thread(r, "activity-feed-" + threadSeq.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Sự kiện mới nhất trước, thời gian null xếp cuối (giống ORDER BY ... DESC của SQL Server)
+    static final Comparator<Entry> NEWEST_FIRST = Comparator.comparing(Entry::time,
+            Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder())).reversed();
 
     public ActivityFeedResponse feed(int limit) {
         int top = Math.max(1, limit);
-        ArrayList<ActivityFeedResponse.Activity> items = new ArrayList<>();
-
-        // booking
-        for (var b : bookingRepository.findTopNByOrderByCreatedAtDesc(top)) {
-            items.add(new ActivityFeedResponse.Activity(
-                    iso(b.getCreatedAt()), "BOOKING",
-                    "Đơn thuê #" + b.getBookingId() + " được tạo"
-            ));
-        }
 
-        // payment
-        for (var p : paymentRepository.findTopNByOrderByPaidAtDesc(top)) {
-            items.add(new ActivityFeedResponse.Activity(
-                    iso(p.getPaidAt()), "PAYMENT",
-                    "Thanh toán hoàn tất cho đơn #" + p.getBooking().getBookingId()
-                            + ": " + p.getTotal() + " VND"
-            ));
-        }
+        // Đọc từ journal trong bộ nhớ; chỉ quay về DB khi journal chưa nạp được
+        List<Entry> entries = journal.isWarm() ? journal.latest(top) : fromDb(top);
+        return new ActivityFeedResponse(new ArrayList<>(entries.stream().map(Entry::toActivity).toList()));
+    }
 
-        // fee
-        for (var f : additionalFeeRepository.findTopNByOrderByCreatedAtDesc(top)) {
-            items.add(new ActivityFeedResponse.Activity(
-                    iso(f.getCreatedAt()), "FEE",
-                    "Phụ phí cho đơn #" + f.getBooking().getBookingId()
-                            + ": " + f.getFeeName() + " (" + f.getAmount() + " VND)"
-            ));
+    // Khởi động: nạp journal từ các truy vấn findTopN... hiện có
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmJournal() {
+        try {
+            journal.warm(fromDb(ActivityJournal.CAPACITY));
+        } catch (Exception e) {
+            log.warn("Không nạp được activity journal, feed sẽ đọc trực tiếp DB: {}", e.getMessage());
         }
+    }
+
+    List<Entry> fromDb(int top) {
+        // 5 truy vấn top-N chạy song song: độ trễ = nguồn chậm nhất thay vì tổng 5 nguồn
+        List<CompletableFuture<List<Entry>>> sources = List.of(
+                async(() -> bookings(top)),
+                async(() -> payments(top)),
+                async(() -> fees(top)),
+                async(() -> contracts(top)),
+                async(() -> reports(top))
+        );
 
-        // contract
-        for (var c : contractRepository.findTopNByOrderBySignedAtDesc(top)) {
-            items.add(new ActivityFeedResponse.Activity(
-                    iso(c.getSignedAt()), "CONTRACT",
-                    "Hợp đồng cho đơn #" + c.getBooking().getBookingId() + " được ký"
-            ));
+        List<List<Entry>> lists = new ArrayList<>(SOURCES);
+        for (var f : sources) {
+            lists.add(f.join());
         }
 
-        // report
-        for (var r : reportRepository.findTopNByOrderByCreatedAtDesc(top)) {
-            items.add(new ActivityFeedResponse.Activity(
-                    iso(r.getCreatedAt()), "REPORT",
-                    "Báo cáo từ nhân viên #" + r.getStaff().getUserId()
-                            + " về xe detail #" + r.getVehicleDetail().getId()
-            ));
+        return merge(lists, top);
+    }
+
+    /**
+     * Trộn k danh sách đã sắp xếp (mới nhất trước) bằng heap, dừng khi đủ limit.
+     * So sánh trên LocalDateTime gốc, chỉ format ISO cho các phần tử được trả về.
+     */
+    static List<Entry> merge(List<List<Entry>> lists, int limit) {
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, lists.size()),
+                (a, b) -> NEWEST_FIRST.compare(a.head, b.head));
+        for (var list : lists) {
+            Iterator<Entry> it = list.iterator();
+            if (it.hasNext()) heap.add(new Cursor(it.next(), it));
         }
 
-        items.sort(Comparator.comparing(ActivityFeedResponse.Activity::getTime,
-                Comparator.nullsLast(String::compareTo)).reversed());
-        if (items.size() > top) {
-            items = new ArrayList<>(items.subList(0, top));
+        List<Entry> out = new ArrayList<>(limit);
+        while (out.size() < limit && !heap.isEmpty()) {
+            Cursor c = heap.poll();
+            out.add(c.head);
+            if (c.rest.hasNext()) {
+                c.head = c.rest.next();
+                heap.add(c);
+            }
         }
+        return out;
+    }
+
+    private CompletableFuture<List<Entry>> async(Supplier<List<Entry>> source) {
+        return CompletableFuture.supplyAsync(source, pool);
+    }
+
+    private List<Entry> bookings(int top) {
+        return bookingRepository.findTopNByOrderByCreatedAtDesc(top).stream().map(Entry::booking).toList();
+    }
+
+    private List<Entry> payments(int top) {
+        return paymentRepository.findTopNByOrderByPaidAtDesc(top).stream().map(Entry::payment).toList();
+    }
+
+    private List<Entry> fees(int top) {
+        return additionalFeeRepository.findTopNByOrderByCreatedAtDesc(top).stream().map(Entry::fee).toList();
+    }
+
+    private List<Entry> contracts(int top) {
+        return contractRepository.findTopNByOrderBySignedAtDesc(top).stream().map(Entry::contract).toList();
+    }
 
-        return new ActivityFeedResponse(items);
+    private List<Entry> reports(int top) {
+        return reportRepository.findTopNByOrderByCreatedAtDesc(top).stream().map(Entry::report).toList();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static final class Cursor {
+        Entry head;
+        final Iterator<Entry> rest;
+
+        Cursor(Entry head, Iterator<Entry> rest) {
+            this.head = head;
+            this.rest = rest;
+        }
     }
 }
@@ -0,0 +1,106 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.response.admin.DashboardCacheStatsResponse;
+import com.evrental.evrentalsystem.util.AfterCommit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache kết quả dashboard admin theo (endpoint + tham số), TTL ngắn.
+ * Single-flight: các request trùng key đến cùng lúc khi cache miss dùng chung 1 lần tính.
+ * Bị xoá khi Booking / Payment thay đổi (DashboardCacheInvalidator), sau khi transaction commit.
+ */
+@Component
+public class DashboardCache {
+
+    private final long ttlNanos;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // Tăng mỗi lần invalidate: kết quả đang tính dở từ thế hệ cũ sẽ không được giữ lại
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public DashboardCache(@Value("${dashboard.cache.ttl-seconds:30}") long ttlSeconds) {
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader) {
+        long now = System.nanoTime();
+        Entry fresh = new Entry(new CompletableFuture<>(), now + ttlNanos, generation.get());
+        Entry cur = entries.compute(key, (k, old) -> old != null && !old.expired(now) ? old : fresh);
+
+        if (cur != fresh) {
+            if (cur.value.isDone()) hits.increment(); else coalesced.increment();
+            try {
+                return (T) cur.value.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        misses.increment();
+        long t0 = System.nanoTime();
+        try {
+            T value = loader.get();
+            fresh.value.complete(value);
+            if (fresh.generation != generation.get()) entries.remove(key, fresh);
+            return value;
+        } catch (RuntimeException e) {
+            fresh.value.completeExceptionally(e);
+            entries.remove(key, fresh);
+            throw e;
+        } finally {
+            loadNanos.add(System.nanoTime() - t0);
+        }
+    }
+
+    public static String key(String endpoint, Object... params) {
+        StringBuilder sb = new StringBuilder(endpoint);
+        for (Object p : params) sb.append('|').append(p);
+        return sb.toString();
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+        invalidations.increment();
+    }
+
+    /** Invalidate sau khi transaction hiện tại commit (hoặc ngay nếu không có transaction). */
+    public void invalidateAfterCommit() {
+        AfterCommit.run(this::invalidateAll);
+    }
+
+    public DashboardCacheStatsResponse stats() {
+        long h = hits.sum(), c = coalesced.sum(), m = misses.sum();
+        long total = h + c + m;
+        return DashboardCacheStatsResponse.builder()
+                .hits(h)
+                .coalesced(c)
+                .misses(m)
+                .hitRate(total == 0 ? 0.0 : (double) (h + c) / total)
+                .avgLoadMillis(m == 0 ? 0.0 : loadNanos.sum() / 1_000_000.0 / m)
+                .invalidations(invalidations.sum())
+                .size(entries.size())
+                .ttlSeconds(ttlNanos / 1_000_000_000L)
+                .build();
+    }
+
+    private record Entry(CompletableFuture<Object> value, long expiresAt, long generation) {
+        boolean expired(long now) {
+            return now - expiresAt > 0;
+        }
+    }
+}
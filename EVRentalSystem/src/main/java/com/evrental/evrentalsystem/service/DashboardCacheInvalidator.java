@@ -0,0 +1,30 @@
+package com.evrental.evrentalsystem.service;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener cho Booking / Payment: mọi thay đổi làm mới DashboardCache.
+ * Hibernate lấy bean này từ Spring (SpringBeanContainer); constructor rỗng để Hibernate
+ * vẫn tạo được khi chạy ngoài Spring context (khi đó không làm gì).
+ */
+@Component
+public class DashboardCacheInvalidator {
+
+    private DashboardCache cache;
+
+    @Autowired
+    public void setCache(DashboardCache cache) {
+        this.cache = cache;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onWrite(Object entity) {
+        if (cache != null) cache.invalidateAfterCommit();
+    }
+}
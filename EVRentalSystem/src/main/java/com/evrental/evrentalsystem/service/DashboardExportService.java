@@ -1,28 +1,199 @@
 package com.evrental.evrentalsystem.service;
 
+import com.evrental.evrentalsystem.repository.BookingRepository;
+import com.evrental.evrentalsystem.repository.projection.BookingExportProjection;
+import com.evrental.evrentalsystem.response.admin.RevenueSeriesResponse;
+import com.evrental.evrentalsystem.response.admin.TopStationsResponse;
 import lombok.RequiredArgsConstructor;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.function.Consumer;
 
+import static com.evrental.evrentalsystem.service.DashboardTime.*;
+
+/**
+ * Export dashboard dạng stream, ghi thẳng ra output stream của response.
+ * - csv : 1 bảng (sheet = revenue | stations | bookings, mặc định revenue)
+ * - xlsx: 3 sheet Revenue / Top stations / Bookings qua SXSSFWorkbook (chỉ giữ ROW_WINDOW dòng trong heap)
+ * Bookings được đọc bằng Stream từ DB nên heap không tăng theo độ dài khoảng ngày.
+ */
 @Service
 @RequiredArgsConstructor
 public class DashboardExportService {
+    private static final int ROW_WINDOW = 100;
+    private static final MediaType XLSX =
+            MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
     private final DashboardOverviewService overview;
+    private final DashboardStationService station;
+    private final BookingRepository bookingRepository;
+    private final PlatformTransactionManager transactionManager;
 
-    public ResponseEntity<byte[]> exportOverview(String from, String to, String format) {
-        var series = overview.revenueSeries(null, from, to);
-        StringBuilder sb = new StringBuilder("date,revenue\n");
-        for (var p : series.getPoints()) {
-            sb.append(p.getDate()).append(",").append(p.getRevenue()).append("\n");
-        }
-        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+    public ResponseEntity<StreamingResponseBody> exportOverview(String from, String to, String format, String sheet) {
+        String fmt = format == null ? "csv" : format.trim().toLowerCase(Locale.ROOT);
+        String dataset = sheet == null || sheet.isBlank() ? "revenue" : sheet.trim().toLowerCase(Locale.ROOT);
+        LocalDate[] r = range(from, to, 7);
 
         var headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType("text/csv; charset=UTF-8"));
-        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"overview.csv\"");
+        StreamingResponseBody body;
+        switch (fmt) {
+            case "csv" -> {
+                body = csv(r, dataset);
+                headers.setContentType(MediaType.parseMediaType("text/csv; charset=UTF-8"));
+                headers.set(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + ("revenue".equals(dataset) ? "overview" : dataset) + ".csv\"");
+            }
+            case "xlsx" -> {
+                body = xlsx(r);
+                headers.setContentType(XLSX);
+                headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"overview.xlsx\"");
+            }
+            default -> throw new IllegalArgumentException("format không hợp lệ: " + format + " (csv | xlsx)");
+        }
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
+    // ===== CSV =====
+    private StreamingResponseBody csv(LocalDate[] r, String dataset) {
+        Consumer<Writer> writer = switch (dataset) {
+            case "revenue" -> w -> {
+                line(w, "date", "revenue");
+                for (var p : revenue(r).getPoints()) line(w, p.getDate(), p.getRevenue());
+            };
+            case "stations" -> w -> {
+                line(w, "stationId", "stationName", "rentals", "revenue");
+                for (var s : stations(r).getStations())
+                    line(w, s.getStationId(), s.getStationName(), s.getRentals(), s.getRevenue());
+            };
+            case "bookings" -> w -> {
+                line(w, (Object[]) BOOKING_HEADERS);
+                bookings(r, b -> line(w, bookingCells(b)));
+            };
+            default -> throw new IllegalArgumentException(
+                    "sheet không hợp lệ: " + dataset + " (revenue | stations | bookings)");
+        };
+
+        return out -> {
+            Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            try {
+                writer.accept(w);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            w.flush();
+        };
+    }
+
+    private static void line(Writer w, Object... cells) {
+        try {
+            for (int i = 0; i < cells.length; i++) {
+                if (i > 0) w.write(',');
+                w.write(csvCell(cells[i]));
+            }
+            w.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csvCell(Object v) {
+        if (v == null) return "";
+        String s = v.toString();
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    // ===== XLSX =====
+    private StreamingResponseBody xlsx(LocalDate[] r) {
+        return out -> {
+            SXSSFWorkbook wb = new SXSSFWorkbook(ROW_WINDOW);
+            try {
+                Sheet revenue = wb.createSheet("Revenue");
+                int i = 0;
+                row(revenue, i++, "date", "revenue");
+                for (var p : revenue(r).getPoints()) row(revenue, i++, p.getDate(), p.getRevenue());
+
+                Sheet stations = wb.createSheet("Top stations");
+                i = 0;
+                row(stations, i++, "stationId", "stationName", "rentals", "revenue");
+                for (var s : stations(r).getStations())
+                    row(stations, i++, s.getStationId(), s.getStationName(), s.getRentals(), s.getRevenue());
+
+                Sheet bookings = wb.createSheet("Bookings");
+                row(bookings, 0, (Object[]) BOOKING_HEADERS);
+                int[] next = {1};
+                bookings(r, b -> row(bookings, next[0]++, bookingCells(b)));
+
+                wb.write(out);
+                out.flush();
+            } finally {
+                wb.dispose(); // xoá file tạm của SXSSF
+                wb.close();
+            }
+        };
+    }
+
+    private static void row(Sheet sheet, int index, Object... cells) {
+        Row row = sheet.createRow(index);
+        for (int c = 0; c < cells.length; c++) {
+            Object v = cells[c];
+            if (v == null) continue;
+            if (v instanceof Number n) row.createCell(c).setCellValue(n.doubleValue());
+            else row.createCell(c).setCellValue(v.toString());
+        }
+    }
+
+    // ===== Dữ liệu =====
+    private static final String[] BOOKING_HEADERS = {
+            "bookingId", "createdAt", "startTime", "expectedReturnTime", "actualReturnTime", "status",
+            "customerName", "stationName", "model", "licensePlate", "deposit", "total"
+    };
+
+    private static Object[] bookingCells(BookingExportProjection b) {
+        return new Object[]{
+                b.getBookingId(), iso(b.getCreatedAt()), iso(b.getStartTime()),
+                iso(b.getExpectedReturnTime()), iso(b.getActualReturnTime()),
+                b.getStatus() != null ? b.getStatus().toString() : null,
+                b.getCustomerName(), b.getStationName(), b.getModel(), b.getLicensePlate(),
+                b.getDeposit(), b.getTotal()
+        };
+    }
+
+    private RevenueSeriesResponse revenue(LocalDate[] r) {
+        return overview.revenueSeries(null, DATE_FMT.format(r[0]), DATE_FMT.format(r[1]));
+    }
+
+    private TopStationsResponse stations(LocalDate[] r) {
+        return station.topStations(Integer.MAX_VALUE, DATE_FMT.format(r[0]), DATE_FMT.format(r[1]));
+    }
+
+    // Stream cần transaction mở trong suốt quá trình đọc (chạy trên luồng async của StreamingResponseBody)
+    private void bookings(LocalDate[] r, Consumer<BookingExportProjection> sink) {
+        LocalDateTime start = r[0].atStartOfDay(ZONE).toLocalDateTime();
+        LocalDateTime endEx = r[1].plusDays(1).atStartOfDay(ZONE).toLocalDateTime();
 
-        return ResponseEntity.ok().headers(headers).body(bytes);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        tx.executeWithoutResult(status -> {
+            try (var rows = bookingRepository.streamForExport(start, endEx)) {
+                rows.forEach(sink);
+            }
+        });
     }
 }
@@ -1,14 +1,13 @@
 package com.evrental.evrentalsystem.service;
 
-import com.evrental.evrentalsystem.enums.UserEnum;
-import com.evrental.evrentalsystem.enums.VehicleStatus;
 import com.evrental.evrentalsystem.repository.*;
 import com.evrental.evrentalsystem.response.admin.*;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
 
 import static com.evrental.evrentalsystem.service.DashboardTime.*;
 
@@ -17,40 +16,30 @@ import static com.evrental.evrentalsystem.service.DashboardTime.*;
 public class DashboardOverviewService {
 
     private final BookingRepository bookingRepository;
-    private final PaymentRepository paymentRepository;
-    private final UserRepository userRepository;
-    private final VehicleDetailRepository vehicleDetailRepository;
+    private final DailyRevenueRepository dailyRevenueRepository;
 
     public OverviewMetricsResponse metrics(String from, String to) {
         // Khoảng ngày lấy dữ liệu (mặc định 7 ngày nếu không có from/to)
         LocalDate[] r = range(from, to, 7);
         LocalDate today = LocalDate.now(ZONE);
 
-        LocalDateTime start = r[0].atStartOfDay(ZONE).toLocalDateTime();
-        LocalDateTime endEx = r[1].plusDays(1).atStartOfDay(ZONE).toLocalDateTime();
-        long totalRevenue = nz(paymentRepository.sumTotalBetween(start, endEx));
-
-        // Thống kê hôm nay
-        LocalDateTime t0 = today.atStartOfDay(ZONE).toLocalDateTime();
-        LocalDateTime t1 = today.plusDays(1).atStartOfDay(ZONE).toLocalDateTime();
-        int rentalsToday = bookingRepository.countByStartTimeBetween(t0, t1);
-
-        int totalCustomers = userRepository.findByRole(UserEnum.RENTER).size();
-        long totalVehicles = vehicleDetailRepository.count();
-
-
-
-        // So sánh kỳ trước (để tính phần trăm tăng trưởng)
+        // So sánh kỳ trước (để tính phần trăm tăng trưởng): cùng độ dài, ngay trước r[0]
         long days = windowDays(r[0], r[1]);
-        LocalDateTime prevStart = r[0].minusDays(days).atStartOfDay(ZONE).toLocalDateTime();
-        LocalDateTime prevEnd = r[0].atStartOfDay(ZONE).toLocalDateTime();
-        long prevRevenue = nz(paymentRepository.sumTotalBetween(prevStart, prevEnd));
 
-        int prevRentals = bookingRepository.countByStartTimeBetween(
+        // Mọi KPI trong 1 câu truy vấn, bộ nhớ O(1)
+        var kpi = bookingRepository.overviewKpis(
+                r[0], r[1], r[0].minusDays(days),
                 today.minusDays(1).atStartOfDay(ZONE).toLocalDateTime(),
-                today.atStartOfDay(ZONE).toLocalDateTime()
+                today.atStartOfDay(ZONE).toLocalDateTime(),
+                today.plusDays(1).atStartOfDay(ZONE).toLocalDateTime()
         );
 
+        long totalRevenue = num(kpi.getTotalRevenue());
+        long prevRevenue = num(kpi.getPrevRevenue());
+        int rentalsToday = (int) num(kpi.getRentalsToday());
+        int prevRentals = (int) num(kpi.getRentalsYesterday());
+        int totalCustomers = (int) num(kpi.getTotalCustomers());
+
         // Trả về kết quả
         return OverviewMetricsResponse.builder()
                 .totalRevenue(totalRevenue)
@@ -65,13 +54,17 @@ public class DashboardOverviewService {
 
     public RevenueSeriesResponse revenueSeries(Integer period, String from, String to) {
         LocalDate[] r = range(from, to, period != null ? period : 7);
+
+        // Một lần quét bảng Daily_Revenue cho cả khoảng, ngày không có dữ liệu = 0
+        Map<LocalDate, Long> byDay = new HashMap<>();
+        for (var row : dailyRevenueRepository.sumByDayBetween(r[0], r[1])) {
+            byDay.put(row.getRevenueDate(), row.getTotal() != null ? row.getTotal().longValue() : 0L);
+        }
+
         long total = 0L;
         var points = new java.util.ArrayList<RevenueSeriesResponse.Point>();
-
         for (LocalDate d = r[0]; !d.isAfter(r[1]); d = d.plusDays(1)) {
-            LocalDateTime a = d.atStartOfDay(ZONE).toLocalDateTime();
-            LocalDateTime b = d.plusDays(1).atStartOfDay(ZONE).toLocalDateTime();
-            long day = nz(paymentRepository.sumTotalBetween(a, b));
+            long day = byDay.getOrDefault(d, 0L);
 
             total += day;
             points.add(new RevenueSeriesResponse.Point(DATE_FMT.format(d), day));
@@ -1,44 +1,28 @@
 package com.evrental.evrentalsystem.service;
 
-import com.evrental.evrentalsystem.entity.Payment;
 import com.evrental.evrentalsystem.repository.BookingRepository;
-import com.evrental.evrentalsystem.repository.PaymentRepository;
 import com.evrental.evrentalsystem.response.admin.RecentRentalsResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
-
-import static com.evrental.evrentalsystem.service.DashboardTime.*;
-
 @Service
 @RequiredArgsConstructor
 public class DashboardRecentService {
     private final BookingRepository bookingRepository;
-    private final PaymentRepository paymentRepository;
 
     public RecentRentalsResponse recent(int limit) {
         int top = Math.max(1, limit);
-        var bookings = bookingRepository.findTopNByOrderByCreatedAtDesc(top);
 
-        var rows = bookings.stream().map(b -> {
+        // 1 câu JOIN (renter, vehicle detail, payment) thay vì 1 + N truy vấn payment + lazy load
+        var rows = bookingRepository.findTopNRecentRentals(top).stream().map(b -> {
             // Giá thanh toán (nếu có)
-            Long price = paymentRepository.findByBooking_BookingId(b.getBookingId())
-                    .stream()
-                    .findFirst()
-                    .map(Payment::getTotal)
-                    .map(Number::longValue)
-                    .orElse(null);
+            Long price = b.getTotal() != null ? b.getTotal().longValue() : null;
 
             // Tên khách
-            String customerName = (b.getRenter() != null && b.getRenter().getFullName() != null)
-                    ? b.getRenter().getFullName()
-                    : "";
+            String customerName = b.getCustomerName() != null ? b.getCustomerName() : "";
 
             // Mã xe / biển số: lấy từ VehicleDetail
-            String vehicleCode = (b.getVehicleDetail() != null && b.getVehicleDetail().getLicensePlate() != null)
-                    ? b.getVehicleDetail().getLicensePlate()
-                    : "";
+            String vehicleCode = b.getLicensePlate() != null ? b.getLicensePlate() : "";
 
             // Thời gian: LocalDateTime -> chuỗi ISO đơn giản
             String startTime = b.getStartTime() != null ? b.getStartTime().toString() : null;
@@ -50,7 +34,7 @@ public class DashboardRecentService {
                     .vehicleCode(vehicleCode)
                     .startTime(startTime)
                     .endTime(endTime)
-                    .status(b.getStatus().toString() != null ? b.getStatus().toString() : "")
+                    .status(b.getStatus() != null ? b.getStatus().toString() : "")
                     .price(price)
                     .build();
         }).toList();
@@ -58,4 +42,3 @@ public class DashboardRecentService {
         return new RecentRentalsResponse(rows);
     }
 }
-
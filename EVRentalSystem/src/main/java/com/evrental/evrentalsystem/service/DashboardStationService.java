@@ -9,7 +9,6 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.time.*;
-import java.util.Comparator;
 import java.util.stream.Collectors;
 
 import static com.evrental.evrentalsystem.service.DashboardTime.*;
@@ -18,9 +17,8 @@ import static com.evrental.evrentalsystem.service.DashboardTime.*;
 @RequiredArgsConstructor
 public class DashboardStationService {
     private final StationRepository stationRepository;
-    private final BookingRepository bookingRepository;
-    private final PaymentRepository paymentRepository;
     private final VehicleDetailRepository vehicleDetailRepository;
+    private final FleetInventory fleetInventory;
 
     public TopStationsResponse topStations(Integer limit, String from, String to) {
         int top = limit != null ? limit : 5;
@@ -31,26 +29,15 @@ public class DashboardStationService {
         LocalDateTime start = startDate.atStartOfDay();
         LocalDateTime endEx = endDate.plusDays(1).atStartOfDay();
 
-        var rows = stationRepository.findAll().stream().map(st -> {
-                    int rentals = bookingRepository.countValidRentalsBetween(
-                            st.getStationId(), start, endEx);
-
-                    long revenue = nz(paymentRepository.sumTotalByStationBetween(
-                            st.getStationId(), start, endEx));
-
-                    return TopStationsResponse.StationRow.builder()
-                            .stationId(st.getStationId())
-                            .stationName(st.getStationName())
-                            .rentals(rentals)
-                            .revenue(revenue)
-                            .build();
-                }).sorted(
-                        Comparator
-                                .comparing(TopStationsResponse.StationRow::getRentals, Comparator.reverseOrder())
-                                .thenComparing(TopStationsResponse.StationRow::getRevenue, Comparator.reverseOrder())
-                                .thenComparing(TopStationsResponse.StationRow::getStationId)
-                )
-                .limit(top)
+        // 1 câu truy vấn cho mọi trạm (không còn 2N+1), sắp xếp + limit trong DB
+        var rows = stationRepository.findTopStations(start, endEx, startDate, endDate, Math.max(1, top))
+                .stream()
+                .map(st -> TopStationsResponse.StationRow.builder()
+                        .stationId(st.getStationId())
+                        .stationName(st.getStationName())
+                        .rentals(st.getRentals() != null ? st.getRentals().intValue() : 0)
+                        .revenue(st.getRevenue() != null ? st.getRevenue().longValue() : 0L)
+                        .build())
                 .collect(Collectors.toList());
 
         return new TopStationsResponse(rows);
@@ -60,13 +47,17 @@ public class DashboardStationService {
 
     public TotalVehicleResponse totalByStation(Integer stationId) {
         Station st = station(stationId);
-        long total = nz(vehicleDetailRepository.countVehiclesByStationId(stationId));
+        long total = fleetInventory.isReady()
+                ? fleetInventory.countAtStation(stationId)
+                : nz(vehicleDetailRepository.countVehiclesByStationId(stationId));
         return new TotalVehicleResponse(st.getStationId(), st.getStationName(), total);
     }
 
     public RentedVehicleResponse rentedByStation(Integer stationId) {
         Station st = station(stationId);
-        long rented = vehicleDetailRepository.countByStationIdAndStatus(stationId, VehicleStatus.RENTED);
+        long rented = fleetInventory.isReady()
+                ? fleetInventory.countByStationAndStatus(stationId, VehicleStatus.RENTED)
+                : vehicleDetailRepository.countByStationIdAndStatus(stationId, VehicleStatus.RENTED);
         return new RentedVehicleResponse(st.getStationId(), st.getStationName(), rented);
     }
 
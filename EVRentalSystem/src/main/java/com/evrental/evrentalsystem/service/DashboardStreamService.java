@@ -0,0 +1,241 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.response.admin.OverviewMetricsResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * SSE cho dashboard admin: đẩy activity + KPI khi có booking / payment / report.
+ * Fan-out dùng chung: mỗi sự kiện được serialize 1 lần, KPI tính 1 lần (gộp trong KPI_DEBOUNCE_MS)
+ * rồi gửi cho mọi admin đang kết nối, thay vì mỗi tab tự poll lại các API.
+ * - Mỗi admin có hàng đợi riêng (QUEUE_CAPACITY) và tối đa 1 luồng gửi (pool không giới hạn cố định):
+ *   1 socket chậm / chết chỉ giữ luồng của chính nó, không chặn các tab khác.
+ * - Hàng đợi đầy hoặc 1 lần gửi kẹt quá SEND_TIMEOUT_MS thì đóng kết nối đó (trình duyệt tự kết nối lại):
+ *   luồng đang kẹt trong send bị interrupt, emitter được complete ngay khi send trả về.
+ * - KPI: lúc kết nối gửi đủ các trường, sau đó chỉ gửi các trường đã đổi.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DashboardStreamService {
+
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L;
+    private static final long KPI_DEBOUNCE_MS = 1000L;
+    private static final long HEARTBEAT_S = 25L;
+    private static final long SEND_TIMEOUT_MS = 10_000L;
+    private static final int QUEUE_CAPACITY = 100;
+    private static final int INITIAL_ACTIVITIES = 10;
+    private static final Set<String> KPI_TRIGGERS = Set.of("BOOKING", "PAYMENT", "REPORT");
+
+    private final ActivityJournal journal;
+    private final DashboardOverviewService overview;
+    private final ObjectMapper objectMapper;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean kpiPending = new AtomicBoolean();
+    private volatile Map<String, Object> lastKpi;
+
+    // Luồng điều phối: nhận sự kiện, tính KPI, heartbeat; không tự ghi ra socket
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemon("dashboard-stream"));
+    // Pool ghi ra socket, mỗi admin tối đa 1 luồng tại 1 thời điểm (số luồng <= số admin đang kết nối)
+    private final ExecutorService senders = Executors.newCachedThreadPool(daemon("dashboard-stream-send"));
+
+    private record Event(String name, String data) {}
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile long sendingSince; // 0 = không gửi
+        volatile Thread sender;     // luồng đang drain, để drop() interrupt khi send kẹt
+        volatile boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Event event) {
+            if (closed) return;
+            if (!queue.offer(event)) {
+                drop(this, "hàng đợi đầy");
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            Thread.interrupted(); // bỏ interrupt sót lại từ subscriber trước trên cùng luồng pool
+            sender = Thread.currentThread();
+            try {
+                Event event;
+                while (!closed && (event = queue.poll()) != null) {
+                    sendingSince = System.currentTimeMillis();
+                    if (event.name() == null) {
+                        emitter.send(SseEmitter.event().comment(event.data()));
+                    } else {
+                        emitter.send(SseEmitter.event().name(event.name()).data(event.data(), MediaType.APPLICATION_JSON));
+                    }
+                }
+            } catch (Exception e) {
+                drop(this, e.getMessage());
+            } finally {
+                sender = null;
+                sendingSince = 0;
+                Thread.interrupted();
+                draining.set(false);
+            }
+            if (closed) {
+                complete();
+                return;
+            }
+            // Sự kiện đến sau lần poll cuối nhưng trước khi nhả cờ
+            if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        void complete() {
+            try {
+                emitter.complete();
+            } catch (Exception ignored) {
+                // Kết nối đã hỏng
+            }
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        journal.subscribe(entry -> scheduler.execute(() -> onActivity(entry)));
+        scheduler.scheduleAtFixedRate(this::heartbeat, HEARTBEAT_S, HEARTBEAT_S, TimeUnit.SECONDS);
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscriber sub = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(sub));
+        emitter.onTimeout(() -> subscribers.remove(sub));
+        emitter.onError(e -> subscribers.remove(sub));
+
+        // Trạng thái ban đầu cho tab vừa mở, xếp hàng trước mọi sự kiện phát sau đó
+        scheduler.execute(() -> {
+            subscribers.add(sub);
+            for (var e : journal.latest(INITIAL_ACTIVITIES)) {
+                String data = json(e.toActivity());
+                if (data != null) sub.offer(new Event("activity", data));
+            }
+            Map<String, Object> kpi = lastKpi != null ? lastKpi : computeKpi();
+            String data = kpi != null ? json(kpi) : null;
+            if (data != null) sub.offer(new Event("kpi", data));
+        });
+        return emitter;
+    }
+
+    private void onActivity(ActivityJournal.Entry entry) {
+        if (subscribers.isEmpty()) return;
+        broadcast("activity", json(entry.toActivity()));
+
+        if (KPI_TRIGGERS.contains(entry.type()) && kpiPending.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                kpiPending.set(false);
+                Map<String, Object> before = lastKpi;
+                Map<String, Object> after = computeKpi();
+                if (after == null) return;
+                Map<String, Object> changed = changedFields(before, after);
+                if (!changed.isEmpty()) broadcast("kpi", json(changed));
+            }, KPI_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Map<String, Object> computeKpi() {
+        try {
+            OverviewMetricsResponse metrics = overview.metrics(null, null);
+            lastKpi = objectMapper.convertValue(metrics, new TypeReference<LinkedHashMap<String, Object>>() {});
+            return lastKpi;
+        } catch (Exception e) {
+            log.warn("Không tính được KPI cho dashboard stream: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // Chỉ các trường cấp 1 khác giá trị lần trước (delta lồng nhau gửi nguyên object)
+    static Map<String, Object> changedFields(Map<String, Object> before, Map<String, Object> after) {
+        if (before == null) return after;
+        Map<String, Object> changed = new LinkedHashMap<>();
+        after.forEach((k, v) -> {
+            if (!Objects.equals(before.get(k), v)) changed.put(k, v);
+        });
+        return changed;
+    }
+
+    private void heartbeat() {
+        long now = System.currentTimeMillis();
+        for (Subscriber sub : subscribers) {
+            long since = sub.sendingSince;
+            if (since != 0 && now - since > SEND_TIMEOUT_MS) {
+                drop(sub, "gửi quá " + SEND_TIMEOUT_MS + "ms");
+            } else {
+                sub.offer(new Event(null, "ping"));
+            }
+        }
+    }
+
+    private void broadcast(String event, String data) {
+        if (data == null) return;
+        Event e = new Event(event, data);
+        for (Subscriber sub : subscribers) {
+            sub.offer(e);
+        }
+    }
+
+    private void drop(Subscriber sub, String reason) {
+        if (!subscribers.remove(sub)) return;
+        log.debug("Đóng kết nối dashboard stream: {}", reason);
+        sub.closed = true;
+        sub.queue.clear();
+        // complete() chờ cùng khoá với send(): đang gửi dở thì interrupt luồng gửi (send ném lỗi),
+        // luồng đó tự complete khi send trả về
+        Thread t = sub.sender;
+        if (t != null && sub.sendingSince != 0) {
+            t.interrupt();
+        } else {
+            sub.complete();
+        }
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            log.warn("Không serialize được dữ liệu stream: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.forEach(s -> s.emitter.complete());
+        scheduler.shutdownNow();
+        senders.shutdownNow();
+    }
+}
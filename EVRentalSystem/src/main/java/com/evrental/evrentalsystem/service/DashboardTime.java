@@ -41,6 +41,7 @@ public final class DashboardTime {
     }
 
     public static long nz(Long v) { return v != null ? v : 0L; }
+    public static long num(Number v) { return v != null ? v.longValue() : 0L; }
     public static String nz(String s) { return s != null ? s : ""; }
     private static boolean notBlank(String s) { return s != null && !s.isBlank(); }
 }
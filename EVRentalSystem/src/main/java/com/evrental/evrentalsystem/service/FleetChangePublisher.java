@@ -0,0 +1,63 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.entity.Booking;
+import com.evrental.evrentalsystem.entity.Station;
+import com.evrental.evrentalsystem.entity.VehicleDetail;
+import com.evrental.evrentalsystem.entity.VehicleModel;
+import com.evrental.evrentalsystem.event.BookingChangedEvent;
+import com.evrental.evrentalsystem.event.StationChangedEvent;
+import com.evrental.evrentalsystem.event.VehicleChangedEvent;
+import com.evrental.evrentalsystem.event.VehicleModelChangedEvent;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener duy nhất cho VehicleDetail / VehicleModel / Station / Booking: đổi callback của Hibernate
+ * thành sự kiện (package event), các chỉ mục trong bộ nhớ nhận bằng @TransactionalEventListener (sau commit).
+ * Sự kiện chỉ chép giá trị thuần + id quan hệ, không đọc quan hệ của entity giữa lúc flush.
+ * Update hàng loạt bằng JPQL không đi qua đây: caller tự phát VehicleStatusChangedEvent.
+ * Constructor rỗng giống DashboardCacheInvalidator (ngoài Spring context thì không làm gì).
+ */
+@Component
+public class FleetChangePublisher {
+
+    private ApplicationEventPublisher publisher;
+
+    @Autowired
+    public void setPublisher(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onWrite(Object entity) {
+        if (publisher == null) return;
+        if (entity instanceof VehicleDetail v) {
+            if (v.getId() != null) publisher.publishEvent(VehicleChangedEvent.of(v));
+        } else if (entity instanceof Booking b) {
+            if (b.getBookingId() != null) publisher.publishEvent(BookingChangedEvent.of(b));
+        } else if (entity instanceof VehicleModel m) {
+            publisher.publishEvent(new VehicleModelChangedEvent(m.getVehicleId(), m.getBrand(), m.getModel(), false));
+        } else if (entity instanceof Station s) {
+            publisher.publishEvent(new StationChangedEvent(s.getStationId(), s.getStationName(), false));
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        if (publisher == null) return;
+        if (entity instanceof VehicleDetail v) {
+            publisher.publishEvent(VehicleChangedEvent.removed(v.getId()));
+        } else if (entity instanceof Booking b) {
+            publisher.publishEvent(BookingChangedEvent.removed(b.getBookingId()));
+        } else if (entity instanceof VehicleModel m) {
+            publisher.publishEvent(new VehicleModelChangedEvent(m.getVehicleId(), m.getBrand(), m.getModel(), true));
+        } else if (entity instanceof Station s) {
+            publisher.publishEvent(new StationChangedEvent(s.getStationId(), s.getStationName(), true));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.event.VehicleChangedEvent;
+import com.evrental.evrentalsystem.event.VehicleStatusChangedEvent;
+import com.evrental.evrentalsystem.enums.VehicleStatus;
+import com.evrental.evrentalsystem.repository.VehicleDetailRepository;
+import com.evrental.evrentalsystem.repository.projection.VehicleSlotProjection;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Số xe theo (trạm, model, trạng thái) trong bộ nhớ, thay cho các câu COUNT trên Vehicle_Detail.
+ * - Mỗi ô là 1 LongAdder; mỗi xe nhớ ô hiện tại, đổi trạng thái / trạm / model thì -1 ô cũ, +1 ô mới
+ *   (ConcurrentHashMap.compute theo id xe nên 2 lần đổi cùng xe không lệch số).
+ * - Ngoài ô đầy đủ còn giữ sẵn tổng theo mọi tổ hợp bỏ trống (trạm / model / trạng thái = null là "bất kỳ"),
+ *   cập nhật luôn trong move(), nên mọi hàm count chỉ là 1 lần tra map.
+ * - Cập nhật sau commit từ sự kiện của FleetChangePublisher (mọi lần save VehicleDetail: booking, report, admin...)
+ *   và VehicleStatusChangedEvent của các update hàng loạt bằng JPQL.
+ * - Đối soát lại toàn bộ từ DB lúc khởi động và mỗi inventory.reconcile-minutes phút; chưa đối soát lần đầu
+ *   thì isReady() = false, caller dùng câu COUNT như trước. Xe DELETED / chưa có trạng thái không được đếm.
+ */
+@Slf4j
+@Component
+public class FleetInventory {
+
+    // Trường null = "bất kỳ"; ô của 1 xe luôn đủ 3 trường, các tổng gộp bỏ trống 1 vài trường
+    private record Cell(Integer stationId, Integer modelId, VehicleStatus status) {
+
+        // Ô đầy đủ + 7 tổng gộp chứa nó
+        List<Cell> rollups() {
+            List<Cell> keys = new ArrayList<>(8);
+            for (int mask = 0; mask < 8; mask++) {
+                keys.add(new Cell((mask & 1) == 0 ? stationId : null,
+                        (mask & 2) == 0 ? modelId : null,
+                        (mask & 4) == 0 ? status : null));
+            }
+            return keys;
+        }
+    }
+
+    private record Move(int vehicleId, Cell cell) {}
+
+    private static final class Matrix {
+        private final ConcurrentHashMap<Cell, LongAdder> counts = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Integer, Cell> positions = new ConcurrentHashMap<>();
+
+        void move(int vehicleId, Cell cell) {
+            positions.compute(vehicleId, (id, old) -> {
+                if (Objects.equals(old, cell)) return old;
+                if (old != null) old.rollups().forEach(k -> counts.get(k).decrement());
+                if (cell != null) cell.rollups().forEach(k -> counts.computeIfAbsent(k, c -> new LongAdder()).increment());
+                return cell;
+            });
+        }
+
+        long get(Cell key) {
+            LongAdder n = counts.get(key);
+            return n == null ? 0 : n.sum();
+        }
+    }
+
+    private final VehicleDetailRepository vehicleDetailRepository;
+    private final long reconcileMinutes;
+
+    // Đổi ô dùng read lock (nhiều luồng cùng lúc), thay ma trận khi đối soát dùng write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Matrix matrix = new Matrix();
+    private volatile boolean ready;
+    // Thay đổi đến trong lúc đang đọc DB để đối soát: áp lại lên ma trận mới
+    private volatile Queue<Move> replay;
+
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "fleet-inventory");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public FleetInventory(VehicleDetailRepository vehicleDetailRepository,
+                          @Value("${inventory.reconcile-minutes:10}") long reconcileMinutes) {
+        this.vehicleDetailRepository = vehicleDetailRepository;
+        this.reconcileMinutes = Math.max(1, reconcileMinutes);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // ===== Đọc =====
+
+    public long count(Integer stationId, Integer modelId, VehicleStatus status) {
+        return matrix.get(new Cell(stationId, modelId, status));
+    }
+
+    /** Tổng xe của trạm, không tính DELETED (như countVehiclesByStationId). */
+    public long countAtStation(Integer stationId) {
+        return count(stationId, null, null);
+    }
+
+    public long countByStationAndStatus(Integer stationId, VehicleStatus status) {
+        return count(stationId, null, status);
+    }
+
+    public long countByModelAndStatus(Integer modelId, VehicleStatus status) {
+        return count(null, modelId, status);
+    }
+
+    public long countByStatus(VehicleStatus status) {
+        return count(null, null, status);
+    }
+
+    // ===== Ghi (sau commit) =====
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVehicleChanged(VehicleChangedEvent e) {
+        if (e.vehicleId() == null) return;
+        Cell cell = e.removed() ? null : cell(e.stationId(), e.modelId(), e.status());
+        apply(new Move(e.vehicleId(), cell));
+    }
+
+    /** Update hàng loạt: giữ trạm / model đang biết, chỉ đổi trạng thái. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVehicleStatusChanged(VehicleStatusChangedEvent e) {
+        Integer vehicleId = e.vehicleId();
+        if (vehicleId == null) return;
+        Cell old = matrix.positions.get(vehicleId);
+        // Chưa biết xe này (vd xe DELETED được khôi phục): đợi lần đối soát kế tiếp
+        if (old != null) apply(new Move(vehicleId, cell(old.stationId(), old.modelId(), e.status())));
+    }
+
+    private static Cell cell(Integer stationId, Integer modelId, VehicleStatus status) {
+        if (stationId == null || modelId == null || status == null || status == VehicleStatus.DELETED) return null;
+        return new Cell(stationId, modelId, status);
+    }
+
+    private void apply(Move move) {
+        lock.readLock().lock();
+        try {
+            matrix.move(move.vehicleId(), move.cell());
+            Queue<Move> pending = replay;
+            if (pending != null) pending.add(move);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ===== Đối soát =====
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startReconcile() {
+        worker.scheduleWithFixedDelay(this::reconcile, 0, reconcileMinutes, TimeUnit.MINUTES);
+    }
+
+    void reconcile() {
+        replay = new ConcurrentLinkedQueue<>();
+        try {
+            List<VehicleSlotProjection> rows = vehicleDetailRepository.findAllSlots();
+            Matrix fresh = new Matrix();
+            for (VehicleSlotProjection r : rows) {
+                fresh.move(r.getVehicleDetailId(), cell(r.getStationId(), r.getVehicleModelId(), r.getStatus()));
+            }
+            long drift;
+            lock.writeLock().lock();
+            try {
+                for (Move m : replay) fresh.move(m.vehicleId(), m.cell());
+                drift = ready ? drift(matrix, fresh) : 0;
+                matrix = fresh;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (drift > 0) log.warn("FleetInventory lệch {} xe so với DB, đã đối soát lại", drift);
+        } catch (Exception e) {
+            log.warn("Không đối soát được FleetInventory: {}", e.getMessage());
+        } finally {
+            replay = null;
+        }
+    }
+
+    // Số xe nằm sai ô trước khi đối soát (chỉ để log)
+    private static long drift(Matrix before, Matrix after) {
+        long diff = 0;
+        for (Map.Entry<Integer, Cell> e : after.positions.entrySet()) {
+            if (!e.getValue().equals(before.positions.get(e.getKey()))) diff++;
+        }
+        for (Integer id : before.positions.keySet()) {
+            if (!after.positions.containsKey(id)) diff++;
+        }
+        return diff;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+}
@@ -452,8 +452,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 
 @Service
@@ -465,18 +467,43 @@ public class StaffAdminService {
     private final StationRepository stationRepository;
     private final EmployeeDetailRepository employeeDetailRepository;
 
+    // Chỉ số hiệu suất đọc từ bảng tổng hợp Staff_Performance (alias sp), xem StaffPerformanceTracker
+    private static final String PERF_JOIN = " LEFT JOIN [Staff_Performance] sp ON sp.[staff_id] = u.[user_id] ";
+    private static final String AVG_RATING =
+            "CASE WHEN sp.[rating_count] > 0 THEN CAST(sp.[rating_sum] AS FLOAT) / sp.[rating_count] END";
+    private static final String PERF_COLUMNS =
+            "ISNULL(sp.[handovers], 0) AS handovers, " +
+                    AVG_RATING + " AS avg_rating, " +
+                    "CASE WHEN sp.[contract_count] > 0 THEN CAST(100.0 * sp.[on_time_count] / sp.[contract_count] AS INT) ELSE 0 END AS on_time_rate, " +
+                    "CASE WHEN sp.[rating_count] > 0 THEN CAST(100.0 * sp.[rating_good] / sp.[rating_count] AS INT) ELSE 0 END AS customer_satisfaction, ";
+    private static final String STAFF_COLUMNS =
+            "u.[user_id] AS id, u.[full_name] AS name, u.[email] AS email, u.[role] AS position, u.[status] AS emp_status, " +
+                    "u.[phone] AS phone, u.[created_at] AS join_date, ed.[station_id] AS station_id, s.[station_name] AS station_name, " +
+                    PERF_COLUMNS +
+                    "CAST(0 AS INT) AS shifts_this_month, CAST(0 AS INT) AS shifts_total ";
+
+    /**
+     * Danh sách nhân viên, sắp theo (full_name, user_id).
+     * - Không có cursor: phân trang theo page/size (OFFSET ... FETCH).
+     * - Có cursor (nextCursor của trang trước): seek theo khoá (full_name, user_id), không phụ thuộc độ sâu trang.
+     * Trang dữ liệu và KPI (total = TotalStaff) gửi chung 1 batch, đọc 2 result set trong 1 round-trip;
+     * includeKpis=false thì bỏ phần KPI (kpis = null, total = -1).
+     */
     public StaffItemResponse getStaffList(String search,
                                           Integer stationId,
                                           String position,
                                           String status,
                                           int page,
-                                          int size) {
+                                          int size,
+                                          String cursor,
+                                          boolean includeKpis) {
 
         String normSearch = normalize(search);
         Integer normStation = stationId;
         String normPosition = normalize(position);
         String normStatus = normalize(status);
         if (normStatus != null) normStatus = normStatus.toUpperCase();
+        int pageSize = Math.max(1, size);
 
         StringBuilder where = new StringBuilder(" WHERE u.[role] = 'STAFF' ");
         List<Object> params = new ArrayList<>();
@@ -502,122 +529,82 @@ public class StaffAdminService {
             params.add(normStatus);
         }
 
-        // Tính range phân trang
-        int start = Math.max(1, (page <= 1 ? 1 : ((page - 1) * size + 1)));
-        int end = start + Math.max(1, size) - 1;
-
-        // 1) Page data với ROW_NUMBER
-        String pageSql =
-                "WITH F AS ( " +
-                        "  SELECT " +
-                        "    u.[user_id] AS id, u.[full_name] AS name, u.[email] AS email, u.[role] AS position, u.[status] AS emp_status, u.[phone] AS phone, u.[created_at] AS join_date, " +
-                        "    ed.[station_id] AS station_id, s.[station_name] AS station_name, " +
-                        "    ISNULL((SELECT COUNT(*) FROM [Inspection] i WHERE i.[staff_id] = u.[user_id]), 0) AS handovers, " +
-                        "    (SELECT AVG(CAST(r.[rating] AS FLOAT)) " +
-                        "       FROM [Contract] c JOIN [Booking] b ON b.[booking_id] = c.[booking_id] " +
-                        "       LEFT JOIN [Review] r ON r.[booking_id] = b.[booking_id] " +
-                        "      WHERE c.[staff_id] = u.[user_id]) AS avg_rating, " +
-                        "    (SELECT CASE WHEN COUNT(*) = 0 THEN 0 ELSE CAST(100.0 * SUM(CASE WHEN b.[actual_return_time] IS NOT NULL AND b.[actual_return_time] <= b.[expected_return_time] THEN 1 ELSE 0 END) / COUNT(*) AS INT) END " +
-                        "       FROM [Contract] c JOIN [Booking] b ON b.[booking_id] = c.[booking_id] " +
-                        "      WHERE c.[staff_id] = u.[user_id]) AS on_time_rate, " +
-                        "    (SELECT CASE WHEN COUNT(r.[rating]) = 0 THEN 0 ELSE CAST(100.0 * SUM(CASE WHEN r.[rating] >= 4 THEN 1 ELSE 0 END) / COUNT(r.[rating]) AS INT) END " +
-                        "       FROM [Contract] c JOIN [Booking] b ON b.[booking_id] = c.[booking_id] " +
-                        "       LEFT JOIN [Review] r ON r.[booking_id] = b.[booking_id] " +
-                        "      WHERE c.[staff_id] = u.[user_id]) AS customer_satisfaction, " +
-                        "    CAST(0 AS INT) AS shifts_this_month, CAST(0 AS INT) AS shifts_total, " +
-                        "    ROW_NUMBER() OVER (ORDER BY u.[full_name] ASC, u.[user_id] ASC) AS rn " +
-                        "  FROM [User] u " +
-                        "  JOIN [Employee_Detail] ed ON ed.[employee_id] = u.[user_id] " +
-                        "  JOIN [Station] s          ON s.[station_id]   = ed.[station_id] " +
-                        where +
-                        ") " +
-                        "SELECT * FROM F WHERE rn BETWEEN ? AND ? " +
-                        "ORDER BY rn;";
-
-        // 2) Total
-        String totalSql =
-                "SELECT COUNT(*) AS [Total] " +
-                        "FROM [User] u " +
+        String from =
+                "FROM [User] u " +
                         "JOIN [Employee_Detail] ed ON ed.[employee_id] = u.[user_id] " +
                         "JOIN [Station] s          ON s.[station_id]   = ed.[station_id] " +
-                        where;
+                        PERF_JOIN;
+
+        // 1) Page data: lấy dư 1 dòng để biết còn trang sau
+        List<Object> pageParams = new ArrayList<>(params);
+        String pageSql;
+        if (cursor != null && !cursor.isBlank()) {
+            Cursor after = Cursor.decode(cursor);
+            StringBuilder seek = new StringBuilder(where);
+            if (after.name() == null) {
+                // NULL đứng đầu khi ORDER BY ASC
+                seek.append(" AND (u.[full_name] IS NOT NULL OR u.[user_id] > ?) ");
+                pageParams.add(after.id());
+            } else {
+                seek.append(" AND (u.[full_name] > ? OR (u.[full_name] = ? AND u.[user_id] > ?)) ");
+                pageParams.add(after.name());
+                pageParams.add(after.name());
+                pageParams.add(after.id());
+            }
+            pageSql = "SELECT TOP (" + (pageSize + 1) + ") " + STAFF_COLUMNS + from + seek +
+                    "ORDER BY u.[full_name] ASC, u.[user_id] ASC;";
+        } else {
+            int offset = page <= 1 ? 0 : (page - 1) * pageSize;
+            pageSql = "SELECT " + STAFF_COLUMNS + from + where +
+                    "ORDER BY u.[full_name] ASC, u.[user_id] ASC " +
+                    "OFFSET " + offset + " ROWS FETCH NEXT " + (pageSize + 1) + " ROWS ONLY;";
+        }
 
-        // 3) KPIs
+        // 2) KPIs (TotalStaff cùng bộ lọc nên cũng là total của danh sách)
         String kpiSql =
                 "SELECT " +
                         "  COUNT(*) AS [TotalStaff], " +
                         "  SUM(CASE WHEN u.[status] = 'ACTIVE' THEN 1 ELSE 0 END) AS [ActiveCount], " +
-                        "  AVG(ISNULL(ravg.[avg_rating], 0)) AS [AvgRating], " +
-                        "  SUM(ISNULL(hc.[handovers], 0)) AS [TotalHandovers] " +
-                        "FROM [User] u " +
-                        "JOIN [Employee_Detail] ed ON ed.[employee_id] = u.[user_id] " +
-                        "JOIN [Station] s          ON s.[station_id]   = ed.[station_id] " +
-                        "OUTER APPLY ( " +
-                        "   SELECT AVG(CAST(r.[rating] AS FLOAT)) AS [avg_rating] " +
-                        "   FROM [Contract] c " +
-                        "   JOIN [Booking] b ON b.[booking_id] = c.[booking_id] " +
-                        "   LEFT JOIN [Review] r ON r.[booking_id] = b.[booking_id] " +
-                        "   WHERE c.[staff_id] = u.[user_id] " +
-                        ") ravg " +
-                        "OUTER APPLY ( " +
-                        "   SELECT COUNT(*) AS [handovers] " +
-                        "   FROM [Inspection] i " +
-                        "   WHERE i.[staff_id] = u.[user_id] " +
-                        ") hc " +
-                        where.toString();
+                        "  AVG(ISNULL(" + AVG_RATING + ", 0)) AS [AvgRating], " +
+                        "  SUM(ISNULL(sp.[handovers], 0)) AS [TotalHandovers] " +
+                        from + where + ";";
+
+        String batch = includeKpis ? pageSql + " " + kpiSql : pageSql;
+        List<Object> batchParams = new ArrayList<>(pageParams);
+        if (includeKpis) batchParams.addAll(params);
 
         List<StaffItemResponse.StaffItem> items = new ArrayList<>();
-        long total = 0;
-        StaffItemResponse.Kpis kpis = new StaffItemResponse.Kpis(0, 0, 0.0, 0);
+        long total = -1;
+        StaffItemResponse.Kpis kpis = null;
+        String nextCursor = null;
+
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement ps = con.prepareStatement(batch)) {
+            bindWhere(ps, batchParams);
 
-        try (Connection con = dataSource.getConnection()) {
             // page
-            try (PreparedStatement ps = con.prepareStatement(pageSql)) {
-                int idx = bindWhere(ps, params);
-                ps.setInt(idx++, start);
-                ps.setInt(idx, end);
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        StaffItemResponse.StaffItem it = new StaffItemResponse.StaffItem();
-                        it.setId(rs.getInt("id"));
-                        it.setName(rs.getString("name"));
-                        it.setEmail(rs.getString("email"));
-                        it.setPosition(rs.getString("position"));
-                        it.setStatus(rs.getString("emp_status"));
-                        it.setStationId(rs.getInt("station_id"));
-                        it.setStationName(rs.getString("station_name"));
-                        it.setPhone(rs.getString("phone"));
-                        Timestamp ts = rs.getTimestamp("join_date");
-                        it.setJoinDate(ts != null ? ts.toLocalDateTime() : null);
-                        it.setHandovers(getIntSafe(rs, "handovers"));
-                        it.setAvgRating(getDoubleSafe(rs, "avg_rating"));
-                        it.setOnTimeRate(getIntSafe(rs, "on_time_rate"));
-                        it.setCustomerSatisfaction(getIntSafe(rs, "customer_satisfaction"));
-                        it.setShiftsThisMonth(getIntSafe(rs, "shifts_this_month"));
-                        it.setShiftsTotal(getIntSafe(rs, "shifts_total"));
-                        items.add(it);
-                    }
-                }
+            nextResultSet(ps, ps.execute());
+            try (ResultSet rs = ps.getResultSet()) {
+                while (rs.next()) items.add(mapStaffItem(rs));
             }
-
-            // total
-            try (PreparedStatement ps = con.prepareStatement(totalSql)) {
-                bindWhere(ps, params);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) total = rs.getLong("Total");
-                }
+            if (items.size() > pageSize) {
+                items.remove(pageSize);
+                StaffItemResponse.StaffItem last = items.get(pageSize - 1);
+                nextCursor = new Cursor(last.getId(), last.getName()).encode();
             }
 
             // kpis
-            try (PreparedStatement ps = con.prepareStatement(kpiSql)) {
-                bindWhere(ps, params);
-                try (ResultSet rs = ps.executeQuery()) {
+            if (includeKpis) {
+                nextResultSet(ps, ps.getMoreResults());
+                try (ResultSet rs = ps.getResultSet()) {
+                    kpis = new StaffItemResponse.Kpis(0, 0, 0.0, 0);
                     if (rs.next()) {
                         kpis.setTotalStaff(rs.getLong("TotalStaff"));
                         kpis.setActiveCount(rs.getLong("ActiveCount"));
                         kpis.setAvgRating(rs.getDouble("AvgRating"));
                         kpis.setTotalHandovers(rs.getLong("TotalHandovers"));
                     }
+                    total = kpis.getTotalStaff();
                 }
             }
 
@@ -626,7 +613,56 @@ public class StaffAdminService {
             throw new RuntimeException("Staff list query failed", e);
         }
 
-        return new StaffItemResponse(items, kpis, page, size, total);
+        return new StaffItemResponse(items, kpis, page, size, total, nextCursor);
+    }
+
+    // Bỏ qua update count (nếu có) để tới result set kế tiếp của batch
+    private static void nextResultSet(PreparedStatement ps, boolean isResultSet) throws SQLException {
+        while (!isResultSet) {
+            if (ps.getUpdateCount() == -1) throw new SQLException("Thiếu result set trong batch");
+            isResultSet = ps.getMoreResults();
+        }
+    }
+
+    private StaffItemResponse.StaffItem mapStaffItem(ResultSet rs) throws SQLException {
+        StaffItemResponse.StaffItem it = new StaffItemResponse.StaffItem();
+        it.setId(rs.getInt("id"));
+        it.setName(rs.getString("name"));
+        it.setEmail(rs.getString("email"));
+        it.setPosition(rs.getString("position"));
+        it.setStatus(rs.getString("emp_status"));
+        it.setStationId(rs.getInt("station_id"));
+        it.setStationName(rs.getString("station_name"));
+        it.setPhone(rs.getString("phone"));
+        Timestamp ts = rs.getTimestamp("join_date");
+        it.setJoinDate(ts != null ? ts.toLocalDateTime() : null);
+        it.setHandovers(getIntSafe(rs, "handovers"));
+        it.setAvgRating(getDoubleSafe(rs, "avg_rating"));
+        it.setOnTimeRate(getIntSafe(rs, "on_time_rate"));
+        it.setCustomerSatisfaction(getIntSafe(rs, "customer_satisfaction"));
+        it.setShiftsThisMonth(getIntSafe(rs, "shifts_this_month"));
+        it.setShiftsTotal(getIntSafe(rs, "shifts_total"));
+        return it;
+    }
+
+    /** Cursor keyset: khoá (full_name, user_id) của dòng cuối, mã hoá base64url để FE chỉ việc gửi lại. */
+    record Cursor(int id, String name) {
+        String encode() {
+            String raw = name == null ? String.valueOf(id) : id + ":" + name;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+                int sep = raw.indexOf(':');
+                return sep < 0
+                        ? new Cursor(Integer.parseInt(raw), null)
+                        : new Cursor(Integer.parseInt(raw.substring(0, sep)), raw.substring(sep + 1));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("cursor không hợp lệ");
+            }
+        }
     }
 
     /**
@@ -644,30 +680,13 @@ public class StaffAdminService {
                         "  u.created_at    AS join_date, " +
                         "  ed.station_id   AS station_id, " +
                         "  s.station_name  AS station_name, " +
-                        "  ISNULL((SELECT COUNT(*) FROM Inspection i WHERE i.staff_id = u.user_id), 0) AS handovers, " +
-                        "  (SELECT AVG(CAST(r.rating AS FLOAT)) " +
-                        "     FROM Contract c " +
-                        "     JOIN Booking b ON b.booking_id = c.booking_id " +
-                        "     LEFT JOIN Review r ON r.booking_id = b.booking_id " +
-                        "    WHERE c.staff_id = u.user_id) AS avg_rating, " +
-                        "  (SELECT CASE WHEN COUNT(*) = 0 THEN 0 " +
-                        "              ELSE CAST(100.0 * SUM(CASE WHEN b.actual_return_time IS NOT NULL " +
-                        "                                           AND b.actual_return_time <= b.expected_return_time THEN 1 ELSE 0 END) " +
-                        "                   / COUNT(*) AS INT) END " +
-                        "     FROM Contract c " +
-                        "     JOIN Booking b ON b.booking_id = c.booking_id " +
-                        "    WHERE c.staff_id = u.user_id) AS on_time_rate, " +
-                        "  (SELECT CASE WHEN COUNT(r.rating) = 0 THEN 0 " +
-                        "              ELSE CAST(100.0 * SUM(CASE WHEN r.rating >= 4 THEN 1 ELSE 0 END) / COUNT(r.rating) AS INT) END " +
-                        "     FROM Contract c " +
-                        "     JOIN Booking b ON b.booking_id = c.booking_id " +
-                        "     LEFT JOIN Review r ON r.booking_id = b.booking_id " +
-                        "    WHERE c.staff_id = u.user_id) AS customer_satisfaction, " +
+                        "  " + PERF_COLUMNS +
                         "  CAST(0 AS INT) AS shifts_this_month, " +
                         "  CAST(0 AS INT) AS shifts_total " +
                         "FROM [User] u " +
                         "JOIN Employee_Detail ed ON ed.employee_id = u.user_id " +
                         "JOIN Station s          ON s.station_id   = ed.station_id " +
+                        PERF_JOIN +
                         "WHERE u.role = 'STAFF' AND u.user_id = ? ";
 
         try (Connection con = dataSource.getConnection();
@@ -677,24 +696,7 @@ public class StaffAdminService {
                 if (!rs.next()) {
                     throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Staff not found: " + id);
                 }
-                StaffItemResponse.StaffItem it = new StaffItemResponse.StaffItem();
-                it.setId(rs.getInt("id"));
-                it.setName(rs.getString("name"));
-                it.setEmail(rs.getString("email"));
-                it.setPosition(rs.getString("position"));
-                it.setStatus(rs.getString("emp_status")); // đồng bộ với list
-                it.setStationId(rs.getInt("station_id"));
-                it.setStationName(rs.getString("station_name"));
-                it.setPhone(rs.getString("phone"));
-                Timestamp ts = rs.getTimestamp("join_date");
-                it.setJoinDate(ts != null ? ts.toLocalDateTime() : null);
-                it.setHandovers(getIntSafe(rs, "handovers"));
-                it.setAvgRating(getDoubleSafe(rs, "avg_rating"));
-                it.setOnTimeRate(getIntSafe(rs, "on_time_rate"));
-                it.setCustomerSatisfaction(getIntSafe(rs, "customer_satisfaction"));
-                it.setShiftsThisMonth(getIntSafe(rs, "shifts_this_month"));
-                it.setShiftsTotal(getIntSafe(rs, "shifts_total"));
-                return it;
+                return mapStaffItem(rs); // cùng alias với list
             }
         } catch (SQLException e) {
             throw new RuntimeException("Staff detail query failed", e);
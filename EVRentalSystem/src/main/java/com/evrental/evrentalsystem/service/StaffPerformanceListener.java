@@ -0,0 +1,44 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.entity.Booking;
+import com.evrental.evrentalsystem.entity.Contract;
+import com.evrental.evrentalsystem.entity.Inspection;
+import com.evrental.evrentalsystem.entity.Review;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener cho Inspection / Contract / Review / Booking: báo cho StaffPerformanceTracker
+ * nhân viên nào cần tính lại. Xoá hàng loạt bằng JPQL không đi qua đây, do job đối soát xử lý.
+ * Constructor rỗng giống DashboardCacheInvalidator (ngoài Spring context thì không làm gì).
+ */
+@Component
+public class StaffPerformanceListener {
+
+    private StaffPerformanceTracker tracker;
+
+    @Autowired
+    public void setTracker(StaffPerformanceTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onWrite(Object entity) {
+        if (tracker == null) return;
+        if (entity instanceof Inspection i) {
+            if (i.getStaff() != null) tracker.staff(i.getStaff().getUserId());
+        } else if (entity instanceof Contract c) {
+            if (c.getStaffManager() != null) tracker.staff(c.getStaffManager().getUserId());
+        } else if (entity instanceof Review r) {
+            if (r.getBooking() != null) tracker.booking(r.getBooking().getBookingId());
+        } else if (entity instanceof Booking b) {
+            // Chỉ booking đã trả xe mới ảnh hưởng tỉ lệ đúng hạn
+            if (b.getActualReturnTime() != null) tracker.booking(b.getBookingId());
+        }
+    }
+}
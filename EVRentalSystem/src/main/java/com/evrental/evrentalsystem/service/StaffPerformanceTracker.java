@@ -0,0 +1,129 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.repository.StaffPerformanceRepository;
+import com.evrental.evrentalsystem.util.AfterCommit;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Giữ bảng Staff_Performance đồng bộ với dữ liệu gốc.
+ * - Ghi: đánh dấu nhân viên / booking bị ảnh hưởng sau khi commit, gộp trong FLUSH_DELAY_MS
+ *   rồi tính lại đúng các dòng đó trên 1 luồng nền (không chặn request).
+ * - Đối soát: tính lại toàn bảng lúc khởi động và mỗi reconcile-minutes phút.
+ */
+@Slf4j
+@Component
+public class StaffPerformanceTracker {
+
+    private static final long FLUSH_DELAY_MS = 500L;
+    private static final long RETRY_DELAY_MS = 5_000L; // DB lỗi: thử lại sau, không đợi lần ghi kế tiếp
+    private static final int BATCH = 500; // SQL Server giới hạn ~2100 tham số / câu
+
+    private final StaffPerformanceRepository repository;
+    private final long reconcileMinutes;
+
+    private final Set<Integer> dirtyStaff = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> dirtyBookings = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "staff-performance");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public StaffPerformanceTracker(StaffPerformanceRepository repository,
+                                   @Value("${staff.performance.reconcile-minutes:10}") long reconcileMinutes) {
+        this.repository = repository;
+        this.reconcileMinutes = Math.max(1, reconcileMinutes);
+    }
+
+    /** Nhân viên có Inspection / Contract thay đổi. */
+    public void staff(Integer staffId) {
+        if (staffId != null) afterCommit(() -> dirtyStaff.add(staffId));
+    }
+
+    /** Booking trả xe hoặc được review: tính lại nhân viên phụ trách hợp đồng. */
+    public void booking(Integer bookingId) {
+        if (bookingId != null) afterCommit(() -> dirtyBookings.add(bookingId));
+    }
+
+    private void afterCommit(Runnable mark) {
+        AfterCommit.run(() -> {
+            mark.run();
+            scheduleFlush();
+        });
+    }
+
+    private void scheduleFlush() {
+        scheduleFlush(FLUSH_DELAY_MS);
+    }
+
+    private void scheduleFlush(long delayMs) {
+        if (flushPending.compareAndSet(false, true)) {
+            worker.schedule(this::flush, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void flush() {
+        flushPending.set(false);
+        try {
+            drain(dirtyStaff, repository::refreshStaff);
+            drain(dirtyBookings, repository::refreshByBookings);
+        } catch (Exception e) {
+            // Id lỗi vẫn nằm trong dirty: hẹn flush lại sau RETRY_DELAY_MS, đối soát định kỳ sửa phần còn sót
+            log.warn("Không cập nhật được Staff_Performance, thử lại sau {} ms: {}", RETRY_DELAY_MS, e.getMessage());
+            scheduleFlush(RETRY_DELAY_MS);
+        }
+    }
+
+    private static void drain(Set<Integer> dirty, Consumer<List<Integer>> refresh) {
+        while (!dirty.isEmpty()) {
+            List<Integer> batch = new ArrayList<>(BATCH);
+            for (var it = dirty.iterator(); it.hasNext() && batch.size() < BATCH; ) {
+                batch.add(it.next());
+                it.remove();
+            }
+            try {
+                refresh.accept(batch);
+            } catch (RuntimeException e) {
+                // Trả lại id để lần flush sau làm lại
+                dirty.addAll(batch);
+                throw e;
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startReconcile() {
+        worker.scheduleWithFixedDelay(this::reconcile, 0, reconcileMinutes, TimeUnit.MINUTES);
+    }
+
+    void reconcile() {
+        try {
+            int rows = repository.reconcileAll();
+            log.debug("Đối soát Staff_Performance: {} dòng", rows);
+        } catch (Exception e) {
+            log.warn("Không đối soát được Staff_Performance: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+}
@@ -3,22 +3,26 @@ package com.evrental.evrentalsystem.service;
 import com.evrental.evrentalsystem.entity.*;
 import com.evrental.evrentalsystem.enums.*;
 import com.evrental.evrentalsystem.enums.Enum;
+import com.evrental.evrentalsystem.event.VehicleStatusChangedEvent;
 import com.evrental.evrentalsystem.repository.*;
+import com.evrental.evrentalsystem.repository.projection.VehicleCardProjection;
 import com.evrental.evrentalsystem.response.staff.*;
 import com.evrental.evrentalsystem.response.user.GetAllAdminResponse;
+import com.evrental.evrentalsystem.storage.ImageBlobs;
+import com.evrental.evrentalsystem.storage.ImageUrls;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.io.IOException;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.Base64;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -39,20 +43,11 @@ public class StaffService {
     private final InspectionAfterRepository inspectionAfterRepository;
     private final ReportRepository reportRepository;
     private final MailService mailService;
-
-    private String encodeToBase64(MultipartFile file) {
-        try {
-            if (file != null && !file.isEmpty()) {
-                byte[] bytes = file.getBytes();
-                log.info("Encode file {} size {}", file.getOriginalFilename(), bytes.length);
-                return Base64.getEncoder().encodeToString(bytes);
-            } else {
-                throw new RuntimeException("File upload bị trống!");
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Không thể đọc file: " + file.getOriginalFilename(), e);
-        }
-    }
+    private final ActivityJournal activityJournal;
+    private final VehicleAvailabilityIndex availabilityIndex;
+    private final VehicleReservationService reservationService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ImageBlobs imageBlobs;
 
     public List<BookingsInStationResponse> bookingsInStation(Integer stationId) {
         // Tìm danh sách booking theo stationId
@@ -120,47 +115,55 @@ public class StaffService {
         Booking booking = bookingRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(
                         HttpStatus.NOT_FOUND, "Booking not found with ID: " + id));
+        Integer vehicleId = booking.getVehicleDetail() != null ? booking.getVehicleDetail().getId() : null;
 
         try {
-            int updated = bookingRepository.updateBookingStatus(id, status);
-
-            if (updated <= 0) {
-                log.warn("⚠️ No booking found with ID: {}", id);
-                return false;
-            }
+            // Đọc lại + ghi trong transaction có khoá xe và kiểm tra @Version, xung đột thì thử lại
+            reservationService.execute(Arrays.asList(VehicleReservationService.vehicleKey(vehicleId)),
+                    () -> applyBookingStatus(id, status));
+            log.info("✅ Update success! (Booking ID: {})", id);
+            return true;
 
-            // ⭐ Chỉ xử lý xe khi cần
-            if (status == BookingStatus.Vehicle_Inspected_After_Pickup) {
+        } catch (Exception e) {
+            log.error("❌ Error updating booking status for ID: {}", id, e);
+            throw e;
+        }
+    }
 
-                // Nếu booking chưa có vehicleDetail thì bỏ qua phần update xe
-                if (booking.getVehicleDetail() == null) {
-                    log.warn("Booking {} has no vehicleDetail, skip vehicle status update", id);
-                    return true; // booking vẫn đã được update status
-                }
+    private Void applyBookingStatus(int id, BookingStatus status) {
+        Booking booking = bookingRepository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "Booking not found with ID: " + id));
+        booking.setStatus(status);
+        // Ghi qua entity: DashboardCacheInvalidator / các index chỉ nhận khi thật sự có thay đổi
+        bookingRepository.save(booking);
 
-                VehicleDetail vd = vehicleDetailRepository.findById(booking.getVehicleDetail().getId())
-                        .orElseThrow(() -> new ResponseStatusException(
-                                HttpStatus.NOT_FOUND,
-                                "VehicleDetail not found for booking ID: " + id));
+        // ⭐ Chỉ xử lý xe khi cần
+        if (status == BookingStatus.Vehicle_Inspected_After_Pickup) {
 
-                vd.setStatus(VehicleStatus.AVAILABLE);
-                vehicleDetailRepository.save(vd);
+            // Nếu booking chưa có vehicleDetail thì bỏ qua phần update xe
+            if (booking.getVehicleDetail() == null) {
+                log.warn("Booking {} has no vehicleDetail, skip vehicle status update", id);
+                return null; // booking vẫn đã được update status
             }
 
-            log.info("✅ Update success! (Booking ID: {})", id);
-            return true;
+            VehicleDetail vd = vehicleDetailRepository.findById(booking.getVehicleDetail().getId())
+                    .orElseThrow(() -> new ResponseStatusException(
+                            HttpStatus.NOT_FOUND,
+                            "VehicleDetail not found for booking ID: " + id));
 
-        } catch (Exception e) {
-            log.error("❌ Error updating booking status for ID: {}", id, e);
-            throw e;
+            vd.setStatus(VehicleStatus.AVAILABLE);
+            vehicleDetailRepository.save(vd);
         }
+        return null;
     }
 
     public List<VehicleIdAndLicensePlateResponse> getAllAvailableVehiclesInStationAndModel(int modelId, int stationId) {
-        List<VehicleDetail> vehicles = vehicleDetailRepository.findAllByVehicleModel_VehicleIdAndStation_StationIdAndStatus(modelId, stationId, VehicleStatus.AVAILABLE);
+        // Projection: không tải cột ảnh của từng xe
+        List<VehicleCardProjection> vehicles = vehicleDetailRepository.findCardsByModelAndStation(modelId, stationId, VehicleStatus.AVAILABLE);
         return vehicles.stream()
                 .map(vehicle -> new VehicleIdAndLicensePlateResponse(
-                        vehicle.getId(),
+                        vehicle.getDetailId(),
                         vehicle.getLicensePlate()
                 ))
                 .collect(Collectors.toList());
@@ -169,21 +172,27 @@ public class StaffService {
 
     public VehicleDetailsResponse getVehicleDetailById(int id) {
         VehicleDetailsResponse response = new VehicleDetailsResponse();
-        VehicleDetail vehicleDetail = vehicleDetailRepository.findById(id).orElse(null);
+        // Projection: ảnh trả về dạng URL (ImageUrls) thay vì base64 inline
+        VehicleCardProjection vehicleDetail = vehicleDetailRepository.findCardById(id).orElse(null);
         if (vehicleDetail != null) {
-            response.setId(vehicleDetail.getId());
-            response.setModelName(vehicleDetail.getVehicleModel().getModel());
+            response.setId(vehicleDetail.getDetailId());
+            response.setModelName(vehicleDetail.getModel());
             response.setLicensePlate(vehicleDetail.getLicensePlate());
             response.setColor(vehicleDetail.getColor());
             response.setBattery(vehicleDetail.getBatteryCapacity());
             response.setOdo(vehicleDetail.getOdo());
-            response.setImage(vehicleDetail.getPicture());
+            response.setImage(ImageUrls.vehicleDetail(vehicleDetail.getDetailId(), vehicleDetail.getDetailPictureRef()));
         }
         return response;
     }
 
     public boolean changeVehicleStatus(Integer vehicleId, String newStatus) {
-        int updated = vehicleDetailRepository.updateVehicleStatusById(vehicleId, VehicleStatus.valueOf(newStatus));
+        VehicleStatus status = VehicleStatus.valueOf(newStatus);
+        int updated = vehicleDetailRepository.updateVehicleStatusById(vehicleId, status);
+        if (updated > 0) {
+            // Bulk update không qua entity listener: tự báo cho các chỉ mục
+            eventPublisher.publishEvent(new VehicleStatusChangedEvent(vehicleId, status));
+        }
         return updated > 0;
     }
 
@@ -210,9 +219,7 @@ public class StaffService {
             // ✅ Lưu tên phần xe bằng enum
             inspection.setPartName(partName); // hoặc .toString(), cả hai đều OK
 
-            String base64Picture = encodeToBase64(picture);
-            log.info("Base64 picture length: {}", base64Picture.length());
-            inspection.setPicture(base64Picture);
+            inspection.setPicture(imageBlobs.store(picture));
             inspection.setDescription(description);
             inspection.setStaff(staff);
             inspection.setStatus(InspectionStatusEnum.valueOf(status));
@@ -246,6 +253,7 @@ public class StaffService {
                     af.setAmount(cost);
                     af.setDescription(desc);
                     additionalFeeRepository.save(af);
+                    activityJournal.fee(af);
                     return true;
                 } catch (Exception e) {
                     log.error("Lỗi khi tạo additional fee: {}", e.getMessage(), e);
@@ -273,6 +281,7 @@ public class StaffService {
                     af.setAmount(cost);
                     af.setDescription(desc);
                     additionalFeeRepository.save(af);
+                    activityJournal.fee(af);
                     booking.getVehicleDetail().setOdo(odoAfter);
                     bookingRepository.save(booking);
                     return true;
@@ -296,6 +305,7 @@ public class StaffService {
                     af.setAmount(cost);
                     af.setDescription(desc);
                     additionalFeeRepository.save(af);
+                    activityJournal.fee(af);
                     return true;
                 } catch (Exception e) {
                     log.error("Lỗi khi tạo additional fee: {}", e.getMessage(), e);
@@ -312,6 +322,7 @@ public class StaffService {
             af.setAmount((double) amount);
             af.setDescription(desc);
             additionalFeeRepository.save(af);
+            activityJournal.fee(af);
             return true;
         } catch (Exception e) {
             log.error("Lỗi khi tạo additional fee: {}", e.getMessage(), e);
@@ -323,10 +334,10 @@ public class StaffService {
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new IllegalArgumentException("Booking ID không tồn tại: " + bookingId));
         RenterDetailsByBookingResponse response = new RenterDetailsByBookingResponse();
-        response.setGplx(booking.getRenter().getRenterDetail().getDriverLicense());
+        response.setGplx(imageBlobs.toBase64(booking.getRenter().getRenterDetail().getDriverLicense()));
         response.setEmail(booking.getRenter().getEmail());
-        response.setBackCccd(booking.getRenter().getRenterDetail().getCccdBack());
-        response.setFrontCccd(booking.getRenter().getRenterDetail().getCccdFront());
+        response.setBackCccd(imageBlobs.toBase64(booking.getRenter().getRenterDetail().getCccdBack()));
+        response.setFrontCccd(imageBlobs.toBase64(booking.getRenter().getRenterDetail().getCccdFront()));
         response.setFullName(booking.getRenter().getFullName());
         response.setPhoneNumber(booking.getRenter().getPhone());
         return response;
@@ -422,7 +433,7 @@ public class StaffService {
                 .map(inspection -> {
                     InspectionDetailsByBookingResponse response = new InspectionDetailsByBookingResponse();
                     response.setPartName(inspection.getPartName());
-                    response.setPic(inspection.getPicture());
+                    response.setPic(imageBlobs.toBase64(inspection.getPicture()));
                     response.setDesc(inspection.getDescription());
                     return response;
                 })
@@ -437,7 +448,7 @@ public class StaffService {
                 .map(inspection -> {
                     InspectionDetailsByBookingResponse response = new InspectionDetailsByBookingResponse();
                     response.setPartName(inspection.getPartName());
-                    response.setPic(inspection.getPicture());
+                    response.setPic(imageBlobs.toBase64(inspection.getPicture()));
                     response.setDesc(inspection.getDescription());
                     return response;
                 })
@@ -445,11 +456,46 @@ public class StaffService {
     }
 
     public void UpdateLicensePlateForBooking(int bookingId, String licensePlate) {
+        VehicleDetail found = vehicleDetailRepository.findByLicensePlate(licensePlate);
+        if (found == null) throw new IllegalArgumentException("Vehicle not found with license plate: " + licensePlate);
+        Integer vehicleId = found.getId();
+        Booking current = bookingRepository.findById(bookingId)
+                .orElseThrow(() -> new RuntimeException("Booking not found with ID: " + bookingId));
+        Integer oldVehicleId = current.getVehicleDetail() != null ? current.getVehicleDetail().getId() : null;
+        // Khoá xe cũ + xe mới (execute tự sắp thứ tự khoá), như AdminService.updateRenterBooking
+        reservationService.execute(
+                Arrays.asList(VehicleReservationService.vehicleKey(oldVehicleId),
+                        VehicleReservationService.vehicleKey(vehicleId)),
+                () -> assignVehicle(bookingId, vehicleId));
+    }
+
+    private Void assignVehicle(int bookingId, Integer vehicleId) {
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new RuntimeException("Booking not found with ID: " + bookingId));
-        VehicleDetail vd = vehicleDetailRepository.findByLicensePlate(licensePlate);
+        if (booking.getVehicleDetail() != null && vehicleId.equals(booking.getVehicleDetail().getId())) return null;
+        VehicleDetail vd = vehicleDetailRepository.findById(vehicleId)
+                .orElseThrow(() -> new IllegalArgumentException("Vehicle not found with ID: " + vehicleId));
+        if (!isFreeForBooking(vd, booking)) {
+            throw new IllegalArgumentException("Vehicle " + vd.getLicensePlate()
+                    + " is not available for booking " + bookingId);
+        }
         booking.setVehicleDetail(vd);
         bookingRepository.save(booking);
+        return null;
+    }
+
+    // Xe đúng trạm / model của booking và không bị booking khác giữ trong [start, expectedReturn)
+    private boolean isFreeForBooking(VehicleDetail vd, Booking booking) {
+        Integer stationId = booking.getStation().getStationId();
+        Integer modelId = booking.getVehicleModel().getVehicleId();
+        if (availabilityIndex.isReady()) {
+            return availabilityIndex.freeVehicles(stationId, modelId, booking.getStartTime(),
+                    booking.getExpectedReturnTime()).contains(vd.getId());
+        }
+        // Index chưa dựng xong: chỉ kiểm tra xe AVAILABLE đúng trạm / model
+        return vd.getStatus() == VehicleStatus.AVAILABLE
+                && vd.getStation() != null && stationId.equals(vd.getStation().getStationId())
+                && vd.getVehicleModel() != null && modelId.equals(vd.getVehicleModel().getVehicleId());
     }
 
     public void updateActualReturnTimeOfBooking(int bookingId) {
@@ -488,9 +534,7 @@ public class StaffService {
             // ✅ Lưu tên phần xe bằng enum
             inspection.setPartName(partName); // hoặc .toString(), cả hai đều OK
 
-            String base64Picture = encodeToBase64(picture);
-            log.info("Base64 picture length: {}", base64Picture.length());
-            inspection.setPicture(base64Picture);
+            inspection.setPicture(imageBlobs.store(picture));
             inspection.setDescription(description);
             inspection.setStaff(staff);
             inspection.setStatus(InspectionStatusEnum.valueOf(status));
@@ -523,6 +567,7 @@ public class StaffService {
         r.setCreatedAt(LocalDateTime.now());
         r.setStatus(ReportStatusEnum.PENDING);
         reportRepository.save(r);
+        activityJournal.report(r);
 
         vd.setStatus(VehicleStatus.FIXING);
         vehicleDetailRepository.save(vd);
@@ -0,0 +1,181 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.entity.Station;
+import com.evrental.evrentalsystem.event.StationChangedEvent;
+import com.evrental.evrentalsystem.repository.StationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Tìm trạm gần 1 toạ độ bằng k-d tree trong bộ nhớ, thay cho tìm theo địa chỉ (StationRepository.findByDistrict, LIKE).
+ * - Station.location dạng "vĩ độ,kinh độ" (vd "10.801,106.730"); trạm không có / sai định dạng thì bỏ qua.
+ * - Mỗi trạm là 1 điểm trên mặt cầu đơn vị (x, y, z): khoảng cách dây cung tăng cùng khoảng cách thật
+ *   nên cắt nhánh k-d tree theo từng trục là chính xác, không lệch khi đi xa xích đạo / qua kinh tuyến 180.
+ * - Toạ độ được dùng nguyên như lưu trong DB (không tự sửa dấu kinh độ): trạm sai định dạng / ngoài phạm vi
+ *   được ghi log warn và bỏ qua, cần sửa dữ liệu trạm.
+ * - Dựng lại từ DB khi Station đổi (StationChangedEvent, sau commit) và lúc khởi động; chưa dựng thì dựng ở lần tìm đầu.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StationLocator {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    public record Site(int stationId, String stationName, String address, double latitude, double longitude) {}
+
+    public record Hit(Site site, double distanceKm) {}
+
+    private record Point(Site site, double[] xyz) {}
+
+    // Nút k-d tree: điểm (x, y, z) của trạm, chia theo trục depth % 3
+    private record Node(Point point, int axis, Node left, Node right) {}
+
+    private record Candidate(Site site, double chordSquared) {}
+
+    private final StationRepository stationRepository;
+
+    private volatile Node root;
+    private volatile boolean built;
+    private final Object rebuildLock = new Object();
+
+    /**
+     * Tối đa limit trạm gần (lat, lng) nhất, gần trước; chỉ lấy trạm có accept(stationId) = true.
+     * accept được gọi theo thứ tự duyệt cây, không theo khoảng cách.
+     */
+    public List<Hit> nearest(double lat, double lng, int limit, IntPredicate accept) {
+        if (limit <= 0) return List.of();
+        Node tree = tree();
+        double[] target = toPoint(lat, lng);
+        // Max-heap theo khoảng cách dây cung: đỉnh là trạm xa nhất trong limit trạm tốt nhất hiện có
+        PriorityQueue<Candidate> best = new PriorityQueue<>(
+                Comparator.comparingDouble(Candidate::chordSquared).reversed());
+        search(tree, target, limit, accept, best);
+
+        List<Hit> hits = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            Candidate c = best.poll();
+            hits.add(new Hit(c.site(), chordToKm(Math.sqrt(c.chordSquared()))));
+        }
+        Collections.reverse(hits);
+        return hits;
+    }
+
+    private static void search(Node node, double[] target, int limit, IntPredicate accept,
+                               PriorityQueue<Candidate> best) {
+        if (node == null) return;
+        Site site = node.point().site();
+        double[] xyz = node.point().xyz();
+        double d2 = distanceSquared(xyz, target);
+        boolean full = best.size() >= limit;
+        if ((!full || d2 < best.peek().chordSquared()) && accept.test(site.stationId())) {
+            best.add(new Candidate(site, d2));
+            if (best.size() > limit) best.poll();
+        }
+        double delta = target[node.axis()] - xyz[node.axis()];
+        Node near = delta < 0 ? node.left() : node.right();
+        Node far = delta < 0 ? node.right() : node.left();
+        search(near, target, limit, accept, best);
+        // Nhánh bên kia chỉ có thể tốt hơn nếu mặt phẳng chia gần hơn trạm xa nhất đang giữ
+        if (best.size() < limit || delta * delta < best.peek().chordSquared()) {
+            search(far, target, limit, accept, best);
+        }
+    }
+
+    /** "vĩ độ,kinh độ" -> {lat, lng}; null nếu trống / sai định dạng / ngoài phạm vi. */
+    public static double[] parseLocation(String location) {
+        if (location == null) return null;
+        String[] parts = location.split(",");
+        if (parts.length != 2) return null;
+        try {
+            double lat = Double.parseDouble(parts[0].trim());
+            double lng = Double.parseDouble(parts[1].trim());
+            if (!validCoordinate(lat, lng)) return null;
+            return new double[]{lat, lng};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static boolean validCoordinate(double lat, double lng) {
+        return lat >= -90 && lat <= 90 && lng >= -180 && lng <= 180;
+    }
+
+    // ===== Dựng cây =====
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            tree();
+        } catch (Exception e) {
+            log.warn("Không dựng được StationLocator lúc khởi động: {}", e.getMessage());
+        }
+    }
+
+    /** Station đổi (sau commit): dựng lại ở lần tìm kế tiếp. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStationChanged(StationChangedEvent event) {
+        // Chờ lần dựng đang chạy (nếu có) xong rồi mới đánh dấu: lần dựng đó có thể đã đọc DB trước commit
+        synchronized (rebuildLock) {
+            built = false;
+        }
+    }
+
+    private Node tree() {
+        if (built) return root;
+        synchronized (rebuildLock) {
+            if (built) return root;
+            List<Point> points = new ArrayList<>();
+            for (Station s : stationRepository.findAll()) {
+                double[] latLng = parseLocation(s.getLocation());
+                if (latLng == null) {
+                    log.warn("Bỏ qua trạm {}: location '{}' không hợp lệ", s.getStationId(), s.getLocation());
+                    continue;
+                }
+                Site site = new Site(s.getStationId(), s.getStationName(), s.getAddress(), latLng[0], latLng[1]);
+                points.add(new Point(site, toPoint(latLng[0], latLng[1])));
+            }
+            root = build(points, 0);
+            built = true;
+            return root;
+        }
+    }
+
+    // Chia đôi theo trung vị của trục depth % 3
+    private static Node build(List<Point> points, int depth) {
+        if (points.isEmpty()) return null;
+        int axis = depth % 3;
+        List<Point> sorted = new ArrayList<>(points);
+        sorted.sort(Comparator.comparingDouble(p -> p.xyz()[axis]));
+        int mid = sorted.size() / 2;
+        return new Node(sorted.get(mid), axis,
+                build(sorted.subList(0, mid), depth + 1),
+                build(sorted.subList(mid + 1, sorted.size()), depth + 1));
+    }
+
+    // ===== Hình học =====
+
+    private static double[] toPoint(double lat, double lng) {
+        double phi = Math.toRadians(lat);
+        double lambda = Math.toRadians(lng);
+        double cosPhi = Math.cos(phi);
+        return new double[]{cosPhi * Math.cos(lambda), cosPhi * Math.sin(lambda), Math.sin(phi)};
+    }
+
+    private static double distanceSquared(double[] a, double[] b) {
+        double dx = a[0] - b[0], dy = a[1] - b[1], dz = a[2] - b[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    // Dây cung c trên mặt cầu đơn vị -> khoảng cách mặt đất (km)
+    private static double chordToKm(double chord) {
+        return 2 * Math.asin(Math.min(1.0, chord / 2)) * EARTH_RADIUS_KM;
+    }
+}
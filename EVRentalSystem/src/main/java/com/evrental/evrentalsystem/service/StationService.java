@@ -1,10 +1,14 @@
 package com.evrental.evrentalsystem.service;
 
+import com.evrental.evrentalsystem.enums.VehicleStatus;
+import com.evrental.evrentalsystem.repository.projection.AvailableVehicleProjection;
 import com.evrental.evrentalsystem.response.admin.TopStationsResponse.StationRow;
 import com.evrental.evrentalsystem.repository.StationRepository;
 import com.evrental.evrentalsystem.repository.VehicleDetailRepository;
 import com.evrental.evrentalsystem.repository.VehicleModelRepository;
+import com.evrental.evrentalsystem.response.vehicle.NearbyStationResponse;
 import com.evrental.evrentalsystem.response.vehicle.VehicleAtStationResponse;
+import com.evrental.evrentalsystem.storage.ImageUrls;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -14,7 +18,12 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntToLongFunction;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -22,6 +31,8 @@ public class StationService {
     private final StationRepository stationRepository;
     private final VehicleDetailRepository vehicleDetailRepository;
     private final VehicleModelRepository vehicleModelRepository;
+    private final StationLocator stationLocator;
+    private final FleetInventory fleetInventory;
 
     private final DataSource dataSource;
 
@@ -36,7 +47,8 @@ public class StationService {
             String model = r[2] != null ? r[2].toString() : null;
             Double price = r[3] != null ? ((Number) r[3]).doubleValue() : 0.0;
             Integer seats = r[4] != null ? ((Number) r[4]).intValue() : 0;
-            String modelPicture = r[5] != null ? r[5].toString() : null;
+            // r[5] là phần đầu cột ảnh (tham chiếu blob) -> trả URL ảnh thay vì dữ liệu ảnh
+            String modelPicture = ImageUrls.vehicleModel(vehicleModelId, r[5] != null ? r[5].toString() : null);
             Integer availableCount = r[6] != null ? ((Number) r[6]).intValue() : 0;
 
             VehicleAtStationResponse dto = new VehicleAtStationResponse(
@@ -68,5 +80,51 @@ public class StationService {
         }
         return list;
     }
-}
 
+    private static final int MAX_NEAREST = 50;
+
+    /**
+     * limit trạm gần (lat, lng) nhất (k-d tree trong StationLocator), kèm số xe AVAILABLE.
+     * Có vehicleModelId thì chỉ lấy trạm còn ít nhất 1 xe AVAILABLE của model đó.
+     */
+    public List<NearbyStationResponse> findNearestStations(double lat, double lng, int limit, Integer vehicleModelId) {
+        if (!StationLocator.validCoordinate(lat, lng)) {
+            throw new IllegalArgumentException("Invalid coordinates: " + lat + "," + lng);
+        }
+        if (limit < 1 || limit > MAX_NEAREST) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_NEAREST);
+        }
+
+        IntToLongFunction available = availableCounter(vehicleModelId);
+        Map<Integer, Long> counts = new HashMap<>();
+        List<StationLocator.Hit> hits = stationLocator.nearest(lat, lng, limit, stationId ->
+                vehicleModelId == null || counts.computeIfAbsent(stationId, available::applyAsLong) > 0);
+
+        List<NearbyStationResponse> list = new ArrayList<>(hits.size());
+        for (StationLocator.Hit hit : hits) {
+            StationLocator.Site site = hit.site();
+            list.add(NearbyStationResponse.builder()
+                    .stationId(site.stationId())
+                    .stationName(site.stationName())
+                    .address(site.address())
+                    .latitude(site.latitude())
+                    .longitude(site.longitude())
+                    .distanceKm(Math.round(hit.distanceKm() * 100) / 100.0)
+                    .vehicleModelId(vehicleModelId)
+                    .availableCount(counts.computeIfAbsent(site.stationId(), available::applyAsLong))
+                    .build());
+        }
+        return list;
+    }
+
+    // Số xe AVAILABLE theo trạm: FleetInventory nếu đã đối soát, chưa thì 1 câu projection gom theo trạm
+    private IntToLongFunction availableCounter(Integer vehicleModelId) {
+        if (fleetInventory.isReady()) {
+            return stationId -> fleetInventory.count(stationId, vehicleModelId, VehicleStatus.AVAILABLE);
+        }
+        Map<Integer, Long> byStation = vehicleDetailRepository.findAllAvailableWithStationAndModel().stream()
+                .filter(v -> vehicleModelId == null || Objects.equals(v.getVehicleModelId(), vehicleModelId))
+                .collect(Collectors.groupingBy(AvailableVehicleProjection::getStationId, Collectors.counting()));
+        return stationId -> byStation.getOrDefault(stationId, 0L);
+    }
+}
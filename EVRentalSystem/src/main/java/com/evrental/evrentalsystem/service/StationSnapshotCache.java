@@ -0,0 +1,349 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.entity.Station;
+import com.evrental.evrentalsystem.event.StationChangedEvent;
+import com.evrental.evrentalsystem.event.VehicleChangedEvent;
+import com.evrental.evrentalsystem.event.VehicleModelChangedEvent;
+import com.evrental.evrentalsystem.event.VehicleStatusChangedEvent;
+import com.evrental.evrentalsystem.enums.VehicleStatus;
+import com.evrental.evrentalsystem.repository.StationRepository;
+import com.evrental.evrentalsystem.repository.VehicleDetailRepository;
+import com.evrental.evrentalsystem.repository.projection.AvailableVehicleProjection;
+import com.evrental.evrentalsystem.response.admin.GetAllAboutStationResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+/**
+ * Cây trạm -> model -> xe AVAILABLE cho VehicleManagementService.getAllAboutStation, giữ trong bộ nhớ.
+ * - Mỗi ảnh chụp (Snapshot) là bất biến; xe đổi trạng thái / trạm / model thì dựng ảnh chụp mới
+ *   chỉ chép nhánh trạm / model bị đổi (copy-on-write), các nhánh khác dùng chung, người đọc không bao giờ bị khoá.
+ * - JSON của ảnh chụp được serialize 1 lần (lần đọc đầu tiên) rồi trả thẳng mảng byte.
+ * - Cập nhật sau commit từ sự kiện của FleetChangePublisher và VehicleStatusChangedEvent (update hàng loạt).
+ *   Sự kiện chỉ mang id trạm / model của xe; tên tra trong bảng tên của lần dựng gần nhất.
+ *   Đổi Station / VehicleModel (tên, hãng...) hoặc không biết tên / không đủ thông tin để sửa tại chỗ
+ *   thì bỏ ảnh chụp, lần đọc kế tiếp dựng lại từ DB.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StationSnapshotCache {
+
+    private record Car(int vehicleDetailId, String licensePlate, String color) {}
+
+    private record ModelNode(int modelId, String brand, String modelName, SortedMap<Integer, Car> cars) {}
+
+    private record StationNode(int stationId, String stationName, SortedMap<Integer, ModelNode> models) {}
+
+    private record Slot(int stationId, int modelId) {}
+
+    // Vị trí mới của xe trong cây (chỉ id); null = xe không còn AVAILABLE
+    private record Placement(int stationId, int modelId, Car car) {}
+
+    private record Change(int vehicleId, Placement placement) {}
+
+    private record ModelName(String brand, String modelName) {}
+
+    // Tên trạm / model theo id, lấy từ lần dựng gần nhất: sửa cây tại chỗ không cần đọc quan hệ của entity
+    private record Names(Map<Integer, String> stations, Map<Integer, ModelName> models) {}
+
+    private static final class Snapshot {
+        private final SortedMap<Integer, StationNode> stations;
+        private volatile byte[] json;
+
+        private Snapshot(SortedMap<Integer, StationNode> stations) {
+            this.stations = stations;
+        }
+    }
+
+    private final StationRepository stationRepository;
+    private final VehicleDetailRepository vehicleDetailRepository;
+    private final ObjectMapper objectMapper;
+
+    private volatile Snapshot current; // null = phải dựng lại từ DB
+
+    // Phía ghi: positions / replay / generation chỉ đổi trong writeLock
+    private final Object writeLock = new Object();
+    private final Object rebuildLock = new Object();
+    private Map<Integer, Slot> positions = new HashMap<>();
+    private Names names = new Names(Map.of(), Map.of());
+    private List<Change> replay;
+    private long generation;
+
+    // ===== Đọc =====
+
+    public GetAllAboutStationResponse response() {
+        return toResponse(snapshot());
+    }
+
+    /** JSON của GetAllAboutStationResponse, dùng chung giữa các request: không sửa mảng trả về. */
+    public byte[] json() {
+        Snapshot s = snapshot();
+        byte[] bytes = s.json;
+        if (bytes == null) {
+            try {
+                bytes = objectMapper.writeValueAsBytes(toResponse(s));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Không serialize được cây trạm", e);
+            }
+            s.json = bytes;
+        }
+        return bytes;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot s = current;
+        if (s != null) return s;
+        // Chỉ 1 luồng đọc DB, các luồng khác chờ rồi dùng kết quả
+        synchronized (rebuildLock) {
+            s = current;
+            return s != null ? s : rebuild();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.warn("Không dựng được cây trạm lúc khởi động: {}", e.getMessage());
+        }
+    }
+
+    // ===== Ghi (sau commit) =====
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVehicleChanged(VehicleChangedEvent e) {
+        Integer id = e.vehicleId();
+        if (id == null) return;
+        Placement placement = null;
+        if (!e.removed() && e.status() == VehicleStatus.AVAILABLE && e.stationId() != null && e.modelId() != null) {
+            placement = new Placement(e.stationId(), e.modelId(), new Car(id, e.licensePlate(), e.color()));
+        }
+        apply(new Change(id, placement));
+    }
+
+    /** Update hàng loạt: chỉ biết id + trạng thái mới. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVehicleStatusChanged(VehicleStatusChangedEvent e) {
+        Integer vehicleId = e.vehicleId();
+        if (vehicleId == null) return;
+        if (e.status() != VehicleStatus.AVAILABLE) {
+            apply(new Change(vehicleId, null));
+            return;
+        }
+        synchronized (writeLock) {
+            // Xe mới thành AVAILABLE: không có biển số / màu / tên model để thêm vào cây
+            if (!positions.containsKey(vehicleId)) invalidateLocked();
+        }
+    }
+
+    /** Station / VehicleModel đổi (tên, hãng...): dựng lại từ DB ở lần đọc kế tiếp. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStationChanged(StationChangedEvent e) {
+        invalidate();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onModelChanged(VehicleModelChangedEvent e) {
+        invalidate();
+    }
+
+    private void invalidate() {
+        synchronized (writeLock) {
+            invalidateLocked();
+        }
+    }
+
+    private void invalidateLocked() {
+        generation++;
+        current = null;
+    }
+
+    private void apply(Change change) {
+        synchronized (writeLock) {
+            if (replay != null) replay.add(change);
+            Snapshot s = current;
+            // Chưa có ảnh chụp: lần dựng kế tiếp đọc DB nên không cần sửa
+            if (s == null) return;
+            SortedMap<Integer, StationNode> stations = move(s.stations, positions, names, change);
+            // Trạm / model chưa biết tên: dựng lại từ DB
+            if (stations == null) invalidateLocked();
+            else if (stations != s.stations) current = new Snapshot(stations);
+        }
+    }
+
+    // ===== Dựng lại =====
+
+    private Snapshot rebuild() {
+        long startGeneration;
+        synchronized (writeLock) {
+            replay = new ArrayList<>();
+            startGeneration = generation;
+        }
+        try {
+            // Mọi trạm (trạm hết xe vẫn hiện tên trong dropdown cấp 1) + xe AVAILABLE (projection, không tải cột ảnh)
+            List<Station> allStations = stationRepository.findAll();
+            List<AvailableVehicleProjection> rows = vehicleDetailRepository.findAllAvailableWithStationAndModel();
+
+            Map<Integer, Slot> freshPositions = new HashMap<>();
+            Names freshNames = names(allStations, rows);
+            SortedMap<Integer, StationNode> stations = build(allStations, rows, freshPositions, freshNames);
+
+            synchronized (writeLock) {
+                boolean complete = true;
+                for (Change c : replay) {
+                    SortedMap<Integer, StationNode> next = move(stations, freshPositions, freshNames, c);
+                    if (next == null) complete = false;
+                    else stations = next;
+                }
+                Snapshot s = new Snapshot(stations);
+                // Có invalidate (hoặc thay đổi chưa biết tên) trong lúc đọc DB: kết quả này vẫn trả cho caller
+                // nhưng không giữ lại
+                if (generation == startGeneration && complete) {
+                    positions = freshPositions;
+                    names = freshNames;
+                    current = s;
+                }
+                return s;
+            }
+        } finally {
+            synchronized (writeLock) {
+                replay = null;
+            }
+        }
+    }
+
+    // Tên trạm từ mọi trạm, tên model từ các xe AVAILABLE (model chưa có xe nào thì chưa biết tên)
+    private static Names names(List<Station> allStations, List<AvailableVehicleProjection> rows) {
+        Map<Integer, String> stations = new HashMap<>();
+        for (Station station : allStations) stations.put(station.getStationId(), station.getStationName());
+        Map<Integer, ModelName> models = new HashMap<>();
+        for (AvailableVehicleProjection r : rows) {
+            models.putIfAbsent(r.getVehicleModelId(), new ModelName(r.getBrand(), r.getModelName()));
+        }
+        return new Names(stations, models);
+    }
+
+    private static SortedMap<Integer, StationNode> build(List<Station> allStations,
+                                                         List<AvailableVehicleProjection> rows,
+                                                         Map<Integer, Slot> positions, Names names) {
+        Map<Integer, TreeMap<Integer, TreeMap<Integer, Car>>> cars = new HashMap<>();
+        for (AvailableVehicleProjection r : rows) {
+            cars.computeIfAbsent(r.getStationId(), k -> new TreeMap<>())
+                    .computeIfAbsent(r.getVehicleModelId(), k -> new TreeMap<>())
+                    .put(r.getVehicleDetailId(), new Car(r.getVehicleDetailId(), r.getLicensePlate(), r.getColor()));
+            positions.put(r.getVehicleDetailId(), new Slot(r.getStationId(), r.getVehicleModelId()));
+        }
+
+        TreeMap<Integer, StationNode> stations = new TreeMap<>();
+        for (Station station : allStations) {
+            TreeMap<Integer, ModelNode> models = new TreeMap<>();
+            cars.getOrDefault(station.getStationId(), new TreeMap<>()).forEach((modelId, modelCars) -> {
+                ModelName info = names.models().get(modelId);
+                models.put(modelId, new ModelNode(modelId, info.brand(), info.modelName(),
+                        Collections.unmodifiableSortedMap(modelCars)));
+            });
+            stations.put(station.getStationId(), new StationNode(station.getStationId(), station.getStationName(),
+                    Collections.unmodifiableSortedMap(models)));
+        }
+        return Collections.unmodifiableSortedMap(stations);
+    }
+
+    // ===== Copy-on-write =====
+
+    // Trả về cây mới (hoặc chính cây cũ nếu không đổi); chỉ chép các map trên đường từ gốc tới xe.
+    // null nếu không biết tên trạm / model của vị trí mới (positions không bị đổi)
+    private static SortedMap<Integer, StationNode> move(SortedMap<Integer, StationNode> stations,
+                                                        Map<Integer, Slot> positions, Names names, Change change) {
+        Placement p = change.placement();
+        String stationName = p != null ? names.stations().get(p.stationId()) : null;
+        ModelName modelName = p != null ? names.models().get(p.modelId()) : null;
+        if (p != null && (stationName == null || modelName == null)) return null;
+
+        Slot old = positions.remove(change.vehicleId());
+        if (old != null) stations = remove(stations, old, change.vehicleId());
+        if (p != null) {
+            stations = add(stations, p, stationName, modelName);
+            positions.put(change.vehicleId(), new Slot(p.stationId(), p.modelId()));
+        }
+        return stations;
+    }
+
+    private static SortedMap<Integer, StationNode> remove(SortedMap<Integer, StationNode> stations, Slot slot,
+                                                          int vehicleId) {
+        StationNode station = stations.get(slot.stationId());
+        ModelNode model = station == null ? null : station.models().get(slot.modelId());
+        if (model == null || !model.cars().containsKey(vehicleId)) return stations;
+
+        SortedMap<Integer, Car> cars = without(model.cars(), vehicleId);
+        // Model hết xe AVAILABLE tại trạm thì bỏ khỏi trạm; trạm vẫn giữ
+        SortedMap<Integer, ModelNode> models = cars.isEmpty()
+                ? without(station.models(), slot.modelId())
+                : with(station.models(), slot.modelId(),
+                        new ModelNode(model.modelId(), model.brand(), model.modelName(), cars));
+        return with(stations, slot.stationId(), new StationNode(station.stationId(), station.stationName(), models));
+    }
+
+    private static SortedMap<Integer, StationNode> add(SortedMap<Integer, StationNode> stations, Placement p,
+                                                       String stationName, ModelName modelName) {
+        StationNode station = stations.get(p.stationId());
+        SortedMap<Integer, ModelNode> models = station != null ? station.models() : Collections.emptySortedMap();
+        ModelNode model = models.get(p.modelId());
+        SortedMap<Integer, Car> cars = with(model != null ? model.cars() : Collections.emptySortedMap(),
+                p.car().vehicleDetailId(), p.car());
+        models = with(models, p.modelId(), new ModelNode(p.modelId(), modelName.brand(), modelName.modelName(), cars));
+        return with(stations, p.stationId(), new StationNode(p.stationId(), stationName, models));
+    }
+
+    private static <V> SortedMap<Integer, V> with(SortedMap<Integer, V> map, int key, V value) {
+        TreeMap<Integer, V> copy = new TreeMap<>(map);
+        copy.put(key, value);
+        return Collections.unmodifiableSortedMap(copy);
+    }
+
+    private static <V> SortedMap<Integer, V> without(SortedMap<Integer, V> map, int key) {
+        TreeMap<Integer, V> copy = new TreeMap<>(map);
+        copy.remove(key);
+        return Collections.unmodifiableSortedMap(copy);
+    }
+
+    // ===== DTO =====
+
+    private static GetAllAboutStationResponse toResponse(Snapshot s) {
+        List<GetAllAboutStationResponse.StationDTO> stationDTOs = new ArrayList<>(s.stations.size());
+        for (StationNode station : s.stations.values()) {
+            List<GetAllAboutStationResponse.ModelDTO> modelDTOs = new ArrayList<>(station.models().size());
+            for (ModelNode model : station.models().values()) {
+                List<GetAllAboutStationResponse.CarDTO> carDTOs = new ArrayList<>(model.cars().size());
+                for (Car car : model.cars().values()) {
+                    carDTOs.add(GetAllAboutStationResponse.CarDTO.builder()
+                            .vehicleDetailId(car.vehicleDetailId())
+                            .licensePlate(car.licensePlate())
+                            .color(car.color())
+                            .status(VehicleStatus.AVAILABLE)
+                            .build());
+                }
+                modelDTOs.add(GetAllAboutStationResponse.ModelDTO.builder()
+                        .vehicleModelId(model.modelId())
+                        .brand(model.brand())
+                        .modelName(model.modelName())
+                        .cars(carDTOs)
+                        .build());
+            }
+            stationDTOs.add(GetAllAboutStationResponse.StationDTO.builder()
+                    .stationId(station.stationId())
+                    .stationName(station.stationName())
+                    .models(modelDTOs)
+                    .build());
+        }
+        return new GetAllAboutStationResponse(stationDTOs);
+    }
+}
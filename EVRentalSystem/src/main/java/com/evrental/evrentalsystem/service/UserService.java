@@ -14,7 +14,7 @@ import com.evrental.evrentalsystem.response.user.UpdateUserProfile;
 import com.evrental.evrentalsystem.response.user.UserLoginResponse;
 import com.evrental.evrentalsystem.response.user.UserResponse;
 import com.evrental.evrentalsystem.security.JwtService;
-import com.evrental.evrentalsystem.util.ImageUtil;
+import com.evrental.evrentalsystem.storage.ImageBlobs;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -22,9 +22,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.Base64;
 import java.util.Date;
 import java.util.Map;
 import java.util.Optional;
@@ -45,6 +43,7 @@ public class UserService {
     private RenterDetailRepository renterDetailRepository;
 
     private final ObjectMapper objectMapper; // inject Jackson's ObjectMapper
+    private final ImageBlobs imageBlobs;
 
 
     @Transactional
@@ -56,6 +55,11 @@ public class UserService {
             throw new RuntimeException("Email đã tồn tại!");
         }
 
+        // Ingest 3 ảnh trước khi tạo user: file không phải ảnh bị từ chối trước khi ghi gì vào DB
+        String cccdFrontRef = imageBlobs.store(cccdFront);
+        String cccdBackRef = imageBlobs.store(cccdBack);
+        String gplxRef = imageBlobs.store(gplx);
+
         User user = new User();
         user.setUsername(request.getUsername());
         user.setPassword(request.getPassword());
@@ -69,13 +73,13 @@ public class UserService {
 
         User savedUser = userRepository.save(user);
 
-        // save inf renter with base64 images
+        // save inf renter: ảnh lưu ở BlobStore, entity giữ tham chiếu
 
         RenterDetail detail = new RenterDetail();
         detail.setRenter(savedUser);
-        detail.setCccdFront(encodeToBase64(cccdFront));
-        detail.setCccdBack(encodeToBase64(cccdBack));
-        detail.setDriverLicense(encodeToBase64(gplx));
+        detail.setCccdFront(cccdFrontRef);
+        detail.setCccdBack(cccdBackRef);
+        detail.setDriverLicense(gplxRef);
         detail.setVerificationStatus(RenterDetailVerificationStatusEnum.PENDING);
         detail.setIsRisky(false);
         renterDetailRepository.saveAndFlush(detail);
@@ -83,18 +87,6 @@ public class UserService {
         return toUserResponse(savedUser);
     }
 
-    private String encodeToBase64(MultipartFile file) {
-        try {
-            if (file != null && !file.isEmpty()) {
-                return Base64.getEncoder().encodeToString(file.getBytes());
-            } else {
-                throw new RuntimeException("File upload bị trống!");
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Không thể đọc file: " + file.getOriginalFilename(), e);
-        }
-    }
-
     public UserLoginResponse login(UserLoginRequest request) {
         String email = request.getEmail();
         String password = request.getPassword();
@@ -141,9 +133,10 @@ public class UserService {
         String driverLicense = null;
         String baseUrl = "http://localhost:8084/EVRentalSystem/api/users/";
         if (user.getRenterDetail() != null) {
-            cccdFront = "http://localhost:8084/EVRentalSystem/api/users/" + user.getUserId() + "/renter-detail/cccd-front";
-            cccdBack = "http://localhost:8084/EVRentalSystem/api/users/" + user.getUserId() + "/renter-detail/cccd-back";
-            driverLicense = "http://localhost:8084/EVRentalSystem/api/users/" + user.getUserId() + "/renter-detail/driver-license";
+            RenterDetail rd = user.getRenterDetail();
+            cccdFront = "http://localhost:8084/EVRentalSystem/api/users/" + user.getUserId() + "/renter-detail/cccd-front" + versionQuery(rd.getCccdFront());
+            cccdBack = "http://localhost:8084/EVRentalSystem/api/users/" + user.getUserId() + "/renter-detail/cccd-back" + versionQuery(rd.getCccdBack());
+            driverLicense = "http://localhost:8084/EVRentalSystem/api/users/" + user.getUserId() + "/renter-detail/driver-license" + versionQuery(rd.getDriverLicense());
         }
 
         return new UserLoginResponse(
@@ -203,27 +196,36 @@ public class UserService {
                 .verificationStatus(user.getRenterDetail().getVerificationStatus().toString())
                 .isRisky(user.getRenterDetail().getIsRisky())
                 // image URLs (client can call these endpoints)
-                .cccdFrontUrl("http://localhost:8084/EVRentalSystem/api/users/" + userId + "/renter-detail/cccd-front")
-                .cccdBackUrl("http://localhost:8084/EVRentalSystem/api/users/" + userId + "/renter-detail/cccd-back")
-                .driverLicenseUrl("http://localhost:8084/EVRentalSystem/api/users/" + userId + "/renter-detail/driver-license")
+                .cccdFrontUrl("http://localhost:8084/EVRentalSystem/api/users/" + userId + "/renter-detail/cccd-front"
+                        + versionQuery(user.getRenterDetail().getCccdFront()))
+                .cccdBackUrl("http://localhost:8084/EVRentalSystem/api/users/" + userId + "/renter-detail/cccd-back"
+                        + versionQuery(user.getRenterDetail().getCccdBack()))
+                .driverLicenseUrl("http://localhost:8084/EVRentalSystem/api/users/" + userId + "/renter-detail/driver-license"
+                        + versionQuery(user.getRenterDetail().getDriverLicense()))
                 .build();
 
         return response;
     }
 
-    // helper to get raw base64 strings (used by controller image endpoints)
-    public Optional<String> getCccdFrontBase64(Integer userId) {
+    // helper lấy giá trị cột ảnh (tham chiếu blob hoặc base64 cũ) cho các endpoint ảnh của controller
+    public Optional<String> getCccdFrontImage(Integer userId) {
         return renterDetailRepository.findById(userId).map(RenterDetail::getCccdFront);
     }
 
-    public Optional<String> getCccdBackBase64(Integer userId) {
+    public Optional<String> getCccdBackImage(Integer userId) {
         return renterDetailRepository.findById(userId).map(RenterDetail::getCccdBack);
     }
 
-    public Optional<String> getDriverLicenseBase64(Integer userId) {
+    public Optional<String> getDriverLicenseImage(Integer userId) {
         return renterDetailRepository.findById(userId).map(RenterDetail::getDriverLicense);
     }
 
+    // "?v=<hash>" để URL ảnh đổi khi ảnh đổi (ImageResponder.serveVersioned)
+    private static String versionQuery(String image) {
+        String version = ImageBlobs.versionOf(image);
+        return version != null ? "?v=" + version : "";
+    }
+
     private UserResponse toUserResponse(User user) {
         UserResponse dto = new UserResponse();
         dto.setUserId(user.getUserId());
@@ -280,22 +282,19 @@ public class UserService {
             throw new RuntimeException("Chỉ được phép cập nhật ảnh khi trạng thái xác minh là PENDING (Đang chờ duyệt).");
         }
 
-        // 3. Encode file sang Base64 bằng ImageUtil và cập nhật vào entity
+        // 3. Lưu file vào BlobStore và cập nhật tham chiếu vào entity
         // Kiểm tra null để tránh lỗi nếu người dùng không gửi đủ 3 file (tùy nghiệp vụ của bạn bắt buộc hay không)
 
         if (cccdFrontFile != null && !cccdFrontFile.isEmpty()) {
-            String base64Front = ImageUtil.encodeToBase64(cccdFrontFile);
-            renterDetail.setCccdFront(base64Front);
+            renterDetail.setCccdFront(imageBlobs.store(cccdFrontFile));
         }
 
         if (cccdBackFile != null && !cccdBackFile.isEmpty()) {
-            String base64Back = ImageUtil.encodeToBase64(cccdBackFile);
-            renterDetail.setCccdBack(base64Back);
+            renterDetail.setCccdBack(imageBlobs.store(cccdBackFile));
         }
 
         if (driverLicenseFile != null && !driverLicenseFile.isEmpty()) {
-            String base64License = ImageUtil.encodeToBase64(driverLicenseFile);
-            renterDetail.setDriverLicense(base64License);
+            renterDetail.setDriverLicense(imageBlobs.store(driverLicenseFile));
         }
 
         // 4. Lưu xuống database
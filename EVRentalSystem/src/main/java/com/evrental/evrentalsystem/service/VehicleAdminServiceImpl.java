@@ -9,13 +9,22 @@ import com.evrental.evrentalsystem.repository.projection.VehicleListProjection;
 import com.evrental.evrentalsystem.request.CreateVehicleRequest;
 import com.evrental.evrentalsystem.request.UpdateVehicleRequest;
 import com.evrental.evrentalsystem.response.admin.VehicleDetailResponse;
+import com.evrental.evrentalsystem.storage.ImageBlobs;
+import com.evrental.evrentalsystem.storage.ImageCache;
+import com.evrental.evrentalsystem.storage.ImageUrls;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @Primary
 @Service
 @RequiredArgsConstructor
@@ -24,6 +33,9 @@ public class VehicleAdminServiceImpl implements VehicleAdminService {
     private final VehicleDetailRepository repo;
     private final StationRepository       stationRepo;       // dùng khi update / create quan hệ
     private final VehicleModelRepository  vehicleModelRepo;  // dùng khi update / create quan hệ
+    private final ImageBlobs              imageBlobs;
+    private final ImageCache              imageCache;
+    private final VehicleSearchIndex      searchIndex;
 
     // =========================================================
     // LIST
@@ -36,6 +48,12 @@ public class VehicleAdminServiceImpl implements VehicleAdminService {
         System.out.printf(">>> Params -> q=%s | status=%s | stationId=%s | brand=%s | model=%s | page=%d | size=%d%n",
                 q, status, stationId, brand, model, pageable.getPageNumber(), pageable.getPageSize());
 
+        // Có q: chỉ mục trigram đổi q thành id của trang, DB chỉ lấy đúng các id đó
+        if (normalize(q) != null && searchIndex.isReady()) {
+            return searchByIndex(normalize(q), normalize(status), stationId, normalize(brand), normalize(model), pageable)
+                    .map(this::resolvePicture);
+        }
+
         // Gợi ý (nếu muốn ẩn xe đã xóa mềm): thêm điều kiện NOT DELETED vào query ở repository.
         return repo.searchVehicleList(
                 normalize(q),
@@ -44,7 +62,43 @@ public class VehicleAdminServiceImpl implements VehicleAdminService {
                 normalize(brand),
                 normalize(model),
                 pageable
-        );
+        ).map(this::resolvePicture);
+    }
+
+    private Page<VehicleListProjection> searchByIndex(
+            String q, String status, Integer stationId, String brand, String model, Pageable pageable) {
+        VehicleSearchIndex.Result hit = searchIndex.search(
+                q, status, stationId, brand, model, pageable.getOffset(), pageable.getPageSize());
+        if (hit.ids().isEmpty()) return new PageImpl<>(List.of(), pageable, hit.total());
+
+        // Giữ thứ tự id của index; xe vừa bị xoá giữa 2 bước thì bỏ qua
+        Map<Integer, VehicleListProjection> byId = new HashMap<>();
+        for (VehicleListProjection p : repo.findVehicleListByIds(hit.ids())) byId.put(p.getId(), p);
+        List<VehicleListProjection> content = new ArrayList<>(hit.ids().size());
+        for (Integer id : hit.ids()) {
+            VehicleListProjection p = byId.get(id);
+            if (p != null) content.add(p);
+        }
+        return new PageImpl<>(content, pageable, hit.total());
+    }
+
+    // Query chỉ lấy 71 ký tự đầu của cột ảnh: đổi thành URL ảnh xe, xe không có ảnh thì URL ảnh mẫu xe
+    private VehicleListProjection resolvePicture(VehicleListProjection p) {
+        String detailUrl = ImageUrls.vehicleDetail(p.getId(), p.getPicture());
+        String picture = detailUrl != null ? detailUrl : ImageUrls.vehicleModel(p.getVehicleId(), p.getModelPicture());
+        return new VehicleListProjection() {
+            public Integer getId()          { return p.getId(); }
+            public String  getLicensePlate() { return p.getLicensePlate(); }
+            public String  getModel()       { return p.getModel(); }
+            public String  getBrand()       { return p.getBrand(); }
+            public String  getStatus()      { return p.getStatus(); }
+            public Integer getStationId()   { return p.getStationId(); }
+            public String  getStationName() { return p.getStationName(); }
+            public Integer getOdo()         { return p.getOdo(); }
+            public Integer getVehicleId()   { return p.getVehicleId(); }
+            public String  getPicture()     { return picture; }
+            public String  getModelPicture() { return null; }
+        };
     }
 
     // =========================================================
@@ -52,21 +106,22 @@ public class VehicleAdminServiceImpl implements VehicleAdminService {
     // =========================================================
     @Override
     public VehicleDetailResponse getVehicleById(Integer id) {
-        var v = repo.findDetailWithModelAndStation(id)
+        // Projection không kèm dữ liệu ảnh: trả URL ảnh như các API danh sách
+        var v = repo.findCardById(id)
                 .orElseThrow(() -> new RuntimeException("Vehicle not found: " + id));
 
         return VehicleDetailResponse.builder()
-                .id(v.getId())
+                .id(v.getDetailId())
                 .licensePlate(v.getLicensePlate())
                 .status(v.getStatus().toString())
                 .odo(v.getOdo())
                 .color(v.getColor())
-                .picture(v.getPicture())
-                .stationId(v.getStation() != null ? v.getStation().getStationId() : null)
-                .stationName(v.getStation() != null ? v.getStation().getStationName() : null)
-                .vehicleId(v.getVehicleModel() != null ? v.getVehicleModel().getVehicleId() : null)
-                .brand(v.getVehicleModel() != null ? v.getVehicleModel().getBrand() : null)
-                .model(v.getVehicleModel() != null ? v.getVehicleModel().getModel() : null)
+                .picture(ImageUrls.vehicleDetail(v.getDetailId(), v.getDetailPictureRef()))
+                .stationId(v.getStationId())
+                .stationName(v.getStationName())
+                .vehicleId(v.getModelId())
+                .brand(v.getBrand())
+                .model(v.getModel())
                 .build();
     }
 
@@ -97,7 +152,7 @@ public class VehicleAdminServiceImpl implements VehicleAdminService {
         v.setColor( normalize(r.getColor()) );
         v.setBatteryCapacity( normalize(r.getBatteryCapacity()) );
         v.setOdo(r.getOdo() == null ? 0 : r.getOdo());
-        v.setPicture( normalize(r.getPicture()) );
+        v.setPicture( imageBlobs.store(r.getPicture()) );
         v.setStatus( normalize(r.getStatus()) == null ? VehicleStatus.AVAILABLE : VehicleStatus.valueOf(r.getStatus().toString().trim()) );
 
         repo.save(v);
@@ -122,7 +177,10 @@ public class VehicleAdminServiceImpl implements VehicleAdminService {
         if (r.getStatus() != null)       v.setStatus(VehicleStatus.valueOf(r.getStatus().toString().trim()) );
         if (r.getOdo() != null)          v.setOdo(r.getOdo());
         if (r.getColor() != null)        v.setColor(r.getColor().trim());
-        if (r.getPicture() != null)      v.setPicture(r.getPicture().trim());
+        if (r.getPicture() != null) {
+            v.setPicture(imageBlobs.store(r.getPicture()));
+            imageCache.invalidateAfterCommit(ImageCache.Kind.VEHICLE_DETAIL, id);
+        }
 
         if (r.getStationId() != null) {
             var s = stationRepo.findById(r.getStationId())
@@ -0,0 +1,519 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.event.BookingChangedEvent;
+import com.evrental.evrentalsystem.event.VehicleChangedEvent;
+import com.evrental.evrentalsystem.event.VehicleStatusChangedEvent;
+import com.evrental.evrentalsystem.enums.BookingStatus;
+import com.evrental.evrentalsystem.enums.VehicleStatus;
+import com.evrental.evrentalsystem.repository.BookingRepository;
+import com.evrental.evrentalsystem.repository.VehicleDetailRepository;
+import com.evrental.evrentalsystem.repository.projection.BookingIntervalProjection;
+import com.evrental.evrentalsystem.repository.projection.VehicleSlotProjection;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Chỉ mục trong bộ nhớ: xe nào của model M tại trạm S còn trống trong khoảng [start, end).
+ * - Mỗi xe giữ các khoảng thời gian booking đã gán xe, sắp theo start (TreeSet): kiểm tra 1 xe là O(log k).
+ * - Booking chưa gán xe (mới tạo, chờ nhân viên chọn biển số) là "suất giữ chỗ" của cặp (trạm, model).
+ * - Cập nhật sau khi transaction commit (sự kiện của FleetChangePublisher, VehicleStatusChangedEvent khi update hàng loạt);
+ *   dựng lại toàn bộ từ Booking / Vehicle_Detail lúc khởi động.
+ * Chưa dựng xong (hoặc dựng lỗi) thì isReady() = false, caller dùng truy vấn DB như trước.
+ *
+ * Đếm xe trống theo (trạm, model) cho màn tìm kiếm dùng thêm bitmap chiếm dụng mỗi xe: 1 bit / ô thời gian
+ * (availability.bitmap.granularity = HOURS | DAYS) trong horizon-days ngày kể từ 0h hôm nay, cuộn lại mỗi ngày.
+ * Kiểm tra 1 xe là vài phép AND trên long[], khoảng ngoài horizon thì quay về so khoảng (TreeSet).
+ * Bit làm tròn ra ngoài theo ô (booking trả 10:30 chiếm cả ô 10h), nên số đếm thận trọng hơn hasCapacity.
+ * Bộ nhớ: chỉ xe có booking mới có bitmap; 90 ngày theo giờ = 2160 bit = 34 long ≈ 290 byte / xe
+ * -> ≈ 2,9 MB cho 10k xe (365 ngày ≈ 11 MB); theo ngày 90 ngày = 2 long ≈ 32 byte / xe -> ≈ 0,3 MB cho 10k xe.
+ */
+@Slf4j
+@Component
+public class VehicleAvailabilityIndex {
+
+    /** Khoảng [start, end) booking giữ xe (vehicleId) hoặc giữ chỗ tại (stationId, modelId) khi vehicleId = null. */
+    public record Hold(Integer bookingId, Integer vehicleId, Integer stationId, Integer modelId,
+                       LocalDateTime start, LocalDateTime end) {}
+
+    /** Số xe còn nhận booking của model tại trạm trong khoảng tìm kiếm. */
+    public record AvailabilityCount(Integer stationId, Integer modelId, int available) {}
+
+    private static final Comparator<Hold> BY_START =
+            Comparator.comparing(Hold::start).thenComparing(Hold::bookingId);
+
+    private final VehicleDetailRepository vehicleDetailRepository;
+    private final BookingRepository bookingRepository;
+    private final ChronoUnit slotUnit;
+    private final int slots;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private State state;
+    private volatile boolean ready;
+    // Thay đổi đến trong lúc đang dựng lại: áp lại lên bản mới sau khi đọc DB xong
+    private List<Consumer<State>> replay;
+
+    private final ScheduledExecutorService roller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "availability-roll");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public VehicleAvailabilityIndex(VehicleDetailRepository vehicleDetailRepository,
+                                    BookingRepository bookingRepository,
+                                    @Value("${availability.bitmap.granularity:HOURS}") ChronoUnit granularity,
+                                    @Value("${availability.bitmap.horizon-days:90}") int horizonDays) {
+        if (granularity != ChronoUnit.HOURS && granularity != ChronoUnit.DAYS) {
+            throw new IllegalArgumentException("availability.bitmap.granularity chỉ nhận HOURS hoặc DAYS");
+        }
+        this.vehicleDetailRepository = vehicleDetailRepository;
+        this.bookingRepository = bookingRepository;
+        this.slotUnit = granularity;
+        this.slots = Math.max(1, horizonDays) * (granularity == ChronoUnit.HOURS ? 24 : 1);
+        this.state = newState();
+    }
+
+    private State newState() {
+        return new State(LocalDate.now().atStartOfDay(), slotUnit, slots);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // ===== Truy vấn =====
+
+    /**
+     * Id các xe (AVAILABLE / RENTED) của model tại trạm không có booking nào chồng lên [start, end).
+     * Quét tuần tự các xe của cặp (trạm, model), mỗi xe O(log k): 1 cặp thường chỉ vài chục xe
+     * nên không giữ thêm tập xe trống theo từng cặp (tập đó phụ thuộc khoảng thời gian, không cache được).
+     */
+    public List<Integer> freeVehicles(Integer stationId, Integer modelId, LocalDateTime start, LocalDateTime end) {
+        LocalDateTime to = normalizeEnd(start, end);
+        lock.readLock().lock();
+        try {
+            return state.freeVehicles(stationId, modelId, start, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Còn nhận thêm 1 booking được không: số xe trống nhiều hơn số booking chưa gán xe giữ chỗ
+     * cùng lúc nhiều nhất trong khoảng này (2 suất nối tiếp nhau chỉ cần 1 xe).
+     */
+    public boolean hasCapacity(Integer stationId, Integer modelId, LocalDateTime start, LocalDateTime end) {
+        LocalDateTime to = normalizeEnd(start, end);
+        lock.readLock().lock();
+        try {
+            int free = state.freeVehicles(stationId, modelId, start, to).size();
+            if (free == 0) return false;
+            Timeline claims = state.claims.get(key(stationId, modelId));
+            return claims == null || claims.peakOverlap(start, to) < free;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Số xe trống theo (trạm, model) trong [start, end); stationId / modelId null = tất cả.
+     * Chỉ trả các cặp còn ít nhất 1 xe.
+     */
+    public List<AvailabilityCount> countAvailable(Integer stationId, Integer modelId,
+                                                  LocalDateTime start, LocalDateTime end) {
+        LocalDateTime to = normalizeEnd(start, end);
+        lock.readLock().lock();
+        try {
+            State s = state;
+            long[] mask = s.mask(start, to);
+            List<AvailabilityCount> result = new ArrayList<>();
+            for (Map.Entry<Long, NavigableSet<Integer>> e : s.fleet.entrySet()) {
+                int sid = (int) (e.getKey() >>> 32);
+                int mid = (int) (long) e.getKey();
+                if (stationId != null && stationId != sid) continue;
+                if (modelId != null && modelId != mid) continue;
+
+                int free = 0;
+                for (Integer id : e.getValue()) {
+                    Vehicle v = s.vehicles.get(id);
+                    if (!State.isRentable(v.status)) continue;
+                    boolean busy = mask != null
+                            ? v.occupancy != null && intersects(v.occupancy, mask)
+                            : v.timeline.countOverlapping(start, to, 1) > 0;
+                    if (!busy) free++;
+                }
+                Timeline claims = s.claims.get(e.getKey());
+                if (free > 0 && claims != null) free -= claims.peakOverlap(start, to);
+                if (free > 0) result.add(new AvailabilityCount(sid, mid, free));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean intersects(long[] bits, long[] mask) {
+        for (int w = 0; w < mask.length; w++) {
+            if ((bits[w] & mask[w]) != 0) return true;
+        }
+        return false;
+    }
+
+    // Thuê trong ngày / giờ trả không hợp lệ -> tính 1 ngày như BookingService
+    private static LocalDateTime normalizeEnd(LocalDateTime start, LocalDateTime end) {
+        if (start == null) throw new IllegalArgumentException("startTime là bắt buộc");
+        return end == null || !end.isAfter(start) ? start.plusDays(1) : end;
+    }
+
+    // ===== Cập nhật (áp dụng sau commit) =====
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVehicleChanged(VehicleChangedEvent e) {
+        Integer id = e.vehicleId();
+        if (id == null) return;
+        if (e.removed()) apply(s -> s.removeVehicle(id));
+        else apply(s -> s.putVehicle(id, e.stationId(), e.modelId(), e.status()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVehicleStatusChanged(VehicleStatusChangedEvent e) {
+        if (e.vehicleId() != null) apply(s -> s.setVehicleStatus(e.vehicleId(), e.status()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookingChanged(BookingChangedEvent e) {
+        Integer bookingId = e.bookingId();
+        if (bookingId == null) return;
+        Hold hold = toHold(bookingId, e.vehicleId(), e.stationId(), e.modelId(),
+                e.startTime(), e.expectedReturnTime(), e.actualReturnTime(), e.status());
+        apply(s -> s.putBooking(bookingId, hold));
+    }
+
+    private void apply(Consumer<State> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(state);
+            if (replay != null) replay.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean isOpen(BookingStatus status) {
+        return status != null && status != BookingStatus.Completed && status != BookingStatus.Cancelled;
+    }
+
+    // null nếu booking không còn giữ xe / thiếu thời gian
+    private static Hold toHold(Integer bookingId, Integer vehicleId, Integer stationId, Integer modelId,
+                               LocalDateTime start, LocalDateTime expectedReturn, LocalDateTime actualReturn,
+                               BookingStatus status) {
+        if (!isOpen(status) || start == null) return null;
+        LocalDateTime end = actualReturn != null ? actualReturn : expectedReturn;
+        if (end == null || !end.isAfter(start)) end = start.plusDays(1);
+        return new Hold(bookingId, vehicleId, stationId, modelId, start, end);
+    }
+
+    // ===== Dựng lại =====
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            replay = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            State fresh = newState();
+            List<VehicleSlotProjection> vehicles = vehicleDetailRepository.findAllSlots();
+            for (VehicleSlotProjection v : vehicles) {
+                fresh.putVehicle(v.getVehicleDetailId(), v.getStationId(), v.getVehicleModelId(), v.getStatus());
+            }
+            List<BookingIntervalProjection> bookings = bookingRepository.findOpenIntervals();
+            for (BookingIntervalProjection b : bookings) {
+                fresh.putBooking(b.getBookingId(), toHold(b.getBookingId(), b.getVehicleDetailId(), b.getStationId(),
+                        b.getVehicleModelId(), b.getStartTime(), b.getExpectedReturnTime(), b.getActualReturnTime(),
+                        b.getStatus()));
+            }
+            lock.writeLock().lock();
+            try {
+                replay.forEach(change -> change.accept(fresh));
+                state = fresh;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("VehicleAvailabilityIndex: {} xe, {} booking đang mở", vehicles.size(), bookings.size());
+        } catch (Exception e) {
+            log.warn("Không dựng được VehicleAvailabilityIndex, dùng truy vấn DB: {}", e.getMessage());
+        } finally {
+            lock.writeLock().lock();
+            try {
+                replay = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /** Cuộn horizon sang 0h mỗi ngày: ô của hôm qua bỏ đi, ô mới cuối horizon được tính từ các khoảng. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleRoll() {
+        LocalDateTime now = LocalDateTime.now();
+        long delay = Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()).toMillis();
+        roller.scheduleAtFixedRate(this::roll, delay, TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    void roll() {
+        lock.writeLock().lock();
+        try {
+            state.rollTo(LocalDate.now().atStartOfDay());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        roller.shutdownNow();
+    }
+
+    private static long key(Integer stationId, Integer modelId) {
+        return ((long) stationId << 32) | (modelId & 0xffffffffL);
+    }
+
+    // ===== Cấu trúc dữ liệu (chỉ truy cập khi giữ lock) =====
+
+    /** Các khoảng sắp theo start; longest = khoảng dài nhất từng thêm, giới hạn đoạn phải quét khi tìm chồng lấn. */
+    private static final class Timeline {
+        private final TreeSet<Hold> holds = new TreeSet<>(BY_START);
+        private Duration longest = Duration.ZERO;
+
+        void add(Hold h) {
+            holds.add(h);
+            Duration d = Duration.between(h.start(), h.end());
+            if (d.compareTo(longest) > 0) longest = d;
+        }
+
+        void remove(Hold h) {
+            holds.remove(h);
+        }
+
+        boolean isEmpty() {
+            return holds.isEmpty();
+        }
+
+        /** Số khoảng chồng lên [start, end), dừng khi đạt limit. */
+        int countOverlapping(LocalDateTime start, LocalDateTime end, int limit) {
+            if (holds.isEmpty()) return 0;
+            // Khoảng bắt đầu trước (start - longest) chắc chắn đã kết thúc trước start
+            Hold from = new Hold(Integer.MIN_VALUE, null, null, null, start.minus(longest), null);
+            Hold to = new Hold(Integer.MIN_VALUE, null, null, null, end, null);
+            int count = 0;
+            for (Hold h : holds.subSet(from, true, to, false)) {
+                if (h.end().isAfter(start) && ++count >= limit) break;
+            }
+            return count;
+        }
+
+        /** Số khoảng chồng nhau nhiều nhất tại 1 thời điểm trong [start, end) (quét điểm đầu / cuối). */
+        int peakOverlap(LocalDateTime start, LocalDateTime end) {
+            if (holds.isEmpty()) return 0;
+            Hold from = new Hold(Integer.MIN_VALUE, null, null, null, start.minus(longest), null);
+            Hold to = new Hold(Integer.MIN_VALUE, null, null, null, end, null);
+            List<LocalDateTime> starts = new ArrayList<>();
+            List<LocalDateTime> ends = new ArrayList<>();
+            for (Hold h : holds.subSet(from, true, to, false)) {
+                if (!h.end().isAfter(start)) continue;
+                starts.add(h.start().isBefore(start) ? start : h.start()); // đã sắp theo start
+                ends.add(h.end().isAfter(end) ? end : h.end());
+            }
+            ends.sort(null);
+            int peak = 0, open = 0, e = 0;
+            for (LocalDateTime s : starts) {
+                // Khoảng nửa mở: kết thúc đúng lúc khoảng khác bắt đầu thì không chồng
+                while (!ends.get(e).isAfter(s)) {
+                    open--;
+                    e++;
+                }
+                peak = Math.max(peak, ++open);
+            }
+            return peak;
+        }
+    }
+
+    private static final class Vehicle {
+        private Integer stationId;
+        private Integer modelId;
+        private VehicleStatus status;
+        private final Timeline timeline = new Timeline();
+        // Bit i = ô thứ i kể từ State.origin bị chiếm; null khi không có booking nào trong horizon
+        private long[] occupancy;
+    }
+
+    private static final class State {
+        private final ChronoUnit unit;
+        private final int slots;
+        private LocalDateTime origin;
+        private final Map<Integer, Vehicle> vehicles = new HashMap<>();
+        private final Map<Long, NavigableSet<Integer>> fleet = new HashMap<>();
+        private final Map<Long, Timeline> claims = new HashMap<>();
+        private final Map<Integer, Hold> holds = new HashMap<>();
+
+        State(LocalDateTime origin, ChronoUnit unit, int slots) {
+            this.origin = origin;
+            this.unit = unit;
+            this.slots = slots;
+        }
+
+        /** Mặt nạ các ô của [start, end); null nếu khoảng ra ngoài horizon (caller so khoảng). */
+        long[] mask(LocalDateTime start, LocalDateTime end) {
+            long from = slotFloor(start);
+            long to = slotCeil(end);
+            if (from < 0 || to > slots) return null;
+            long[] mask = new long[(int) ((to + 63) >>> 6)];
+            setBits(mask, (int) from, (int) to);
+            return mask;
+        }
+
+        // Trước origin -> -1 (ngoài horizon)
+        private long slotFloor(LocalDateTime t) {
+            return t.isBefore(origin) ? -1 : unit.between(origin, t.truncatedTo(unit));
+        }
+
+        private long slotCeil(LocalDateTime t) {
+            LocalDateTime floor = t.truncatedTo(unit);
+            return unit.between(origin, floor) + (floor.equals(t) ? 0 : 1);
+        }
+
+        private static void setBits(long[] bits, int from, int to) {
+            for (int w = from >>> 6; w <= (to - 1) >>> 6; w++) {
+                long m = -1L;
+                if (w == from >>> 6) m &= -1L << (from & 63);
+                if (w == (to - 1) >>> 6) m &= -1L >>> (63 - ((to - 1) & 63));
+                bits[w] |= m;
+            }
+        }
+
+        /** Tính lại bitmap của xe từ các khoảng của nó (thường chỉ vài booking). */
+        void refreshOccupancy(Vehicle v) {
+            long[] bits = null;
+            for (Hold h : v.timeline.holds) {
+                long from = Math.max(0, slotFloor(h.start()));
+                long to = Math.min(slots, slotCeil(h.end()));
+                if (from >= to) continue;
+                if (bits == null) bits = new long[(slots + 63) >>> 6];
+                setBits(bits, (int) from, (int) to);
+            }
+            v.occupancy = bits;
+        }
+
+        void rollTo(LocalDateTime newOrigin) {
+            if (newOrigin.equals(origin)) return;
+            origin = newOrigin;
+            for (Vehicle v : vehicles.values()) refreshOccupancy(v);
+        }
+
+        List<Integer> freeVehicles(Integer stationId, Integer modelId, LocalDateTime start, LocalDateTime end) {
+            NavigableSet<Integer> ids = fleet.get(key(stationId, modelId));
+            if (ids == null) return List.of();
+            List<Integer> free = new ArrayList<>();
+            for (Integer id : ids) {
+                Vehicle v = vehicles.get(id);
+                if (isRentable(v.status) && v.timeline.countOverlapping(start, end, 1) == 0) free.add(id);
+            }
+            return free;
+        }
+
+        private static boolean isRentable(VehicleStatus status) {
+            return status == VehicleStatus.AVAILABLE || status == VehicleStatus.RENTED;
+        }
+
+        void putVehicle(Integer id, Integer stationId, Integer modelId, VehicleStatus status) {
+            if (status == VehicleStatus.DELETED) {
+                removeVehicle(id);
+                return;
+            }
+            Vehicle v = vehicles.computeIfAbsent(id, k -> new Vehicle());
+            unlist(id, v);
+            v.stationId = stationId;
+            v.modelId = modelId;
+            v.status = status;
+            if (stationId != null && modelId != null) {
+                fleet.computeIfAbsent(key(stationId, modelId), k -> new TreeSet<>()).add(id);
+            }
+        }
+
+        void setVehicleStatus(Integer id, VehicleStatus status) {
+            Vehicle v = vehicles.get(id);
+            if (v == null) return; // Chưa biết trạm / model: đợi lần dựng lại hoặc lần save kế tiếp
+            putVehicle(id, v.stationId, v.modelId, status);
+        }
+
+        void removeVehicle(Integer id) {
+            Vehicle v = vehicles.get(id);
+            if (v == null) return;
+            unlist(id, v);
+            // Giữ lại nếu còn booking gán xe này (để khi xe được khôi phục vẫn thấy lịch)
+            if (v.timeline.isEmpty()) vehicles.remove(id);
+            else v.status = VehicleStatus.DELETED;
+        }
+
+        private void unlist(Integer id, Vehicle v) {
+            if (v.stationId == null || v.modelId == null) return;
+            long k = key(v.stationId, v.modelId);
+            NavigableSet<Integer> ids = fleet.get(k);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) fleet.remove(k);
+        }
+
+        /** Thay khoảng giữ của booking; hold = null để nhả. */
+        void putBooking(Integer bookingId, Hold hold) {
+            Hold old = hold == null ? holds.remove(bookingId) : holds.put(bookingId, hold);
+            if (old != null) {
+                if (old.vehicleId() != null) {
+                    Vehicle v = vehicles.get(old.vehicleId());
+                    if (v != null) {
+                        v.timeline.remove(old);
+                        refreshOccupancy(v);
+                    }
+                } else if (old.stationId() != null && old.modelId() != null) {
+                    long k = key(old.stationId(), old.modelId());
+                    Timeline t = claims.get(k);
+                    if (t != null) {
+                        t.remove(old);
+                        if (t.isEmpty()) claims.remove(k);
+                    }
+                }
+            }
+            if (hold == null) return;
+            if (hold.vehicleId() != null) {
+                Vehicle v = vehicles.computeIfAbsent(hold.vehicleId(), k -> new Vehicle());
+                v.timeline.add(hold);
+                refreshOccupancy(v);
+            } else if (hold.stationId() != null && hold.modelId() != null) {
+                claims.computeIfAbsent(key(hold.stationId(), hold.modelId()), k -> new Timeline()).add(hold);
+            }
+        }
+    }
+}
@@ -12,14 +12,17 @@ import com.evrental.evrentalsystem.request.AdminCreateVehicleModelRequest;
 import com.evrental.evrentalsystem.request.AdminUpdateVehicleDetailRequest;
 import com.evrental.evrentalsystem.request.AdminUpdateVehicleModelRequest;
 import com.evrental.evrentalsystem.response.admin.*;
-import com.evrental.evrentalsystem.util.ImageUtil;
+import com.evrental.evrentalsystem.repository.projection.VehicleCardProjection;
+import com.evrental.evrentalsystem.repository.projection.VehicleModelCardProjection;
+import com.evrental.evrentalsystem.storage.ImageBlobs;
+import com.evrental.evrentalsystem.storage.ImageCache;
+import com.evrental.evrentalsystem.storage.ImageUrls;
+import com.evrental.evrentalsystem.storage.ImageVariants;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.UUID;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -31,51 +34,46 @@ public class VehicleManagementService {
     private final VehicleModelRepository vehicleModelRepository;
     private final VehicleDetailRepository vehicleDetailRepository;
     private final StationRepository stationRepository;
-    ImageUtil imageUtil = new ImageUtil();
+    private final ImageBlobs imageBlobs;
+    private final ImageVariants imageVariants;
+    private final ImageCache imageCache;
+    private final StationSnapshotCache stationSnapshotCache;
 
     // <editor-fold desc="This is the section for vehicle detail management">
     public List<AdminVehicleModelResponse> getAllVehiclesGroupedByModel() {
-        List<VehicleModel> models = vehicleModelRepository.findAllWithDetailsAndStation();
+        // Dòng phẳng model + xe, đã sắp theo model: không tải cột ảnh, ảnh trả về dạng URL
+        List<VehicleCardProjection> rows = vehicleModelRepository.findAllWithDetailsAndStation();
 
-        // Vì JOIN FETCH trên collection có thể lặp parent, ta group theo vehicleId
         Map<Integer, AdminVehicleModelResponse> map = new LinkedHashMap<>();
 
-        for (VehicleModel vm : models) {
-            Integer vid = vm.getVehicleId();
-            AdminVehicleModelResponse vmResp = map.computeIfAbsent(vid, id -> AdminVehicleModelResponse.builder()
-                    .vehicleId(vm.getVehicleId())
-                    .brand(vm.getBrand())
-                    .model(vm.getModel())
-                    .price(vm.getPrice())
-                    .seats(vm.getSeats())
-                    .modelPicture(vm.getPicture())
+        for (VehicleCardProjection row : rows) {
+            AdminVehicleModelResponse vmResp = map.computeIfAbsent(row.getModelId(), id -> AdminVehicleModelResponse.builder()
+                    .vehicleId(row.getModelId())
+                    .brand(row.getBrand())
+                    .model(row.getModel())
+                    .price(row.getPrice())
+                    .seats(row.getSeats())
+                    .modelPicture(ImageUrls.vehicleModel(row.getModelId(), row.getModelPictureRef()))
                     .vehicleDetails(new ArrayList<>())
                     .build()
             );
 
-            List<VehicleDetail> details = vm.getVehicleDetails();
-            if (details == null) continue;
-
-            for (VehicleDetail vd : details) {
-                // map detail -> DTO
-                AdminVehicleDetailResponse dResp = AdminVehicleDetailResponse.builder()
-                        .id(vd.getId())
-                        .licensePlate(vd.getLicensePlate())
-                        .batteryCapacity(vd.getBatteryCapacity())
-                        .odo(vd.getOdo())
-                        .detailPicture(vd.getPicture())
-                        .status(vd.getStatus().toString())
-                        .color(vd.getColor())
-                        .build();
-
-                Station st = vd.getStation();
-                if (st != null) {
-                    dResp.setStationId(st.getStationId());
-                    dResp.setStationName(st.getStationName());
-                }
-
-                vmResp.getVehicleDetails().add(dResp);
-            }
+            // Model chưa có xe (left join)
+            if (row.getDetailId() == null) continue;
+
+            AdminVehicleDetailResponse dResp = AdminVehicleDetailResponse.builder()
+                    .id(row.getDetailId())
+                    .licensePlate(row.getLicensePlate())
+                    .batteryCapacity(row.getBatteryCapacity())
+                    .odo(row.getOdo())
+                    .detailPicture(ImageUrls.vehicleDetail(row.getDetailId(), row.getDetailPictureRef()))
+                    .status(row.getStatus().toString())
+                    .color(row.getColor())
+                    .stationId(row.getStationId())
+                    .stationName(row.getStationName())
+                    .build();
+
+            vmResp.getVehicleDetails().add(dResp);
         }
 
         return new ArrayList<>(map.values());
@@ -121,10 +119,12 @@ public class VehicleManagementService {
         vd.setOdo(req.getOdo());
         vd.setColor(req.getColor());
         vd.setStatus(VehicleStatus.AVAILABLE);
-        vd.setPicture(imageUtil.encodeToBase64(detailPicture));
+        vd.setPicture(imageBlobs.store(detailPicture));
         vd.setStation(station);
         vd.setVehicleModel(vm);
         vehicleDetailRepository.save(vd);
+        // Sinh sẵn thumbnail/card/full trong nền
+        imageVariants.generateAsync(vd.getPicture());
         return "Vehicle detail created successfully.";
     }
 
@@ -165,24 +165,25 @@ public class VehicleManagementService {
 
         vd.setStatus(target);
         if (detailPicture != null) {
-            vd.setPicture(imageUtil.encodeToBase64(detailPicture));
+            vd.setPicture(imageBlobs.store(detailPicture));
+            imageVariants.generateAsync(vd.getPicture());
         }
 //        vd.setStatus(req.getStatus());
         vehicleDetailRepository.save(vd);
+        imageCache.invalidateAfterCommit(ImageCache.Kind.VEHICLE_DETAIL, vd.getId());
         return "Vehicle detail updated successfully.";
     }
 
     public AdminGetAllVehicleDetailResponse getVehicleDetailById(Integer vehicleDetailId) {
         VehicleDetail vd = vehicleDetailRepository.findById(vehicleDetailId)
                 .orElseThrow(() -> new RuntimeException("VehicleDetail not found with id: " + vehicleDetailId));
-        String randomId = UUID.randomUUID().toString().replace("-", "").substring(0, 10);
         AdminGetAllVehicleDetailResponse resp = AdminGetAllVehicleDetailResponse.builder()
                 .detailId(vd.getId())
                 .licensePlate(vd.getLicensePlate())
                 .batteryCapacity(vd.getBatteryCapacity())
                 .odo(vd.getOdo())
-                // Trả URL ảnh (backend tự phục vụ ở endpoint image/{id})
-                .detailPicture("http://localhost:8084/EVRentalSystem/vehicle-management/image/" + vd.getId() + "/" + randomId)
+                // Trả URL ảnh (backend tự phục vụ ở endpoint image/{id}/{version}); version = hash nội dung
+                .detailPicture(ImageUrls.vehicleDetail(vd.getId(), vd.getPicture()))
                 .status(vd.getStatus().toString())
                 .color(vd.getColor())
                 .build();
@@ -210,7 +211,7 @@ public class VehicleManagementService {
 
     // <editor-fold desc="This is the section for vehicle model management">
     public List<AdminGetAllModelResponse> getAllModels() {
-        return vehicleModelRepository.findAll()
+        return vehicleModelRepository.findAllCards()
                 .stream()
                 .map(vm -> new AdminGetAllModelResponse(
                         vm.getVehicleId() == null ? null : vm.getVehicleId().intValue(), // nếu id là Long -> chuyển sang Integer
@@ -223,22 +224,20 @@ public class VehicleManagementService {
     }
 
     // Lấy tất cả entity VehicleModel để controller dùng
-    public List<VehicleModel> findAllVehicleModels() {
-        return vehicleModelRepository.findAll();
+    public List<VehicleModelCardProjection> findAllVehicleModels() {
+        return vehicleModelRepository.findAllCards();
     }
 
     public AdminGetModelDetailResponse getModelDetail(Integer modelId) {
         VehicleModel vm = vehicleModelRepository.findById(modelId)
                 .orElseThrow(() -> new RuntimeException("Vehicle model not found with id: " + modelId));
-        String randomId = UUID.randomUUID().toString().replace("-", "").substring(0, 10);
-
         AdminGetModelDetailResponse resp = AdminGetModelDetailResponse.builder()
                 .modelId(vm.getVehicleId())
                 .brand(vm.getBrand())
                 .model(vm.getModel())
                 .price(vm.getPrice())
                 .seats(vm.getSeats())
-                .modelPicture("http://localhost:8084/EVRentalSystem/vehicle-management/model-image/" + vm.getVehicleId() + "/" + randomId)
+                .modelPicture(ImageUrls.vehicleModel(vm.getVehicleId(), vm.getPicture()))
                 .build();
         return resp;
     }
@@ -254,8 +253,10 @@ public class VehicleManagementService {
         vm.setModel(req.getModel());
         vm.setPrice(req.getPrice());
         vm.setSeats(req.getSeats());
-        vm.setPicture(imageUtil.encodeToBase64(modelPicture));
+        vm.setPicture(imageBlobs.store(modelPicture));
         vehicleModelRepository.save(vm);
+        // Sinh sẵn thumbnail/card/full trong nền
+        imageVariants.generateAsync(vm.getPicture());
         return "Vehicle detail created successfully.";
     }
 
@@ -267,62 +268,22 @@ public class VehicleManagementService {
         vm.setPrice(req.getPrice());
         vm.setSeats(req.getSeats());
         if (modelPicture != null) {
-            vm.setPicture(imageUtil.encodeToBase64(modelPicture));
+            vm.setPicture(imageBlobs.store(modelPicture));
+            imageVariants.generateAsync(vm.getPicture());
         }
         vehicleModelRepository.save(vm);
+        imageCache.invalidateAfterCommit(ImageCache.Kind.VEHICLE_MODEL, vm.getVehicleId());
         return "Vehicle model updated successfully.";
     }
 
-    @Transactional(readOnly = true)
+    // Cây trạm -> model -> xe AVAILABLE lấy từ ảnh chụp trong bộ nhớ (StationSnapshotCache)
     public GetAllAboutStationResponse getAllAboutStation() {
-        // 1. Lấy tất cả các trạm (để trạm hết xe vẫn hiện tên trong dropdown cấp 1)
-        List<Station> allStations = stationRepository.findAll();
-
-        // 2. Lấy xe chỉ có status AVAILABLE (SỬA Ở ĐÂY)
-        List<VehicleDetail> availableVehicles = vehicleDetailRepository.findAllAvailableWithStationAndModel();
-
-        // 3. Gom nhóm xe (Logic giữ nguyên)
-        Map<Integer, Map<Integer, List<VehicleDetail>>> groupedData = availableVehicles.stream()
-                .collect(Collectors.groupingBy(
-                        v -> v.getStation().getStationId(),
-                        Collectors.groupingBy(v -> v.getVehicleModel().getVehicleId())
-                ));
-
-        // 4. Build DTO Response (Logic giữ nguyên)
-        List<GetAllAboutStationResponse.StationDTO> stationDTOs = allStations.stream().map(station -> {
-
-            // Lấy map model (nếu trạm không có xe available nào thì map này rỗng)
-            Map<Integer, List<VehicleDetail>> modelsInStation = groupedData.getOrDefault(station.getStationId(), new HashMap<>());
-
-            List<GetAllAboutStationResponse.ModelDTO> modelDTOs = modelsInStation.values().stream().map(vehicleList -> {
-                VehicleModel modelEntity = vehicleList.get(0).getVehicleModel();
-
-                List<GetAllAboutStationResponse.CarDTO> carDTOs = vehicleList.stream().map(v ->
-                        GetAllAboutStationResponse.CarDTO.builder()
-                                .vehicleDetailId(v.getId())
-                                .licensePlate(v.getLicensePlate())
-                                .color(v.getColor())
-                                .status(v.getStatus())
-                                .build()
-                ).collect(Collectors.toList());
-
-                return GetAllAboutStationResponse.ModelDTO.builder()
-                        .vehicleModelId(modelEntity.getVehicleId())
-                        .brand(modelEntity.getBrand())
-                        .modelName(modelEntity.getModel())
-                        .cars(carDTOs)
-                        .build();
-            }).collect(Collectors.toList());
-
-            return GetAllAboutStationResponse.StationDTO.builder()
-                    .stationId(station.getStationId())
-                    .stationName(station.getStationName())
-                    .models(modelDTOs)
-                    .build();
-
-        }).collect(Collectors.toList());
+        return stationSnapshotCache.response();
+    }
 
-        return new GetAllAboutStationResponse(stationDTOs);
+    // Như trên nhưng trả JSON đã serialize sẵn, dùng chung giữa các request
+    public byte[] getAllAboutStationJson() {
+        return stationSnapshotCache.json();
     }
     // </editor-fold>
 }
\ No newline at end of file
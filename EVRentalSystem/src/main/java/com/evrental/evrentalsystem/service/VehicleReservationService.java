@@ -0,0 +1,91 @@
+package com.evrental.evrentalsystem.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Chạy các thao tác đọc-rồi-ghi trạng thái xe / booking (tạo booking, gán xe, đổi trạng thái) không bị cấp trùng xe.
+ * - Trong 1 JVM: khoá phân dải (striped) theo xe hoặc theo (trạm, model), giữ tới sau khi commit
+ *   để VehicleAvailabilityIndex đã cập nhật trước khi request kế tiếp kiểm tra.
+ * - Giữa nhiều instance: @Version trên VehicleDetail / Booking; xung đột thì chạy lại cả transaction,
+ *   tối đa reservation.max-attempts lần rồi ném OptimisticLockingFailureException (409).
+ * Phải gọi ngoài transaction (không từ method @Transactional) để mỗi lần thử là 1 transaction mới.
+ */
+@Slf4j
+@Service
+public class VehicleReservationService {
+
+    private record VehicleKey(int vehicleDetailId) {}
+
+    private record PoolKey(int stationId, int modelId) {}
+
+    private final ReentrantLock[] stripes;
+    private final TransactionTemplate tx;
+    private final int maxAttempts;
+
+    public VehicleReservationService(PlatformTransactionManager transactionManager,
+                                     @Value("${reservation.lock-stripes:64}") int stripes,
+                                     @Value("${reservation.max-attempts:3}") int maxAttempts) {
+        this.stripes = new ReentrantLock[Math.max(1, stripes)];
+        for (int i = 0; i < this.stripes.length; i++) this.stripes[i] = new ReentrantLock();
+        this.tx = new TransactionTemplate(transactionManager);
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /** Khoá theo 1 xe (gán / nhả / đổi trạng thái xe); null nếu chưa có xe. */
+    public static Object vehicleKey(Integer vehicleDetailId) {
+        return vehicleDetailId == null ? null : new VehicleKey(vehicleDetailId);
+    }
+
+    /** Khoá theo nhóm xe cùng model tại 1 trạm (tạo booking chưa gán xe). */
+    public static Object poolKey(Integer stationId, Integer modelId) {
+        return stationId == null || modelId == null ? null : new PoolKey(stationId, modelId);
+    }
+
+    /**
+     * Giữ khoá của các key (bỏ qua null), chạy work trong transaction mới, commit rồi mới nhả khoá.
+     * Chỉ thử lại khi xung đột version; lỗi nghiệp vụ trong work ném ra ngay.
+     */
+    public <T> T execute(Collection<?> keys, Supplier<T> work) {
+        // Khoá theo thứ tự tăng dần để 2 thao tác cùng xe không deadlock
+        int[] order = keys.stream()
+                .filter(Objects::nonNull)
+                .mapToInt(k -> Math.floorMod(k.hashCode(), stripes.length))
+                .distinct()
+                .sorted()
+                .toArray();
+        for (int i : order) stripes[i].lock();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return tx.execute(status -> work.get());
+                } catch (OptimisticLockingFailureException e) {
+                    if (attempt >= maxAttempts) throw e;
+                    log.debug("Xung đột version (lần {}), thử lại: {}", attempt, e.getMessage());
+                    backoff(attempt, e);
+                }
+            }
+        } finally {
+            for (int i = order.length - 1; i >= 0; i--) stripes[order[i]].unlock();
+        }
+    }
+
+    private static void backoff(int attempt, OptimisticLockingFailureException cause) {
+        try {
+            Thread.sleep(attempt * 10L + ThreadLocalRandom.current().nextInt(10));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.event.StationChangedEvent;
+import com.evrental.evrentalsystem.event.VehicleChangedEvent;
+import com.evrental.evrentalsystem.event.VehicleModelChangedEvent;
+import com.evrental.evrentalsystem.event.VehicleStatusChangedEvent;
+import com.evrental.evrentalsystem.enums.VehicleStatus;
+import com.evrental.evrentalsystem.repository.VehicleDetailRepository;
+import com.evrental.evrentalsystem.repository.projection.VehicleSearchProjection;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Chỉ mục trigram trong bộ nhớ cho ô tìm kiếm q của danh sách xe admin (VehicleDetailRepository.searchVehicleList).
+ * Câu LIKE '%q%' trên 4 cột phải quét cả bảng; ở đây q được đổi thành danh sách id trước, DB chỉ lấy đúng 1 trang theo id.
+ * - Biển số: trigram -> id xe. Hãng / model / tên trạm ít giá trị khác nhau nên đánh trigram trên từng model / trạm
+ *   rồi nở ra các xe của model / trạm đó (không lặp lại trigram "vinfast" cho 100k xe).
+ * - Trigram chỉ là điều kiện cần: ứng viên được kiểm lại bằng contains. q ngắn hơn 3 ký tự thì quét tuần tự trong bộ nhớ.
+ * - So khớp không phân biệt hoa thường (toLowerCase(Locale.ROOT)); '%' / '_' trong q là ký tự thường, không phải wildcard.
+ * - Cập nhật sau commit từ sự kiện của FleetChangePublisher (tạo / sửa / xoá mềm xe, sửa model / trạm) và
+ *   VehicleStatusChangedEvent (update hàng loạt). Xe chỉ mang id trạm / model; gặp trạm / model chưa biết tên thì dựng lại ở luồng nền. Dựng lại toàn bộ lúc khởi động; chưa xong thì isReady() = false, caller dùng câu LIKE như trước.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VehicleSearchIndex {
+
+    /** Id của trang yêu cầu (id tăng dần) + tổng số xe khớp. */
+    public record Result(List<Integer> ids, long total) {}
+
+    // Text đã lower-case
+    private record Doc(String plate, VehicleStatus status, int stationId, int modelId) {}
+
+    private record ModelTerm(String brand, String model) {}
+
+    private static final char SEPARATOR = '\u0001';
+
+    /** Danh sách id tăng dần, thêm / bớt bằng tìm nhị phân. */
+    static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0) return;
+            i = -i - 1;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            System.arraycopy(ids, i, ids, i + 1, size - i);
+            ids[i] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i < 0) return;
+            System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+            size--;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void forEach(IntConsumer action) {
+            for (int i = 0; i < size; i++) action.accept(ids[i]);
+        }
+
+        // Giữ lại các id của candidates có trong danh sách này
+        int[] retain(int[] candidates) {
+            int[] out = new int[Math.min(candidates.length, size)];
+            int n = 0;
+            for (int c : candidates) {
+                if (Arrays.binarySearch(ids, 0, size, c) >= 0) out[n++] = c;
+            }
+            return Arrays.copyOf(out, n);
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+
+    /** trigram (3 ký tự gói vào 1 long) -> khoá (id xe / model / trạm) có text chứa trigram đó. */
+    static final class TrigramIndex {
+        private final Map<Long, Postings> grams = new HashMap<>();
+
+        void add(int key, String text) {
+            for (long g : trigrams(text)) grams.computeIfAbsent(g, k -> new Postings()).add(key);
+        }
+
+        void remove(int key, String text) {
+            for (long g : trigrams(text)) {
+                Postings p = grams.get(g);
+                if (p == null) continue;
+                p.remove(key);
+                if (p.size() == 0) grams.remove(g);
+            }
+        }
+
+        /** Khoá có đủ mọi trigram của q (phải kiểm lại bằng contains); null nếu q < 3 ký tự. */
+        int[] candidates(String q) {
+            Set<Long> needed = trigrams(q);
+            if (needed.isEmpty()) return null;
+            List<Postings> lists = new ArrayList<>(needed.size());
+            for (long g : needed) {
+                Postings p = grams.get(g);
+                if (p == null) return new int[0];
+                lists.add(p);
+            }
+            // Giao từ danh sách ngắn nhất
+            lists.sort(Comparator.comparingInt(Postings::size));
+            int[] result = lists.get(0).toArray();
+            for (int i = 1; i < lists.size() && result.length > 0; i++) result = lists.get(i).retain(result);
+            return result;
+        }
+
+        int gramCount() {
+            return grams.size();
+        }
+    }
+
+    private static Set<Long> trigrams(String text) {
+        if (text == null || text.length() < 3) return Set.of();
+        Set<Long> out = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            out.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return out;
+    }
+
+    private static final class State {
+        final Map<Integer, Doc> docs = new HashMap<>();
+        final Map<Integer, ModelTerm> models = new HashMap<>();
+        final Map<Integer, String> stations = new HashMap<>();
+        final Map<Integer, Postings> byModel = new HashMap<>();
+        final Map<Integer, Postings> byStation = new HashMap<>();
+        final TrigramIndex plateGrams = new TrigramIndex();
+        final TrigramIndex modelGrams = new TrigramIndex();
+        final TrigramIndex stationGrams = new TrigramIndex();
+        int maxId;
+
+        void putVehicle(int id, String plate, VehicleStatus status, int stationId, int modelId) {
+            removeVehicle(id);
+            // Xe xoá mềm không hiện trong danh sách admin
+            if (status == VehicleStatus.DELETED) return;
+            Doc doc = new Doc(lower(plate), status, stationId, modelId);
+            docs.put(id, doc);
+            plateGrams.add(id, doc.plate());
+            byModel.computeIfAbsent(modelId, k -> new Postings()).add(id);
+            byStation.computeIfAbsent(stationId, k -> new Postings()).add(id);
+            maxId = Math.max(maxId, id);
+        }
+
+        void removeVehicle(int id) {
+            Doc doc = docs.remove(id);
+            if (doc == null) return;
+            plateGrams.remove(id, doc.plate());
+            Postings m = byModel.get(doc.modelId());
+            if (m != null) m.remove(id);
+            Postings s = byStation.get(doc.stationId());
+            if (s != null) s.remove(id);
+        }
+
+        void setStatus(int id, VehicleStatus status) {
+            Doc doc = docs.get(id);
+            if (doc == null) return;
+            if (status == VehicleStatus.DELETED) removeVehicle(id);
+            else docs.put(id, new Doc(doc.plate(), status, doc.stationId(), doc.modelId()));
+        }
+
+        void putModel(int modelId, String brand, String model) {
+            ModelTerm term = new ModelTerm(lower(brand), lower(model));
+            ModelTerm old = models.put(modelId, term);
+            if (term.equals(old)) return;
+            if (old != null) modelGrams.remove(modelId, old.brand() + SEPARATOR + old.model());
+            // Ghép hãng + model bằng ký tự không bao giờ có trong q: trigram vắt qua ranh giới không khớp nhầm
+            modelGrams.add(modelId, term.brand() + SEPARATOR + term.model());
+        }
+
+        void putStation(int stationId, String name) {
+            String term = lower(name);
+            String old = stations.put(stationId, term);
+            if (term.equals(old)) return;
+            if (old != null) stationGrams.remove(stationId, old);
+            stationGrams.add(stationId, term);
+        }
+    }
+
+    private final VehicleDetailRepository vehicleDetailRepository;
+
+    // Tìm dùng read lock, cập nhật / đổi State khi dựng lại dùng write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private State state = new State();
+    private volatile boolean ready;
+    // Thay đổi đến trong lúc đang đọc DB để dựng lại: áp lại lên State mới (guarded by lock)
+    private List<Consumer<State>> replay;
+
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "vehicle-search-rebuild");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // ===== Tìm =====
+
+    /**
+     * Lọc như searchVehicleList (q khớp biển số / model / hãng / tên trạm; status, stationId, brand, model như cũ),
+     * trả id của đoạn [offset, offset + limit) theo id tăng dần.
+     */
+    public Result search(String q, String status, Integer stationId, String brand, String model,
+                         long offset, int limit) {
+        String needle = lower(q);
+        String brandFilter = brand == null ? null : lower(brand);
+        String modelFilter = model == null ? null : lower(model);
+
+        lock.readLock().lock();
+        try {
+            State s = state;
+            BitSet matched = new BitSet(s.maxId + 1);
+            matchPlates(s, needle, matched);
+            matchModels(s, needle, matched);
+            matchStations(s, needle, matched);
+
+            // Model qua được bộ lọc brand / model (ít model nên tính 1 lần)
+            Set<Integer> allowedModels = null;
+            if (brandFilter != null || modelFilter != null) {
+                allowedModels = new HashSet<>();
+                for (Map.Entry<Integer, ModelTerm> e : s.models.entrySet()) {
+                    ModelTerm t = e.getValue();
+                    if ((brandFilter == null || t.brand().contains(brandFilter))
+                            && (modelFilter == null || t.model().contains(modelFilter))) {
+                        allowedModels.add(e.getKey());
+                    }
+                }
+            }
+
+            List<Integer> page = new ArrayList<>(Math.max(0, limit));
+            long total = 0;
+            for (int id = matched.nextSetBit(0); id >= 0; id = matched.nextSetBit(id + 1)) {
+                Doc d = s.docs.get(id);
+                if (d == null) continue;
+                if (status != null && !d.status().name().equalsIgnoreCase(status)) continue;
+                if (stationId != null && d.stationId() != stationId) continue;
+                if (allowedModels != null && !allowedModels.contains(d.modelId())) continue;
+                if (total >= offset && page.size() < limit) page.add(id);
+                total++;
+            }
+            return new Result(page, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void matchPlates(State s, String needle, BitSet out) {
+        int[] candidates = s.plateGrams.candidates(needle);
+        if (candidates == null) {
+            s.docs.forEach((id, d) -> {
+                if (d.plate().contains(needle)) out.set(id);
+            });
+            return;
+        }
+        for (int id : candidates) {
+            if (s.docs.get(id).plate().contains(needle)) out.set(id);
+        }
+    }
+
+    private static void matchModels(State s, String needle, BitSet out) {
+        int[] candidates = s.modelGrams.candidates(needle);
+        Collection<Integer> ids = candidates == null ? s.models.keySet() : Arrays.stream(candidates).boxed().toList();
+        for (int modelId : ids) {
+            ModelTerm t = s.models.get(modelId);
+            if (!t.brand().contains(needle) && !t.model().contains(needle)) continue;
+            Postings vehicles = s.byModel.get(modelId);
+            if (vehicles != null) vehicles.forEach(out::set);
+        }
+    }
+
+    private static void matchStations(State s, String needle, BitSet out) {
+        int[] candidates = s.stationGrams.candidates(needle);
+        Collection<Integer> ids = candidates == null ? s.stations.keySet() : Arrays.stream(candidates).boxed().toList();
+        for (int stationId : ids) {
+            if (!s.stations.get(stationId).contains(needle)) continue;
+            Postings vehicles = s.byStation.get(stationId);
+            if (vehicles != null) vehicles.forEach(out::set);
+        }
+    }
+
+    private static String lower(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    // ===== Ghi (sau commit) =====
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVehicleChanged(VehicleChangedEvent e) {
+        Integer id = e.vehicleId();
+        if (id == null) return;
+        if (e.removed()) {
+            apply(s -> s.removeVehicle(id));
+            return;
+        }
+        Integer stationId = e.stationId(), modelId = e.modelId();
+        if (stationId == null || modelId == null) return;
+        // Tên trạm / model đã có trong State từ lần dựng hoặc onModelChanged / onStationChanged
+        apply(s -> {
+            s.putVehicle(id, e.licensePlate(), e.status(), stationId, modelId);
+            // Chưa biết tên (vd model chưa từng có xe): dựng lại từ projection
+            if (!s.models.containsKey(modelId) || !s.stations.containsKey(stationId)) scheduleRebuild();
+        });
+    }
+
+    /** Update hàng loạt: chỉ đổi trạng thái (DELETED thì bỏ khỏi chỉ mục). */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVehicleStatusChanged(VehicleStatusChangedEvent e) {
+        if (e.vehicleId() != null) apply(s -> s.setStatus(e.vehicleId(), e.status()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onModelChanged(VehicleModelChangedEvent e) {
+        if (e.modelId() != null && !e.removed()) apply(s -> s.putModel(e.modelId(), e.brand(), e.model()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStationChanged(StationChangedEvent e) {
+        if (e.stationId() != null && !e.removed()) apply(s -> s.putStation(e.stationId(), e.stationName()));
+    }
+
+    private void apply(Consumer<State> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(state);
+            if (replay != null) replay.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ===== Dựng lại =====
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("Không dựng được VehicleSearchIndex lúc khởi động: {}", e.getMessage());
+        }
+    }
+
+    // Dựng lại ở luồng nền; gọi nhiều lần trước khi luồng nền bắt đầu chỉ dựng 1 lần
+    private void scheduleRebuild() {
+        if (!rebuildPending.compareAndSet(false, true)) return;
+        rebuilder.execute(() -> {
+            rebuildPending.set(false);
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.warn("Không dựng lại được VehicleSearchIndex: {}", e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            replay = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            List<VehicleSearchProjection> rows = vehicleDetailRepository.findAllForSearch();
+            State fresh = new State();
+            for (VehicleSearchProjection r : rows) {
+                fresh.putModel(r.getVehicleModelId(), r.getBrand(), r.getModelName());
+                fresh.putStation(r.getStationId(), r.getStationName());
+                fresh.putVehicle(r.getVehicleDetailId(), r.getLicensePlate(), r.getStatus(),
+                        r.getStationId(), r.getVehicleModelId());
+            }
+            lock.writeLock().lock();
+            try {
+                for (Consumer<State> change : replay) change.accept(fresh);
+                state = fresh;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("VehicleSearchIndex: {} xe, {} trigram biển số", fresh.docs.size(), fresh.plateGrams.gramCount());
+        } finally {
+            lock.writeLock().lock();
+            try {
+                replay = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
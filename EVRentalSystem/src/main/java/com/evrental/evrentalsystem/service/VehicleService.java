@@ -1,7 +1,6 @@
 package com.evrental.evrentalsystem.service;
 
-import com.evrental.evrentalsystem.entity.VehicleDetail;
-import com.evrental.evrentalsystem.entity.VehicleModel;
+import com.evrental.evrentalsystem.entity.Station;
 import com.evrental.evrentalsystem.enums.VehicleStatus;
 import com.evrental.evrentalsystem.repository.StationRepository;
 import com.evrental.evrentalsystem.repository.VehicleDetailRepository;
@@ -9,12 +8,19 @@ import com.evrental.evrentalsystem.repository.VehicleModelRepository;
 import com.evrental.evrentalsystem.response.staff.ModelWithDetailsDTO;
 import com.evrental.evrentalsystem.response.staff.VehicleDetailDTO;
 import com.evrental.evrentalsystem.response.staff.VehicleModelDTO;
+import com.evrental.evrentalsystem.response.vehicle.AvailabilitySearchResponse;
 import com.evrental.evrentalsystem.response.vehicle.VehicleDetailResponse;
 import com.evrental.evrentalsystem.response.vehicle.VehicleWithIdResponse;
+import com.evrental.evrentalsystem.repository.projection.AvailableVehicleProjection;
+import com.evrental.evrentalsystem.repository.projection.VehicleCardProjection;
+import com.evrental.evrentalsystem.repository.projection.VehicleLocationProjection;
+import com.evrental.evrentalsystem.repository.projection.VehicleModelCardProjection;
+import com.evrental.evrentalsystem.storage.ImageUrls;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 //ửa
@@ -25,72 +31,129 @@ public class VehicleService {
     private final VehicleModelRepository vehicleModelRepository;
     private final StationRepository stationRepository;
     private final ObjectMapper objectMapper; // Spring Boot cung cấp ObjectMapper bean
+    private final VehicleAvailabilityIndex availabilityIndex;
+    private final FleetInventory fleetInventory;
 
 
     //Hàm này dùng để lấy các danh sách xe có sẵn khi nhấn ở interface.
     public List<VehicleDetailResponse> getAvailableVehicles() {
-        List<VehicleModel> models = vehicleModelRepository.findAll();
+        // Projection: không tải cột ảnh, URL ảnh dựng từ 71 ký tự đầu
+        List<VehicleModelCardProjection> models = vehicleModelRepository.findAllCards();
 
         return models.stream().map(m -> {
-            long count = vehicleDetailRepository.countByVehicleModel_VehicleIdAndStatus(m.getVehicleId(), VehicleStatus.AVAILABLE);
+            long count = fleetInventory.isReady()
+                    ? fleetInventory.countByModelAndStatus(m.getVehicleId(), VehicleStatus.AVAILABLE)
+                    : vehicleDetailRepository.countByVehicleModel_VehicleIdAndStatus(m.getVehicleId(), VehicleStatus.AVAILABLE);
             return new VehicleDetailResponse(
                     m.getVehicleId(),
                     m.getBrand(),
                     m.getModel(),
                     m.getPrice(),
                     m.getSeats(),
-                    m.getPicture(),
+                    ImageUrls.vehicleModel(m.getVehicleId(), m.getPictureRef()),
                     count
             );
         }).collect(Collectors.toList());
     }
+    // Tìm xe trống theo khoảng ngày: số xe mỗi (trạm, model) không bị booking nào giữ trong [start, end)
+    public List<AvailabilitySearchResponse> searchAvailability(LocalDateTime start, LocalDateTime end,
+                                                               Integer stationId, Integer vehicleModelId) {
+        if (start == null || end == null || !end.isAfter(start)) {
+            throw new IllegalArgumentException("Khoảng thời gian không hợp lệ (start < end)");
+        }
+
+        List<VehicleAvailabilityIndex.AvailabilityCount> counts;
+        if (availabilityIndex.isReady()) {
+            counts = availabilityIndex.countAvailable(stationId, vehicleModelId, start, end);
+        } else {
+            // Index chưa dựng xong: đếm xe đang AVAILABLE, bỏ qua khoảng thời gian
+            Map<List<Integer>, Integer> grouped = new LinkedHashMap<>();
+            for (AvailableVehicleProjection v : vehicleDetailRepository.findAllAvailableWithStationAndModel()) {
+                if (stationId != null && !stationId.equals(v.getStationId())) continue;
+                if (vehicleModelId != null && !vehicleModelId.equals(v.getVehicleModelId())) continue;
+                grouped.merge(List.of(v.getStationId(), v.getVehicleModelId()), 1, Integer::sum);
+            }
+            counts = grouped.entrySet().stream()
+                    .map(e -> new VehicleAvailabilityIndex.AvailabilityCount(
+                            e.getKey().get(0), e.getKey().get(1), e.getValue()))
+                    .toList();
+        }
+        if (counts.isEmpty()) return List.of();
+
+        Map<Integer, Station> stations = stationRepository.findAllById(
+                        counts.stream().map(VehicleAvailabilityIndex.AvailabilityCount::stationId).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Station::getStationId, st -> st));
+        Map<Integer, VehicleModelCardProjection> models = vehicleModelRepository.findCardsByIds(
+                        counts.stream().map(VehicleAvailabilityIndex.AvailabilityCount::modelId).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(VehicleModelCardProjection::getVehicleId, m -> m));
+
+        return counts.stream()
+                .filter(c -> stations.containsKey(c.stationId()) && models.containsKey(c.modelId()))
+                .sorted(Comparator.comparing(VehicleAvailabilityIndex.AvailabilityCount::stationId)
+                        .thenComparing(VehicleAvailabilityIndex.AvailabilityCount::modelId))
+                .map(c -> {
+                    Station st = stations.get(c.stationId());
+                    VehicleModelCardProjection m = models.get(c.modelId());
+                    return AvailabilitySearchResponse.builder()
+                            .stationId(st.getStationId())
+                            .stationName(st.getStationName())
+                            .vehicleModelId(m.getVehicleId())
+                            .brand(m.getBrand())
+                            .model(m.getModel())
+                            .price(m.getPrice())
+                            .seats(m.getSeats())
+                            .modelPicture(ImageUrls.vehicleModel(m.getVehicleId(), m.getPictureRef()))
+                            .availableCount(c.available())
+                            .build();
+                })
+                .toList();
+    }
+
     public List<VehicleWithIdResponse> getDetailsByVehicleModelId(Integer vehicleModelId) {
-        List<VehicleDetail> details = vehicleDetailRepository.findByVehicleModelId(vehicleModelId);
+        List<VehicleLocationProjection> details = vehicleDetailRepository.findByVehicleModelId(vehicleModelId);
 
         return details.stream()
                 .map(vd -> new VehicleWithIdResponse(
-                        vd.getId(),
-                        vd.getStation().getStationId(),
-                        vd.getStation().getStationName(),
-                        vd.getStation().getAddress()
+                        vd.getVehicleDetailId(),
+                        vd.getStationId(),
+                        vd.getStationName(),
+                        vd.getStationAddress()
                 ))
                 .collect(Collectors.toList());
     }
 
     public List<ModelWithDetailsDTO> getModelsWithDetailsByStation(Integer stationId) {
-        // Lấy tất cả VehicleDetail thuộc stationId
-        List<VehicleDetail> details = vehicleDetailRepository.findByStationStationId(stationId);
+        // Lấy tất cả xe thuộc stationId (projection, không tải cột ảnh; ảnh trả về dạng URL)
+        List<VehicleCardProjection> details = vehicleDetailRepository.findCardsByStationId(stationId);
 
         // Nhóm theo vehicleModel
-        Map<VehicleModel, List<VehicleDetail>> grouped = details.stream()
-                .filter(Objects::nonNull)
-                .collect(Collectors.groupingBy(VehicleDetail::getVehicleModel));
+        Map<Integer, List<VehicleCardProjection>> grouped = details.stream()
+                .collect(Collectors.groupingBy(VehicleCardProjection::getModelId, LinkedHashMap::new, Collectors.toList()));
 
         // Map sang DTO
         List<ModelWithDetailsDTO> result = new ArrayList<>();
-        for (Map.Entry<VehicleModel, List<VehicleDetail>> entry : grouped.entrySet()) {
-            VehicleModel vm = entry.getKey();
-            List<VehicleDetail> detailList = entry.getValue();
+        for (List<VehicleCardProjection> detailList : grouped.values()) {
+            VehicleCardProjection vm = detailList.get(0);
 
             VehicleModelDTO vmDto = new VehicleModelDTO(
-                    vm.getVehicleId(),
+                    vm.getModelId(),
                     vm.getBrand(),
                     vm.getModel(),
                     vm.getPrice(),
                     vm.getSeats(),
-                    vm.getPicture()
+                    ImageUrls.vehicleModel(vm.getModelId(), vm.getModelPictureRef())
             );
 
             List<VehicleDetailDTO> detailDtos = detailList.stream()
                     .map(d -> new VehicleDetailDTO(
-                            d.getId(),
+                            d.getDetailId(),
                             d.getLicensePlate(),
                             d.getBatteryCapacity(),
                             d.getOdo(),
-                            d.getPicture(),
+                            ImageUrls.vehicleDetail(d.getDetailId(), d.getDetailPictureRef()),
                             d.getStatus().toString(),
                             d.getColor(),
-                            d.getStation() != null ? d.getStation().getStationId() : null
+                            d.getStationId()
                     ))
                     .collect(Collectors.toList());
 
@@ -102,8 +165,8 @@ public class VehicleService {
         return result;
     }
 
-    public List<VehicleModel> findAllVehicleModels() {
-        return vehicleModelRepository.findAll();
+    public List<VehicleModelCardProjection> findAllVehicleModels() {
+        return vehicleModelRepository.findAllCards();
     }
 
     //End code here
@@ -0,0 +1,124 @@
+package com.evrental.evrentalsystem.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Chuyển ảnh base64 cũ trong DB sang BlobStore theo từng lô, chạy nền sau khi ứng dụng khởi động.
+ * Mỗi dòng: khoá dòng (UPDLOCK), decode, ghi blob, thay giá trị cột bằng tham chiếu "sha256:...".
+ * Duyệt theo id tăng dần nên dòng không decode được (URL, dữ liệu hỏng) chỉ bị bỏ qua, không lặp lại.
+ * Tắt bằng blob.migration.enabled=false.
+ */
+@Slf4j
+@Component
+public class BlobMigrationJob {
+
+    private record Target(String table, String id, String column) {}
+
+    private static final List<Target> TARGETS = List.of(
+            new Target("Vehicle_Model", "vehicle_id", "picture"),
+            new Target("Vehicle_Detail", "id", "picture"),
+            new Target("Inspection", "inspection_id", "picture"),
+            new Target("Inspection_After", "inspection_id", "picture"),
+            new Target("Renter_Detail", "renter_id", "cccd_front"),
+            new Target("Renter_Detail", "renter_id", "cccd_back"),
+            new Target("Renter_Detail", "renter_id", "driver_license")
+    );
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ImageBlobs imageBlobs;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long pauseMillis;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "blob-migration");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public BlobMigrationJob(JdbcTemplate jdbc,
+                            PlatformTransactionManager transactionManager,
+                            ImageBlobs imageBlobs,
+                            @Value("${blob.migration.enabled:true}") boolean enabled,
+                            @Value("${blob.migration.batch-size:50}") int batchSize,
+                            @Value("${blob.migration.pause-ms:200}") long pauseMillis) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.imageBlobs = imageBlobs;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.pauseMillis = Math.max(0, pauseMillis);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) worker.execute(this::migrateAll);
+    }
+
+    void migrateAll() {
+        for (Target target : TARGETS) {
+            try {
+                int moved = migrate(target);
+                if (moved > 0) log.info("Blob migration {}.{}: {} dòng", target.table(), target.column(), moved);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Blob migration {}.{} dừng: {}", target.table(), target.column(), e.getMessage());
+            }
+        }
+    }
+
+    private int migrate(Target t) throws InterruptedException {
+        String nextIds = "SELECT TOP (" + batchSize + ") " + t.id() + " FROM " + t.table() +
+                " WHERE " + t.id() + " > ? AND " + t.column() + " IS NOT NULL" +
+                " AND " + t.column() + " NOT LIKE '" + ImageBlobs.REF_PREFIX + "%'" +
+                " ORDER BY " + t.id();
+        int moved = 0;
+        int lastId = 0;
+        while (true) {
+            List<Integer> ids = jdbc.queryForList(nextIds, Integer.class, lastId);
+            if (ids.isEmpty()) return moved;
+            for (Integer id : ids) {
+                if (Boolean.TRUE.equals(tx.execute(status -> migrateRow(t, id)))) moved++;
+                lastId = id;
+            }
+            Thread.sleep(pauseMillis);
+        }
+    }
+
+    private boolean migrateRow(Target t, Integer id) {
+        List<String> values = jdbc.queryForList(
+                "SELECT " + t.column() + " FROM " + t.table() + " WITH (UPDLOCK, ROWLOCK) WHERE " + t.id() + " = ?",
+                String.class, id);
+        String value = values.isEmpty() ? null : values.get(0);
+        if (value == null || value.isBlank() || ImageBlobs.isRef(value)) return false;
+
+        byte[] bytes = ImageBlobs.decodeStrict(value);
+        if (bytes == null || bytes.length == 0) {
+            log.debug("Bỏ qua {}.{} id={}: không phải base64", t.table(), t.column(), id);
+            return false;
+        }
+        String ref = imageBlobs.store(bytes);
+        jdbc.update("UPDATE " + t.table() + " SET " + t.column() + " = ? WHERE " + t.id() + " = ?", ref, id);
+        return true;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+}
@@ -0,0 +1,46 @@
+package com.evrental.evrentalsystem.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Kho lưu nội dung nhị phân đánh địa chỉ theo nội dung (SHA-256).
+ * Cùng nội dung thì cùng hash nên chỉ lưu 1 lần; blob đã ghi không bao giờ thay đổi.
+ * Backend mặc định: LocalBlobStore (blob.store.type=local).
+ */
+public interface BlobStore {
+
+    /** Ghi toàn bộ stream, trả về hash SHA-256 dạng hex (64 ký tự thường). Không đóng stream. */
+    String put(InputStream in) throws IOException;
+
+    /** Resource của blob; exists() = false nếu chưa có. */
+    Resource get(String hash);
+
+    default boolean exists(String hash) {
+        return get(hash).exists();
+    }
+
+    /**
+     * Dữ liệu dẫn xuất từ blob gốc (vd. ảnh thu nhỏ), định danh bằng (hash gốc, name).
+     * Luôn tính lại được từ blob gốc nên ghi đè thoải mái. Không đóng stream.
+     */
+    void putDerived(String hash, String name, InputStream in) throws IOException;
+
+    /** Resource của dữ liệu dẫn xuất; exists() = false nếu chưa tạo. */
+    Resource getDerived(String hash, String name);
+
+    static boolean isValidDerivedName(String name) {
+        return name != null && name.matches("[a-z0-9][a-z0-9.-]{0,63}");
+    }
+
+    static boolean isValidHash(String hash) {
+        if (hash == null || hash.length() != 64) return false;
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,153 @@
+package com.evrental.evrentalsystem.storage;
+
+import com.evrental.evrentalsystem.util.ImageUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Cầu nối giữa các cột ảnh (VehicleDetail/VehicleModel/Inspection/InspectionAfter.picture,
+ * RenterDetail.cccdFront/cccdBack/driverLicense) và BlobStore.
+ * Giá trị cột là tham chiếu "sha256:&lt;hex&gt;"; dữ liệu base64 cũ (chưa migrate) vẫn đọc được như trước.
+ */
+@Component
+@RequiredArgsConstructor
+public class ImageBlobs {
+
+    public static final String REF_PREFIX = "sha256:";
+
+    // Đủ cho magic bytes của jpeg/png/gif/webp/bmp (ImageUtil.detectImageMimeType)
+    private static final int SNIFF_BYTES = 16;
+
+    /** Kết quả ingest: tham chiếu để lưu vào cột ảnh, MIME nhận diện từ nội dung, kích thước (byte). */
+    public record StoredImage(String ref, String mimeType, long size) {}
+
+    private final BlobStore blobStore;
+
+    public static boolean isRef(String value) {
+        return value != null && value.startsWith(REF_PREFIX);
+    }
+
+    /** Hash của tham chiếu, null nếu giá trị là base64 cũ. */
+    public static String hashOf(String value) {
+        return isRef(value) ? value.substring(REF_PREFIX.length()) : null;
+    }
+
+    /**
+     * Version ổn định của ảnh, dùng cho URL và ETag: hash của blob, hoặc SHA-256 của chuỗi base64 cũ
+     * (không cần decode). Ảnh đổi thì version đổi; null nếu cột trống.
+     */
+    public static String versionOf(String value) {
+        if (value == null || value.isBlank()) return null;
+        if (isRef(value)) return hashOf(value);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ===== Ghi =====
+    public String store(MultipartFile file) {
+        return ingest(file).ref();
+    }
+
+    /**
+     * Ghi ảnh upload vào BlobStore theo kiểu stream: đọc thẳng từ file tạm của multipart,
+     * SHA-256 tính trong lúc copy, không giữ cả file trong heap và không tạo chuỗi base64.
+     * MIME nhận diện từ vài byte đầu (không tin Content-Type của client); không phải ảnh thì
+     * từ chối trước khi ghi gì vào kho.
+     */
+    public StoredImage ingest(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new RuntimeException("File upload bị trống!");
+        }
+        String name = file.getOriginalFilename();
+        try (InputStream in = new BufferedInputStream(file.getInputStream())) {
+            in.mark(SNIFF_BYTES);
+            String mimeType = ImageUtil.detectImageMimeType(in.readNBytes(SNIFF_BYTES));
+            in.reset();
+            if (!mimeType.startsWith("image/")) {
+                throw new IllegalArgumentException("File " + (name != null ? name : "upload")
+                        + " không phải ảnh hợp lệ (jpeg/png/gif/webp/bmp)");
+            }
+            return new StoredImage(REF_PREFIX + blobStore.put(in), mimeType, file.getSize());
+        } catch (IOException e) {
+            throw new RuntimeException("Không thể đọc file: " + (name != null ? name : "unknown"), e);
+        }
+    }
+
+    /**
+     * Ảnh gửi dạng chuỗi (API admin tạo / sửa xe): base64 / data URI được ghi vào BlobStore, trả tham chiếu.
+     * Tham chiếu sẵn có và giá trị không phải base64 (tên file, URL) giữ nguyên; null nếu trống.
+     */
+    public String store(String value) {
+        if (value == null || value.isBlank()) return null;
+        String trimmed = value.trim();
+        if (isRef(trimmed)) return trimmed;
+        byte[] bytes = decodeStrict(trimmed);
+        if (bytes == null || bytes.length == 0) return trimmed;
+        if (!ImageUtil.detectImageMimeType(bytes).startsWith("image/")) {
+            throw new IllegalArgumentException("Ảnh không hợp lệ (jpeg/png/gif/webp/bmp)");
+        }
+        return store(bytes);
+    }
+
+    public String store(byte[] bytes) {
+        try {
+            return REF_PREFIX + blobStore.put(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ===== Đọc =====
+    /** Bytes của ảnh (tham chiếu hoặc base64 cũ); null nếu trống hoặc blob không còn. */
+    public byte[] load(String value) {
+        if (value == null || value.isBlank()) return null;
+        if (!isRef(value)) return ImageUtil.decodeBase64(value);
+
+        Resource blob = blobStore.get(hashOf(value));
+        if (!blob.exists()) return null;
+        try (InputStream in = blob.getInputStream()) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Khác ImageUtil.decodeBase64: không fallback sang bytes của chuỗi, để không biến URL thành "ảnh"
+    static byte[] decodeStrict(String value) {
+        String raw = value.trim();
+        if (raw.startsWith("data:")) {
+            int comma = raw.indexOf(',');
+            if (comma < 0) return null;
+            raw = raw.substring(comma + 1);
+        }
+        try {
+            return Base64.getDecoder().decode(raw.replaceAll("\\s", ""));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Cho các API còn trả ảnh inline: tham chiếu được đổi lại thành base64, base64 cũ giữ nguyên. */
+    public String toBase64(String value) {
+        if (!isRef(value)) return value;
+        byte[] bytes = load(value);
+        return bytes == null ? null : Base64.getEncoder().encodeToString(bytes);
+    }
+}
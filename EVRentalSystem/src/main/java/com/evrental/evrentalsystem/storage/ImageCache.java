@@ -0,0 +1,146 @@
+package com.evrental.evrentalsystem.storage;
+
+import com.evrental.evrentalsystem.response.admin.ImageCacheStatsResponse;
+import com.evrental.evrentalsystem.util.AfterCommit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache LRU giới hạn theo tổng số byte cho ảnh xe / mẫu xe đã đọc ra (bytes + MIME),
+ * key = (loại, id, variant), mỗi key giữ đúng 1 version (hash nội dung).
+ * Request mang version trùng với entry -> trả từ bộ nhớ, không cần đọc DB lẫn file (ImageResponder.serveCached).
+ * Entry bị xoá khi xe / mẫu xe được cập nhật (sau commit); version sai thì coi như miss nên không trả nhầm ảnh cũ.
+ * Ảnh lớn hơn 1/8 dung lượng không được cache để 1 ảnh không đẩy hết các ảnh khác.
+ */
+@Component
+public class ImageCache {
+
+    public enum Kind { VEHICLE_DETAIL, VEHICLE_MODEL }
+
+    public record CachedImage(String version, String etag, byte[] bytes, String mimeType, long lastModified) {
+        long weight() {
+            // bytes + ước lượng overhead object/key
+            return bytes.length + 128L;
+        }
+    }
+
+    private record Key(Kind kind, Integer id, ImageVariant variant) {}
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // accessOrder = true: duyệt từ phần tử ít được dùng gần đây nhất
+    private final LinkedHashMap<Key, CachedImage> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public ImageCache(@Value("${image.cache.max-size:64MB}") DataSize maxSize) {
+        this.maxBytes = Math.max(0, maxSize.toBytes());
+        this.maxEntryBytes = maxBytes / 8;
+    }
+
+    /** Ảnh version này nếu đang có trong cache, ngược lại null (tính là miss). */
+    public CachedImage get(Kind kind, Integer id, ImageVariant variant, String version) {
+        CachedImage image;
+        lock.lock();
+        try {
+            image = entries.get(new Key(kind, id, variant));
+        } finally {
+            lock.unlock();
+        }
+        if (image != null && image.version().equals(version)) {
+            hits.increment();
+            return image;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /** Ảnh size byte có được phép cache không (để caller khỏi đọc file quá lớn vào bộ nhớ). */
+    public boolean accepts(long size) {
+        if (size >= 0 && size <= maxEntryBytes) return true;
+        rejected.increment();
+        return false;
+    }
+
+    public void put(Kind kind, Integer id, ImageVariant variant, CachedImage image) {
+        if (image.weight() > maxEntryBytes) {
+            rejected.increment();
+            return;
+        }
+        lock.lock();
+        try {
+            CachedImage old = entries.put(new Key(kind, id, variant), image);
+            if (old != null) bytes -= old.weight();
+            bytes += image.weight();
+            Iterator<Map.Entry<Key, CachedImage>> it = entries.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Map.Entry<Key, CachedImage> eldest = it.next();
+                bytes -= eldest.getValue().weight();
+                it.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Xoá mọi variant của ảnh xe / mẫu xe id. */
+    public void invalidate(Kind kind, Integer id) {
+        lock.lock();
+        try {
+            remove(new Key(kind, id, null));
+            for (ImageVariant v : ImageVariant.values()) remove(new Key(kind, id, v));
+        } finally {
+            lock.unlock();
+        }
+        invalidations.increment();
+    }
+
+    /** Invalidate sau khi transaction hiện tại commit (hoặc ngay nếu không có transaction). */
+    public void invalidateAfterCommit(Kind kind, Integer id) {
+        AfterCommit.run(() -> invalidate(kind, id));
+    }
+
+    private void remove(Key key) {
+        CachedImage old = entries.remove(key);
+        if (old != null) bytes -= old.weight();
+    }
+
+    public ImageCacheStatsResponse stats() {
+        long h = hits.sum(), m = misses.sum();
+        int size;
+        long used;
+        lock.lock();
+        try {
+            size = entries.size();
+            used = bytes;
+        } finally {
+            lock.unlock();
+        }
+        return ImageCacheStatsResponse.builder()
+                .hits(h)
+                .misses(m)
+                .hitRate(h + m == 0 ? 0.0 : (double) h / (h + m))
+                .evictions(evictions.sum())
+                .invalidations(invalidations.sum())
+                .rejected(rejected.sum())
+                .entries(size)
+                .bytes(used)
+                .maxBytes(maxBytes)
+                .build();
+    }
+}
@@ -0,0 +1,229 @@
+package com.evrental.evrentalsystem.storage;
+
+import com.evrental.evrentalsystem.util.ImageUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Trả ảnh lưu trong các cột ảnh (tham chiếu BlobStore hoặc base64 cũ) ra HTTP.
+ * Body là Resource nên Spring MVC tự xử lý:
+ * - Range / 206 Partial Content (ResourceRegion, chỉ đọc đoạn được yêu cầu), 416 khi range sai;
+ * - Content-Length lấy từ kích thước file, không đọc cả ảnh vào bộ nhớ;
+ * - If-Modified-Since -> 304 dựa trên Last-Modified của blob.
+ * ETag = version của ảnh (ImageBlobs.versionOf); If-None-Match khớp thì trả 304 ngay,
+ * không mở blob / decode base64. Content-Type nhận diện từ vài byte đầu file.
+ */
+@Component
+@RequiredArgsConstructor
+public class ImageResponder {
+
+    private static final int SNIFF_BYTES = 16;
+    private static final long IMMUTABLE_DAYS = 365;
+
+    private final BlobStore blobStore;
+    private final ImageVariants imageVariants;
+    private final ImageCache imageCache;
+
+    public ResponseEntity<Resource> serve(String value, CacheControl cacheControl, WebRequest request) {
+        return serve(value, cacheControl, null, request);
+    }
+
+    /**
+     * @param value       giá trị cột ảnh ("sha256:..." hoặc base64)
+     * @param fileName    tên file cho Content-Disposition inline, null để bỏ qua
+     * @return 404 nếu trống hoặc blob không còn
+     */
+    public ResponseEntity<Resource> serve(String value, CacheControl cacheControl, String fileName, WebRequest request) {
+        return respond(value, ImageBlobs.versionOf(value), cacheControl, fileName, request);
+    }
+
+    /**
+     * Cho URL có gắn version (…/{version} hoặc ?v=): version khớp ảnh hiện tại thì nội dung URL không bao giờ đổi
+     * -> cache 1 năm, immutable; URL cũ / không có version -> no-cache (client revalidate bằng ETag).
+     * Ảnh giấy tờ cá nhân dùng publicCache = false để proxy dùng chung không giữ lại.
+     */
+    public ResponseEntity<Resource> serveVersioned(String value, String requestedVersion, boolean publicCache,
+                                                   WebRequest request) {
+        return serveVersioned(value, requestedVersion, null, publicCache, request);
+    }
+
+    /**
+     * Như trên nhưng trả bản JPEG thu nhỏ (ImageVariants) khi variant != null.
+     * Variant chưa sinh xong (hoặc ảnh base64 cũ) -> trả ảnh gốc với no-cache để client không giữ nhầm vĩnh viễn.
+     */
+    public ResponseEntity<Resource> serveVersioned(String value, String requestedVersion, ImageVariant variant,
+                                                   boolean publicCache, WebRequest request) {
+        String version = ImageBlobs.versionOf(value);
+        boolean current = version != null && version.equals(requestedVersion);
+
+        if (variant != null && ImageBlobs.isRef(value) && BlobStore.isValidHash(version)) {
+            Resource scaled = imageVariants.find(version, variant);
+            if (scaled != null) {
+                String etag = etag(version, variant);
+                CacheControl cacheControl = cacheControl(current, publicCache);
+                if (request != null && matchesIfNoneMatch(request, etag)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+                }
+                return ok(scaled, MediaType.IMAGE_JPEG, etag, cacheControl, lastModified(scaled), null);
+            }
+            current = false;
+        }
+        return respond(value, version, cacheControl(current, publicCache), null, request);
+    }
+
+    /**
+     * serveVersioned có cache bộ nhớ (ImageCache) cho ảnh xe / mẫu xe.
+     * Version trong URL trùng entry đang cache -> trả ngay, không gọi pictureLoader (không đọc DB, không đọc file).
+     * Miss mà version khớp ảnh hiện tại -> đọc ảnh (hoặc variant) vào cache rồi trả; còn lại đi đường serveVersioned.
+     */
+    public ResponseEntity<Resource> serveCached(ImageCache.Kind kind, Integer id, String requestedVersion,
+                                                ImageVariant variant, boolean publicCache, WebRequest request,
+                                                Supplier<String> pictureLoader) {
+        ImageCache.CachedImage cached = requestedVersion == null
+                ? null : imageCache.get(kind, id, variant, requestedVersion);
+        if (cached == null) {
+            String value = pictureLoader.get();
+            String version = ImageBlobs.versionOf(value);
+            if (version == null || !version.equals(requestedVersion)) {
+                return serveVersioned(value, requestedVersion, variant, publicCache, request);
+            }
+            cached = loadForCache(value, version, variant);
+            if (cached == null) {
+                return serveVersioned(value, requestedVersion, variant, publicCache, request);
+            }
+            imageCache.put(kind, id, variant, cached);
+        }
+
+        String etag = cached.etag();
+        CacheControl cacheControl = cacheControl(true, publicCache);
+        if (request != null && matchesIfNoneMatch(request, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ok(new ByteArrayResource(cached.bytes()), MediaType.parseMediaType(cached.mimeType()), etag,
+                cacheControl, cached.lastModified(), null);
+    }
+
+    // Đọc ảnh (hoặc variant đã sinh) vào bộ nhớ; null nếu chưa có / quá lớn -> caller đi đường không cache
+    private ImageCache.CachedImage loadForCache(String value, String version, ImageVariant variant) {
+        try {
+            if (!ImageBlobs.isRef(value)) {
+                byte[] bytes = ImageUtil.decodeBase64(value);
+                if (bytes == null || bytes.length == 0 || !imageCache.accepts(bytes.length)) return null;
+                // Ảnh base64 cũ không có variant: luôn là bản gốc
+                return new ImageCache.CachedImage(version, etag(version, null), bytes,
+                        ImageUtil.detectImageMimeType(bytes), -1);
+            }
+            if (!BlobStore.isValidHash(version)) return null;
+            Resource resource = variant != null ? imageVariants.find(version, variant) : blobStore.get(version);
+            if (resource == null || !resource.exists() || !imageCache.accepts(resource.contentLength())) return null;
+            byte[] bytes;
+            try (InputStream in = resource.getInputStream()) {
+                bytes = in.readAllBytes();
+            }
+            String mimeType = variant != null ? MediaType.IMAGE_JPEG_VALUE : ImageUtil.detectImageMimeType(bytes);
+            return new ImageCache.CachedImage(version, etag(version, variant), bytes, mimeType, lastModified(resource));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String etag(String version, ImageVariant variant) {
+        return variant == null
+                ? "\"" + version + "\""
+                : "\"" + version + "-" + variant.name().toLowerCase() + "\"";
+    }
+
+    private static CacheControl cacheControl(boolean immutable, boolean publicCache) {
+        CacheControl cacheControl = immutable
+                ? CacheControl.maxAge(IMMUTABLE_DAYS, TimeUnit.DAYS).immutable()
+                : CacheControl.noCache();
+        return publicCache ? cacheControl.cachePublic() : cacheControl.cachePrivate();
+    }
+
+    private ResponseEntity<Resource> respond(String value, String version, CacheControl cacheControl,
+                                             String fileName, WebRequest request) {
+        if (version == null) return ResponseEntity.notFound().build();
+
+        String etag = etag(version, null);
+        if (request != null && matchesIfNoneMatch(request, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
+        Resource body;
+        byte[] head;
+        long lastModified = -1;
+        try {
+            if (ImageBlobs.isRef(value)) {
+                if (!BlobStore.isValidHash(version)) return ResponseEntity.notFound().build();
+                body = blobStore.get(version);
+                if (!body.exists()) return ResponseEntity.notFound().build();
+                head = readHead(body);
+                lastModified = lastModified(body);
+            } else {
+                byte[] bytes = ImageUtil.decodeBase64(value);
+                if (bytes == null || bytes.length == 0) return ResponseEntity.notFound().build();
+                body = new ByteArrayResource(bytes);
+                head = bytes;
+            }
+        } catch (IOException e) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ok(body, MediaType.parseMediaType(ImageUtil.detectImageMimeType(head)), etag, cacheControl,
+                lastModified, fileName);
+    }
+
+    private static ResponseEntity<Resource> ok(Resource body, MediaType contentType, String etag,
+                                               CacheControl cacheControl, long lastModified, String fileName) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(contentType)
+                .eTag(etag)
+                .cacheControl(cacheControl);
+        if (lastModified > 0) builder.lastModified(lastModified);
+        if (fileName != null) {
+            builder.headers(h -> h.setContentDisposition(ContentDisposition.inline().filename(fileName).build()));
+        }
+        return builder.body(body);
+    }
+
+    private static boolean matchesIfNoneMatch(WebRequest request, String etag) {
+        String[] headers = request.getHeaderValues(HttpHeaders.IF_NONE_MATCH);
+        if (headers == null) return false;
+        for (String header : headers) {
+            for (String tag : header.split(",")) {
+                String t = tag.trim();
+                if (t.startsWith("W/")) t = t.substring(2);
+                if (t.equals("*") || t.equals(etag)) return true;
+            }
+        }
+        return false;
+    }
+
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] readHead(Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return in.readNBytes(SNIFF_BYTES);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.evrental.evrentalsystem.storage;
+
+/**
+ * URL ảnh xe / mẫu xe cho các API danh sách (thay cho base64 inline).
+ * URL gắn version của ảnh (ImageBlobs.versionOf) nên ImageResponder cache được immutable;
+ * thêm ?variant=thumbnail|card|full để lấy bản thu nhỏ.
+ * Nhận cả giá trị cột đầy đủ lẫn phần đầu cột (query chỉ lấy 71 ký tự = độ dài tham chiếu):
+ * ảnh base64 cũ bị cắt thì version không khớp, endpoint trả no-cache thay vì immutable.
+ */
+public final class ImageUrls {
+
+    private static final String BASE_URL = "http://localhost:8084/EVRentalSystem/vehicle-management";
+
+    private ImageUrls() {
+    }
+
+    /** null nếu xe không có ảnh. */
+    public static String vehicleDetail(Integer vehicleDetailId, String picture) {
+        return url("image", vehicleDetailId, picture);
+    }
+
+    /** null nếu mẫu xe không có ảnh. */
+    public static String vehicleModel(Integer vehicleModelId, String picture) {
+        return url("model-image", vehicleModelId, picture);
+    }
+
+    private static String url(String endpoint, Integer id, String picture) {
+        String version = ImageBlobs.versionOf(picture);
+        if (id == null || version == null) return null;
+        return BASE_URL + "/" + endpoint + "/" + id + "/" + version;
+    }
+}
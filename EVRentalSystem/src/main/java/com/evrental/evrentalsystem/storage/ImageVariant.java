@@ -0,0 +1,42 @@
+package com.evrental.evrentalsystem.storage;
+
+/**
+ * Các kích thước ảnh JPEG sinh sẵn khi upload (ImageVariants). Ảnh được thu nhỏ giữ tỉ lệ
+ * cho vừa khung maxWidth x maxHeight; ảnh nhỏ hơn khung thì giữ nguyên kích thước.
+ */
+public enum ImageVariant {
+    THUMBNAIL(200, 150),
+    CARD(640, 480),
+    FULL(1600, 1200);
+
+    private final int maxWidth;
+    private final int maxHeight;
+
+    ImageVariant(int maxWidth, int maxHeight) {
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+
+    /** Tên trong BlobStore (dữ liệu dẫn xuất) và trong ETag, vd "card.jpg". */
+    public String fileName() {
+        return name().toLowerCase() + ".jpg";
+    }
+
+    /** Giá trị tham số ?variant= (không phân biệt hoa thường); null/rỗng -> null (ảnh gốc). */
+    public static ImageVariant parse(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("variant không hợp lệ: " + value + " (thumbnail|card|full)");
+        }
+    }
+}
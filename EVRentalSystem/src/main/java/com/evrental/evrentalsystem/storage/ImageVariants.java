@@ -0,0 +1,198 @@
+package com.evrental.evrentalsystem.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sinh các bản JPEG thu nhỏ (ImageVariant) cho ảnh trong BlobStore, lưu thành dữ liệu dẫn xuất của blob gốc.
+ * - Gọi generateAsync ngay sau khi upload; việc decode/resize chạy trên pool giới hạn (image.variants.threads),
+ *   hàng đợi có giới hạn (image.variants.queue-size), đầy thì bỏ qua và sinh lại khi có người xem.
+ * - Ảnh quá lớn (image.variants.max-pixels) không decode để tránh hết heap.
+ * - Decode 1 lần, thu nhỏ lần lượt FULL -> CARD -> THUMBNAIL từ kết quả trước.
+ */
+@Slf4j
+@Component
+public class ImageVariants {
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final BlobStore blobStore;
+    private final long maxPixels;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor workers;
+
+    public ImageVariants(BlobStore blobStore,
+                         @Value("${image.variants.threads:2}") int threads,
+                         @Value("${image.variants.queue-size:100}") int queueSize,
+                         @Value("${image.variants.max-pixels:40000000}") long maxPixels) {
+        this.blobStore = blobStore;
+        this.maxPixels = maxPixels;
+        AtomicInteger seq = new AtomicInteger();
+        int n = Math.max(1, threads);
+        this.workers = new ThreadPoolExecutor(n, n, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                r -> {
+                    Thread t = new Thread(r, "image-variants-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                // Hàng đợi đầy -> bỏ task; lần xem sau (find) sẽ xếp hàng lại
+                (task, executor) -> pending.remove(((VariantTask) task).hash));
+    }
+
+    /** Xếp hàng sinh variant cho giá trị cột ảnh vừa lưu; base64 cũ (không phải tham chiếu blob) bị bỏ qua. */
+    public void generateAsync(String value) {
+        String hash = ImageBlobs.hashOf(value);
+        if (hash == null || !BlobStore.isValidHash(hash) || !pending.add(hash)) return;
+        workers.execute(new VariantTask(hash));
+    }
+
+    private final class VariantTask implements Runnable {
+        private final String hash;
+
+        private VariantTask(String hash) {
+            this.hash = hash;
+        }
+
+        @Override
+        public void run() {
+            try {
+                generate(hash);
+            } catch (Exception e) {
+                log.warn("Không sinh được ảnh thu nhỏ cho blob {}: {}", hash, e.getMessage());
+            } finally {
+                pending.remove(hash);
+            }
+        }
+    }
+
+    /** Variant đã sinh của blob; chưa có thì xếp hàng sinh và trả null (caller dùng ảnh gốc). */
+    public Resource find(String hash, ImageVariant variant) {
+        Resource resource = blobStore.getDerived(hash, variant.fileName());
+        if (resource.exists()) return resource;
+        generateAsync(ImageBlobs.REF_PREFIX + hash);
+        return null;
+    }
+
+    void generate(String hash) throws IOException {
+        boolean missing = false;
+        for (ImageVariant v : ImageVariant.values()) {
+            if (!blobStore.getDerived(hash, v.fileName()).exists()) missing = true;
+        }
+        if (!missing) return;
+
+        Resource source = blobStore.get(hash);
+        if (!source.exists()) return;
+        BufferedImage image;
+        try (InputStream in = source.getInputStream()) {
+            image = decode(in);
+        }
+        if (image == null) {
+            log.debug("Blob {} không phải ảnh ImageIO đọc được, bỏ qua", hash);
+            return;
+        }
+
+        // ImageVariant khai báo từ nhỏ tới lớn -> duyệt ngược để thu nhỏ dần từ kết quả trước
+        ImageVariant[] variants = ImageVariant.values();
+        BufferedImage current = image;
+        for (int i = variants.length - 1; i >= 0; i--) {
+            ImageVariant v = variants[i];
+            current = resize(current, v.getMaxWidth(), v.getMaxHeight());
+            blobStore.putDerived(hash, v.fileName(), new ByteArrayInputStream(encodeJpeg(current)));
+        }
+    }
+
+    private BufferedImage decode(InputStream in) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            if (iis == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    log.warn("Ảnh {} pixel vượt giới hạn {}, không sinh ảnh thu nhỏ", pixels, maxPixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Thu nhỏ giữ tỉ lệ cho vừa khung, mỗi bước tối đa 1/2 để bilinear không bị răng cưa; nền trắng thay alpha. */
+    static BufferedImage resize(BufferedImage src, int maxWidth, int maxHeight) {
+        double scale = Math.min(1.0, Math.min((double) maxWidth / src.getWidth(), (double) maxHeight / src.getHeight()));
+        int targetW = Math.max(1, (int) Math.round(src.getWidth() * scale));
+        int targetH = Math.max(1, (int) Math.round(src.getHeight() * scale));
+
+        BufferedImage current = src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        do {
+            w = Math.max(targetW, w / 2);
+            h = Math.max(targetH, h / 2);
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, w, h);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != targetW || h != targetH);
+        return current;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,107 @@
+package com.evrental.evrentalsystem.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Backend lưu blob trên file system: {root}/ab/cd/abcd...(64 ký tự hex),
+ * dữ liệu dẫn xuất ở {root}/derived/ab/cd/abcd.../{name}.
+ * Ghi vào file tạm trong {root}/tmp đồng thời tính SHA-256, sau đó rename sang đường dẫn đích
+ * (rename cùng ổ đĩa là nguyên tử nên người đọc không bao giờ thấy file ghi dở).
+ */
+@Component
+@ConditionalOnProperty(name = "blob.store.type", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStore implements BlobStore {
+
+    private final Path root;
+    private final Path tmp;
+
+    public LocalBlobStore(@Value("${blob.store.local.root:data/blobs}") String root) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.tmp = this.root.resolve("tmp");
+    }
+
+    @Override
+    public String put(InputStream in) throws IOException {
+        Files.createDirectories(tmp);
+        Path part = Files.createTempFile(tmp, "blob-", ".part");
+        try {
+            MessageDigest sha256 = sha256();
+            Files.copy(new DigestInputStream(in, sha256), part, StandardCopyOption.REPLACE_EXISTING);
+            String hash = HexFormat.of().formatHex(sha256.digest());
+
+            Path target = path(hash);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                // Blob trùng nội dung được ghi song song: ai rename sau cũng ghi đè cùng nội dung
+                Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return hash;
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    @Override
+    public Resource get(String hash) {
+        checkHash(hash);
+        return new FileSystemResource(path(hash));
+    }
+
+    @Override
+    public void putDerived(String hash, String name, InputStream in) throws IOException {
+        Path target = derivedPath(hash, name);
+        Files.createDirectories(tmp);
+        Path part = Files.createTempFile(tmp, "derived-", ".part");
+        try {
+            Files.copy(in, part, StandardCopyOption.REPLACE_EXISTING);
+            Files.createDirectories(target.getParent());
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    @Override
+    public Resource getDerived(String hash, String name) {
+        return new FileSystemResource(derivedPath(hash, name));
+    }
+
+    private Path path(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private Path derivedPath(String hash, String name) {
+        checkHash(hash);
+        if (!BlobStore.isValidDerivedName(name)) {
+            throw new IllegalArgumentException("Tên dữ liệu dẫn xuất không hợp lệ: " + name);
+        }
+        return root.resolve("derived").resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4))
+                .resolve(hash).resolve(name);
+    }
+
+    private static void checkHash(String hash) {
+        if (!BlobStore.isValidHash(hash)) {
+            throw new IllegalArgumentException("Blob hash không hợp lệ: " + hash);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.evrental.evrentalsystem.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Chạy action sau khi transaction hiện tại commit thành công (rollback thì bỏ); không có transaction thì chạy ngay.
+ * Dùng cho cache / chỉ mục trong bộ nhớ: chỉ được thấy dữ liệu đã commit.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -1,33 +1,18 @@
 package com.evrental.evrentalsystem.util;
 
 import org.springframework.http.*;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
 import java.util.Base64;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Utility cho xử lý ảnh lưu dưới dạng base64.
  * - decodeBase64: loại bỏ prefix "data:...;base64," nếu có và decode.
- * - detectImageMimeType: nhận diện png/jpg/gif bằng magic bytes.
+ * - detectImageMimeType: nhận diện png/jpg/gif/webp/bmp bằng magic bytes.
  * - buildImageResponse: tạo ResponseEntity<byte[]> với header phù hợp.
  */
 public class ImageUtil {
 
-    public static String encodeToBase64(MultipartFile file) {
-        if (file == null || file.isEmpty()) {
-            throw new RuntimeException("File upload bị trống!");
-        }
-        try {
-            byte[] bytes = file.getBytes();
-            return Base64.getEncoder().encodeToString(bytes);
-        } catch (IOException e) {
-            String name = file.getOriginalFilename();
-            throw new RuntimeException("Không thể đọc file: " + (name != null ? name : "unknown"), e);
-        }
-    }
-
     public static byte[] decodeBase64(String base64) {
         if (base64 == null || base64.trim().isEmpty()) return null;
         String raw = base64;
@@ -56,6 +41,13 @@ public class ImageUtil {
         if ((data[0] & 0xFF) == 0x47 && (data[1] & 0xFF) == 0x49 &&
                 (data[2] & 0xFF) == 0x46 && (data[3] & 0xFF) == 0x38) return "image/gif";
 
+        // WEBP: "RIFF" ???? "WEBP"
+        if (data.length >= 12 && data[0] == 'R' && data[1] == 'I' && data[2] == 'F' && data[3] == 'F' &&
+                data[8] == 'W' && data[9] == 'E' && data[10] == 'B' && data[11] == 'P') return "image/webp";
+
+        // BMP: 42 4D
+        if (data[0] == 'B' && data[1] == 'M') return "image/bmp";
+
         return "application/octet-stream";
     }
 
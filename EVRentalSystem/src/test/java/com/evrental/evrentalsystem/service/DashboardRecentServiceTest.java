@@ -0,0 +1,97 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.entity.*;
+import com.evrental.evrentalsystem.enums.BookingStatus;
+import com.evrental.evrentalsystem.enums.VehicleStatus;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * /api/admin/overview/recent-rentals phải chạy đúng 1 câu SQL, không phụ thuộc số dòng trả về.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:recent;MODE=MSSQLServer;DATABASE_TO_UPPER=FALSE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(DashboardRecentService.class)
+class DashboardRecentServiceTest {
+
+    @Autowired TestEntityManager em;
+    @Autowired EntityManagerFactory emf;
+    @Autowired DashboardRecentService service;
+
+    @BeforeEach
+    void seed() {
+        Station station = new Station(null, "Station 1", "Address 1", "10.8,106.7");
+        em.persist(station);
+        VehicleModel model = new VehicleModel(null, "VinFast", "VF 8", 950.0, 5, null, null);
+        em.persist(model);
+
+        for (int i = 1; i <= 20; i++) {
+            User renter = new User();
+            renter.setUsername("renter" + i);
+            renter.setPassword("123456");
+            renter.setFullName("Renter " + i);
+            renter.setRole("RENTER");
+            em.persist(renter);
+
+            VehicleDetail vd = new VehicleDetail(null, "51A-" + (10000 + i), model, station,
+                    "42 kWh", 1000, null, VehicleStatus.RENTED, "Trắng", null);
+            em.persist(vd);
+
+            Booking b = new Booking();
+            b.setRenter(renter);
+            b.setVehicleModel(model);
+            b.setStation(station);
+            b.setVehicleDetail(vd);
+            b.setCreatedAt(LocalDateTime.now().minusMinutes(i));
+            b.setStartTime(LocalDateTime.now());
+            b.setExpectedReturnTime(LocalDateTime.now().plusDays(1));
+            b.setDeposit(500_000.0);
+            b.setStatus(BookingStatus.Completed);
+            em.persist(b);
+
+            if (i % 2 == 0) {
+                em.persist(new Payment(null, b, 1_000_000.0 + i, LocalDateTime.now()));
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void recentRentalsIssuesSingleStatement() {
+        Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+
+        var res = service.recent(10);
+
+        assertEquals(1, stats.getPrepareStatementCount());
+        assertEquals(10, res.getRentals().size());
+
+        var first = res.getRentals().get(0);
+        assertEquals(1L, first.getRentalId());
+        assertEquals("Renter 1", first.getCustomerName());
+        assertEquals("51A-10001", first.getVehicleCode());
+        assertNull(first.getPrice());
+        assertEquals(1_000_002L, res.getRentals().get(1).getPrice());
+    }
+}
@@ -0,0 +1,100 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.entity.*;
+import com.evrental.evrentalsystem.enums.BookingStatus;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * topStations phải chạy đúng 1 câu SQL dù số trạm tăng từ 10 lên 200 (trước đây 2N+1 câu).
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:topstations;MODE=MSSQLServer;DATABASE_TO_UPPER=FALSE;CASE_INSENSITIVE_IDENTIFIERS=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(DashboardStationService.class)
+class DashboardStationServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 1, 15);
+
+    @Autowired TestEntityManager em;
+    @Autowired EntityManagerFactory emf;
+    @Autowired DashboardStationService service;
+    @MockitoBean FleetInventory fleetInventory;
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 200, 1000})
+    void topStationsIssuesOneQueryRegardlessOfStationCount(int stationCount) {
+        List<Station> stations = seed(stationCount);
+
+        Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+
+        var res = service.topStations(5, "2025-01-01", "2025-01-31");
+
+        assertEquals(1, stats.getPrepareStatementCount());
+        assertEquals(5, res.getStations().size());
+        // Trạm cuối có nhiều lượt thuê nhất, hoà lượt thì doanh thu cao hơn đứng trước
+        var first = res.getStations().get(0);
+        assertEquals(stations.get(stationCount - 1).getStationId(), first.getStationId());
+        assertEquals(5, first.getRentals());
+        assertTrue(res.getStations().get(0).getRentals() >= res.getStations().get(4).getRentals());
+    }
+
+    // Trạm i có (i % 5 + 1) booking hoàn tất trong tháng và doanh thu i * 1000 ngày DAY
+    private List<Station> seed(int stationCount) {
+        VehicleModel model = new VehicleModel(null, "VinFast", "VF 8", 950.0, 5, null, null);
+        em.persist(model);
+        User renter = new User();
+        renter.setUsername("renter");
+        renter.setPassword("123456");
+        renter.setFullName("Renter");
+        renter.setRole("RENTER");
+        em.persist(renter);
+
+        List<Station> stations = new ArrayList<>();
+        for (int i = 0; i < stationCount; i++) {
+            Station station = new Station(null, "Station " + i, "Address", "10.8,106.7");
+            em.persist(station);
+            stations.add(station);
+            for (int b = 0; b <= i % 5; b++) {
+                Booking booking = new Booking();
+                booking.setRenter(renter);
+                booking.setVehicleModel(model);
+                booking.setStation(station);
+                booking.setStartTime(DAY.atTime(9, 0));
+                booking.setExpectedReturnTime(DAY.atTime(9, 0).plusDays(1));
+                booking.setCreatedAt(LocalDateTime.of(2025, 1, 1, 0, 0));
+                booking.setDeposit(500_000.0);
+                booking.setStatus(BookingStatus.Completed);
+                em.persist(booking);
+            }
+            em.persist(new DailyRevenue(DAY, station.getStationId(), i * 1000.0, 1));
+        }
+        em.flush();
+        em.clear();
+        return stations;
+    }
+}
@@ -0,0 +1,193 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.entity.*;
+import com.evrental.evrentalsystem.enums.BookingStatus;
+import com.evrental.evrentalsystem.enums.VehicleStatus;
+import com.evrental.evrentalsystem.repository.*;
+import com.evrental.evrentalsystem.request.BookingRequest;
+import com.evrental.evrentalsystem.response.user.BookingResponseDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test: nhiều luồng cùng đặt / cùng gán xe không bao giờ cấp trùng 1 xe (hoặc vượt số xe của trạm).
+ * Không bọc test trong transaction để mỗi luồng commit thật như request thật.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reservation;MODE=MSSQLServer;DATABASE_TO_UPPER=FALSE;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.datasource.hikari.maximum-pool-size=20",
+        "reservation.max-attempts=5"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({BookingService.class, VehicleReservationService.class, VehicleAvailabilityIndex.class,
+        FleetChangePublisher.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VehicleReservationServiceTest {
+
+    private static final int THREADS = 16;
+    private static final int VEHICLES = 3;
+
+    @Autowired BookingService bookingService;
+    @Autowired VehicleReservationService reservationService;
+    @Autowired VehicleAvailabilityIndex availabilityIndex;
+    @Autowired UserRepository userRepository;
+    @Autowired StationRepository stationRepository;
+    @Autowired VehicleModelRepository vehicleModelRepository;
+    @Autowired VehicleDetailRepository vehicleDetailRepository;
+    @Autowired BookingRepository bookingRepository;
+    @MockitoBean ActivityJournal activityJournal;
+
+    private Station station;
+    private VehicleModel model;
+    private final List<User> renters = new ArrayList<>();
+    private final List<VehicleDetail> vehicles = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        station = stationRepository.save(new Station(null, "Station " + System.nanoTime(), "Address", "10.8,106.7"));
+        model = vehicleModelRepository.save(new VehicleModel(null, "VinFast", "VF 8", 950.0, 5, null, null));
+        for (int i = 0; i < THREADS; i++) {
+            User renter = new User();
+            renter.setUsername("renter-" + System.nanoTime());
+            renter.setPassword("123456");
+            renter.setFullName("Renter " + i);
+            renter.setRole("RENTER");
+            renters.add(userRepository.save(renter));
+        }
+        for (int i = 0; i < VEHICLES; i++) {
+            vehicles.add(vehicleDetailRepository.save(new VehicleDetail(null, "51A-" + System.nanoTime(), model,
+                    station, "42 kWh", 1000, null, VehicleStatus.AVAILABLE, "Trắng", null)));
+        }
+        availabilityIndex.rebuild();
+        assertTrue(availabilityIndex.isReady());
+    }
+
+    @Test
+    void concurrentCreateBookingNeverExceedsFleet() throws Exception {
+        LocalDateTime start = LocalDateTime.now().plusDays(3).withNano(0);
+        List<BookingResponseDTO> results = runConcurrently(i -> {
+            BookingRequest request = new BookingRequest();
+            request.setUserId(renters.get(i).getUserId());
+            request.setVehicleModelId(model.getVehicleId());
+            request.setStationId(station.getStationId());
+            request.setStartTime(start);
+            request.setExpectedReturnTime(start.plusDays(2));
+            request.setDeposit(500_000.0);
+            return bookingService.createBooking(request);
+        });
+
+        long created = results.stream().filter(r -> r.getBookingId() != null).count();
+        assertEquals(VEHICLES, created);
+        assertEquals(VEHICLES, bookingRepository.findByStation_StationId(station.getStationId()).size());
+
+        // Khoảng thời gian khác không bị ảnh hưởng
+        assertTrue(availabilityIndex.hasCapacity(station.getStationId(), model.getVehicleId(),
+                start.plusDays(2), start.plusDays(3)));
+    }
+
+    @Test
+    void concurrentAssignmentAllocatesVehicleOnce() throws Exception {
+        List<Integer> bookingIds = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Booking b = new Booking();
+            b.setRenter(renters.get(i));
+            b.setVehicleModel(model);
+            b.setStation(station);
+            b.setStartTime(LocalDateTime.now().plusDays(1));
+            b.setExpectedReturnTime(LocalDateTime.now().plusDays(2));
+            b.setDeposit(500_000.0);
+            b.setStatus(BookingStatus.Pending_Vehicle_Pickup);
+            bookingIds.add(bookingRepository.save(b).getBookingId());
+        }
+
+        AtomicInteger conflicts = new AtomicInteger();
+        // Không truyền key khoá: chỉ dựa vào @Version như khi chạy nhiều instance.
+        // Mỗi luồng bắt đầu từ 1 xe khác nhau rồi lần lượt thử các xe còn lại
+        List<Boolean> results = runConcurrently(i -> reservationService.execute(List.of(), () -> {
+            for (int k = 0; k < VEHICLES; k++) {
+                VehicleDetail vd = vehicleDetailRepository.findById(vehicles.get((i + k) % VEHICLES).getId())
+                        .orElseThrow();
+                if (vd.getStatus() != VehicleStatus.AVAILABLE) continue;
+                Booking b = bookingRepository.findById(bookingIds.get(i)).orElseThrow();
+                b.setVehicleDetail(vd);
+                vd.setStatus(VehicleStatus.RENTED);
+                bookingRepository.save(b);
+                vehicleDetailRepository.save(vd);
+                return true;
+            }
+            return false;
+        }), conflicts);
+
+        // Hết lượt thử (conflicts) là kết quả hợp lệ; bất biến là mỗi xe tối đa 1 người giữ và đủ xe được cấp
+        long winners = results.stream().filter(Boolean::booleanValue).count();
+        Map<Integer, Long> holdersByVehicle = bookingRepository.findByStation_StationId(station.getStationId()).stream()
+                .filter(b -> b.getVehicleDetail() != null)
+                .collect(Collectors.groupingBy(b -> b.getVehicleDetail().getId(), Collectors.counting()));
+        holdersByVehicle.forEach((vehicleId, holders) ->
+                assertEquals(1L, holders, "Xe " + vehicleId + " bị gán cho nhiều booking"));
+        assertEquals(VEHICLES, winners);
+        assertEquals(VEHICLES, holdersByVehicle.size());
+        assertTrue(winners + conflicts.get() <= THREADS);
+    }
+
+    private <T> List<T> runConcurrently(IntFunctionWithException<T> task) throws Exception {
+        return runConcurrently(task, new AtomicInteger());
+    }
+
+    // Các luồng chờ cùng 1 vạch xuất phát rồi chạy đồng thời; OptimisticLockingFailure sau khi hết lượt thử được đếm riêng
+    private <T> List<T> runConcurrently(IntFunctionWithException<T> task, AtomicInteger gaveUp) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int n = i;
+                futures.add(pool.submit(() -> {
+                    go.await();
+                    try {
+                        return task.apply(n);
+                    } catch (org.springframework.dao.OptimisticLockingFailureException e) {
+                        gaveUp.incrementAndGet();
+                        return null;
+                    }
+                }));
+            }
+            go.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> f : futures) {
+                T r = f.get(60, TimeUnit.SECONDS);
+                if (r != null) results.add(r);
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface IntFunctionWithException<T> {
+        T apply(int i) throws Exception;
+    }
+}
@@ -0,0 +1,232 @@
+package com.evrental.evrentalsystem.service;
+
+import com.evrental.evrentalsystem.entity.Station;
+import com.evrental.evrentalsystem.entity.VehicleDetail;
+import com.evrental.evrentalsystem.entity.VehicleModel;
+import com.evrental.evrentalsystem.enums.VehicleStatus;
+import com.evrental.evrentalsystem.event.VehicleChangedEvent;
+import com.evrental.evrentalsystem.event.VehicleModelChangedEvent;
+import com.evrental.evrentalsystem.event.VehicleStatusChangedEvent;
+import com.evrental.evrentalsystem.repository.VehicleDetailRepository;
+import com.evrental.evrentalsystem.repository.projection.VehicleListProjection;
+import com.evrental.evrentalsystem.repository.projection.VehicleSearchProjection;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * VehicleSearchIndex: kết quả phải giống hệt LIKE '%q%' trên 4 cột (quét tuần tự), danh sách admin chỉ lấy đúng
+ * các id của trang thay vì chạy searchVehicleList, và chỉ mục theo kịp thay đổi xe / model.
+ * Chạy trên 2.000 xe; đo thời gian với 100.000 xe nằm trong Benchmark (tag benchmark).
+ */
+class VehicleSearchIndexTest {
+
+    private static final Logger log = LoggerFactory.getLogger(VehicleSearchIndexTest.class);
+    private static final int VEHICLES = 2_000;
+    private static final int BENCHMARK_VEHICLES = 100_000;
+    private static final String[][] MODELS = {
+            {"VinFast", "VF 3"}, {"VinFast", "VF 5 Plus"}, {"VinFast", "VF 6"}, {"VinFast", "VF 7"},
+            {"VinFast", "VF 8"}, {"VinFast", "VF 9"}, {"VinFast", "VF e34"}, {"Tesla", "Model 3"},
+            {"Tesla", "Model Y"}, {"BYD", "Atto 3"}, {"BYD", "Seal"}, {"Hyundai", "Ioniq 5"}};
+    private static final String[] STATIONS = {"Thảo Điền", "Tân Cảng", "Quận 1", "Quận 7", "Gò Vấp",
+            "Bình Tân", "Phú Nhuận", "Thủ Đức", "Bình Thạnh", "Quận 3"};
+    private static final VehicleStatus[] STATUSES = {VehicleStatus.AVAILABLE, VehicleStatus.AVAILABLE,
+            VehicleStatus.RENTED, VehicleStatus.FIXING, VehicleStatus.DELETED};
+
+    private static List<VehicleSearchProjection> rows;
+    private static VehicleSearchIndex index;
+
+    @BeforeAll
+    static void buildIndex() {
+        rows = fleet(VEHICLES);
+        index = indexOf(rows);
+        assertTrue(index.isReady());
+    }
+
+    @ParameterizedTest
+    @CsvSource(nullValues = "null", value = {
+            "123.4,  null,      null, null,    null",
+            "51a,    null,      null, null,    null",
+            "vf 8,   null,      null, null,    null",
+            "tesla,  AVAILABLE, null, null,    null",
+            "quận,   null,      3,    null,    null",
+            "ioniq,  null,      null, hyundai, null",
+            "7,      rented,    null, null,    vf",
+            "zz-9,   null,      null, null,    null"})
+    void matchesLikeScan(String q, String status, Integer stationId, String brand, String model) {
+        int offset = 20, limit = 10;
+        VehicleSearchIndex.Result result = index.search(q, status, stationId, brand, model, offset, limit);
+        List<Integer> expected = likeScan(rows, q, status, stationId, brand, model);
+
+        assertEquals(expected.size(), result.total());
+        assertEquals(expected.subList(Math.min(offset, expected.size()), Math.min(offset + limit, expected.size())),
+                result.ids());
+    }
+
+    @Test
+    void vehicleListFetchesOnlyPageIds() {
+        VehicleDetailRepository repo = mock(VehicleDetailRepository.class);
+        when(repo.findVehicleListByIds(anyCollection())).thenAnswer(inv -> {
+            Collection<Integer> ids = inv.getArgument(0);
+            return ids.stream().map(VehicleSearchIndexTest::listRow).toList();
+        });
+        var service = new VehicleAdminServiceImpl(repo, null, null, null, null, index);
+
+        var page = service.getVehicleList("VinFast", null, null, null, null, PageRequest.of(3, 10));
+
+        assertEquals(10, page.getContent().size());
+        assertEquals(likeScan(rows, "vinfast", null, null, null, null).size(), page.getTotalElements());
+        verify(repo, never()).searchVehicleList(any(), any(), any(), any(), any(), any());
+        verify(repo).findVehicleListByIds(argThat(ids -> ids.size() == 10));
+    }
+
+    @Test
+    void followsVehicleAndModelChanges() {
+        VehicleDetailRepository repo = mock(VehicleDetailRepository.class);
+        when(repo.findAllForSearch()).thenReturn(List.of(row(1, "51A-111.11", VehicleStatus.AVAILABLE, 1, 1)));
+        VehicleSearchIndex small = new VehicleSearchIndex(repo);
+        small.rebuild();
+
+        // Sự kiện xe chỉ mang id trạm / model: tên lấy từ State (model mới được báo qua VehicleModelChangedEvent trước)
+        small.onModelChanged(new VehicleModelChangedEvent(2, "Tesla", "Model 3", false));
+        VehicleModel vm = new VehicleModel(2, null, null, 1.0, 5, null, null);
+        Station st = new Station(1, null, null, null);
+        small.onVehicleChanged(VehicleChangedEvent.of(
+                new VehicleDetail(2, "30K-999.99", vm, st, null, 0, null, VehicleStatus.AVAILABLE, null, 0L)));
+        assertEquals(List.of(2), small.search("999", null, null, null, null, 0, 10).ids());
+        assertEquals(List.of(2), small.search("model 3", null, null, null, null, 0, 10).ids());
+        assertEquals(List.of(1, 2), small.search("thảo", null, null, null, null, 0, 10).ids());
+
+        small.onModelChanged(new VehicleModelChangedEvent(2, "Tesla", "Cybertruck", false));
+        assertEquals(0, small.search("model 3", null, null, null, null, 0, 10).total());
+        assertEquals(List.of(2), small.search("cyber", null, null, null, null, 0, 10).ids());
+
+        small.onVehicleStatusChanged(new VehicleStatusChangedEvent(1, VehicleStatus.DELETED));
+        assertEquals(0, small.search("51a", null, null, null, null, 0, 10).total());
+    }
+
+    /** Đo thời gian chỉ mục vs quét tuần tự trên 100.000 xe: mặc định bị bỏ qua (surefire excludedGroups). */
+    @Nested
+    @Tag("benchmark")
+    @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+    class Benchmark {
+
+        private List<VehicleSearchProjection> bigRows;
+        private VehicleSearchIndex bigIndex;
+
+        @BeforeAll
+        void buildBigIndex() {
+            bigRows = fleet(BENCHMARK_VEHICLES);
+            long t0 = System.nanoTime();
+            bigIndex = indexOf(bigRows);
+            log.debug("VehicleSearchIndex: vehicles={} build={}ms", BENCHMARK_VEHICLES,
+                    (System.nanoTime() - t0) / 1_000_000);
+        }
+
+        @ParameterizedTest
+        @CsvSource({"123.4", "51a", "vf 8", "tesla", "quận", "zz-9"})
+        void searchTiming(String q) {
+            // Lấy lần nhanh nhất trong vài lần chạy để bỏ qua JIT khởi động
+            VehicleSearchIndex.Result result = null;
+            List<Integer> expected = null;
+            long indexMicros = Long.MAX_VALUE, scanMicros = Long.MAX_VALUE;
+            for (int run = 0; run < 5; run++) {
+                long t0 = System.nanoTime();
+                result = bigIndex.search(q, null, null, null, null, 0, 10);
+                indexMicros = Math.min(indexMicros, (System.nanoTime() - t0) / 1_000);
+
+                t0 = System.nanoTime();
+                expected = likeScan(bigRows, q, null, null, null, null);
+                scanMicros = Math.min(scanMicros, (System.nanoTime() - t0) / 1_000);
+            }
+
+            log.debug("q={} matches={} index={}us scan={}us", q, expected.size(), indexMicros, scanMicros);
+            assertEquals(expected.size(), result.total());
+        }
+    }
+
+    // Biển số / model / trạm / trạng thái ngẫu nhiên (seed cố định)
+    private static List<VehicleSearchProjection> fleet(int size) {
+        Random rnd = new Random(42);
+        return IntStream.rangeClosed(1, size).mapToObj(id -> {
+            int m = rnd.nextInt(MODELS.length);
+            int s = rnd.nextInt(STATIONS.length);
+            String plate = String.format("%02d%c-%03d.%02d", 50 + rnd.nextInt(50), (char) ('A' + rnd.nextInt(26)),
+                    rnd.nextInt(1000), rnd.nextInt(100));
+            return row(id, plate, STATUSES[rnd.nextInt(STATUSES.length)], s + 1, m + 1);
+        }).toList();
+    }
+
+    private static VehicleSearchIndex indexOf(List<VehicleSearchProjection> fleet) {
+        VehicleDetailRepository repo = mock(VehicleDetailRepository.class);
+        when(repo.findAllForSearch()).thenReturn(fleet.stream()
+                .filter(r -> r.getStatus() != VehicleStatus.DELETED).toList());
+        VehicleSearchIndex built = new VehicleSearchIndex(repo);
+        built.rebuild();
+        return built;
+    }
+
+    // Tương đương searchVehicleList: lower(...) like lower('%q%') trên biển số / model / hãng / tên trạm
+    private static List<Integer> likeScan(List<VehicleSearchProjection> fleet, String q, String status,
+                                          Integer stationId, String brand, String model) {
+        String needle = q.toLowerCase(Locale.ROOT);
+        List<Integer> out = new ArrayList<>();
+        for (VehicleSearchProjection r : fleet) {
+            if (r.getStatus() == VehicleStatus.DELETED) continue;
+            if (status != null && !r.getStatus().name().equalsIgnoreCase(status)) continue;
+            if (stationId != null && !r.getStationId().equals(stationId)) continue;
+            if (brand != null && !r.getBrand().toLowerCase(Locale.ROOT).contains(brand.toLowerCase(Locale.ROOT))) continue;
+            if (model != null && !r.getModelName().toLowerCase(Locale.ROOT).contains(model.toLowerCase(Locale.ROOT))) continue;
+            if (r.getLicensePlate().toLowerCase(Locale.ROOT).contains(needle)
+                    || r.getModelName().toLowerCase(Locale.ROOT).contains(needle)
+                    || r.getBrand().toLowerCase(Locale.ROOT).contains(needle)
+                    || r.getStationName().toLowerCase(Locale.ROOT).contains(needle)) {
+                out.add(r.getVehicleDetailId());
+            }
+        }
+        return out;
+    }
+
+    private static VehicleSearchProjection row(int id, String plate, VehicleStatus status, int stationId, int modelId) {
+        return new VehicleSearchProjection() {
+            @Override public Integer getVehicleDetailId() { return id; }
+            @Override public String getLicensePlate() { return plate; }
+            @Override public VehicleStatus getStatus() { return status; }
+            @Override public Integer getStationId() { return stationId; }
+            @Override public String getStationName() { return "Cho thuê Xe điện VinFast - " + STATIONS[stationId - 1]; }
+            @Override public Integer getVehicleModelId() { return modelId; }
+            @Override public String getBrand() { return MODELS[modelId - 1][0]; }
+            @Override public String getModelName() { return MODELS[modelId - 1][1]; }
+        };
+    }
+
+    private static VehicleListProjection listRow(Integer id) {
+        return new VehicleListProjection() {
+            @Override public Integer getId() { return id; }
+            @Override public String getLicensePlate() { return null; }
+            @Override public String getModel() { return null; }
+            @Override public String getBrand() { return null; }
+            @Override public String getStatus() { return null; }
+            @Override public Integer getStationId() { return null; }
+            @Override public String getStationName() { return null; }
+            @Override public Integer getOdo() { return null; }
+            @Override public Integer getVehicleId() { return null; }
+            @Override public String getPicture() { return null; }
+            @Override public String getModelPicture() { return null; }
+        };
+    }
+}
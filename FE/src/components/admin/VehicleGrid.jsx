@@ -1,5 +1,6 @@
 import React, { useState, useEffect, useCallback } from 'react'
 import axios from 'axios'
+import { resolveVehicleImage } from '../../utils/vehicleImage'
 
 const VehicleGrid = () => {
   const [vehicles, setVehicles] = useState([])
@@ -58,10 +59,9 @@ const VehicleGrid = () => {
 
   // Get image source with fallback logic
   const getImageSrc = (v) => {
-    // 1. Ưu tiên: picture từ backend
-    if (v?.picture != null && v.picture !== '' && v.picture !== 'null') {
-      return `${BACKEND_BASE_URL}/carpic/${String(v.picture).trim()}`
-    }
+    // 1. Ưu tiên: picture từ backend (URL ảnh; tên file / base64 cũ vẫn được hỗ trợ)
+    const picture = resolveVehicleImage(v?.picture, { fileBase: `${BACKEND_BASE_URL}/carpic` })
+    if (picture) return picture
     // 2. Fallback: vehicleId từ backend
     const vehicleId = v?.vehicleId ?? v?.vehicle_id
     if (vehicleId != null && vehicleId !== '') {
@@ -2,6 +2,7 @@
 import { useNavigate } from "react-router-dom";
 import Header from "../components/Header";
 import Footer from "../components/Footer";
+import { resolveVehicleImage } from "../utils/vehicleImage";
 import "./CarPages.css";
 
 
@@ -10,19 +11,13 @@ const formatPrice = (price) => {
     const formatted = (price * 1000).toLocaleString("vi-VN");
     return `${formatted} VND/ngày`;
 };
-// Thêm hàm này ở bên ngoài các Component (ví dụ: ngay dưới formatPrice)
-const getCarImageSrc = (modelPicture) => {
-    if (!modelPicture) return "/anhxe/1.jpg";
-    if (modelPicture.toLowerCase().endsWith(".jpg")) {
-        return `/carpic/${modelPicture}`;
-    }
-    return `data:image/jpeg;base64,${modelPicture}`;
-};
+// Backend trả URL ảnh; tên file / base64 cũ vẫn được hỗ trợ
+const getCarImageSrc = (modelPicture) => resolveVehicleImage(modelPicture, { fallback: "/anhxe/1.jpg" });
 function CarCard({ car }) {
     const navigate = useNavigate();
 
     // GỌI HÀM XỬ LÝ ẢNH Ở ĐÂY
-    // Biến imageUrl sẽ chứa đường dẫn file hoặc chuỗi base64 hoàn chỉnh
+    // Biến imageUrl sẽ chứa URL ảnh, đường dẫn file hoặc data URI
     const imageUrl = getCarImageSrc(car.modelPicture);
 
     const handleViewDetails = () => {
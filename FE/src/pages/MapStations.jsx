@@ -2,6 +2,7 @@ import React, { useState, useRef, useEffect, useMemo } from 'react';
 import { useNavigate } from 'react-router-dom';
 import Header from '../components/Header';
 import { Search, MapPin, Car, Clock, Navigation, X } from "lucide-react";
+import { resolveVehicleImage } from '../utils/vehicleImage';
 import './MapStations.css';
 
 // Brand color
@@ -65,21 +66,8 @@ const centroidOf = (arr) => {
     return { lat, lng };
 };
 
-// --- THÊM ĐOẠN NÀY VÀO (Khoảng dòng 80) ---
-const getCarImageSrc = (image) => {
-    if (!image) return "/anhxe/default.jpg";
-
-    // Nếu là file ảnh (có đuôi .jpg)
-    if (image.toLowerCase().endsWith(".jpg")) {
-        // Nếu đã có đường dẫn tuyệt đối (ví dụ mock data)
-        if (image.startsWith("/")) return image;
-        // Nếu chỉ là tên file thì thêm folder
-        return `/carpic/${image}`;
-    }
-
-    // Ngược lại coi là Base64
-    return `data:image/jpeg;base64,${image}`;
-};
+// Backend trả URL ảnh; đường dẫn / tên file (mock data) và base64 cũ vẫn được hỗ trợ
+const getCarImageSrc = (image) => resolveVehicleImage(image, { fallback: "/anhxe/default.jpg" });
 
 const MapStations = () => {
     const [searchQuery, setSearchQuery] = useState("");
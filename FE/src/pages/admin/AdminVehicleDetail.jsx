@@ -179,6 +179,8 @@ const AdminVehicleDetail = () => {
 
     if (picture && picture !== '' && picture !== 'null') {
       const picStr = String(picture).trim()
+      // getVehicleById trả URL ảnh (ImageUrls): dùng luôn
+      if (/^(https?:)?\/\//i.test(picStr) || /^data:/i.test(picStr)) return picStr
       const hasExtension = picStr.match(/\.(jpg|jpeg|png|gif|webp)$/i)
       const backendSrc = hasExtension
         ? `${BACKEND_BASE_URL}/carpic/${picStr}`
@@ -0,0 +1,23 @@
+/**
+ * Resolves a vehicle / vehicle model picture returned by the backend to an <img> src.
+ * The backend now returns image URLs (ImageUrls); file names and legacy base64 values are still accepted.
+ * @param {string|null} value - picture value from the API
+ * @param {Object} [options]
+ * @param {string} [options.fallback] - src used when there is no picture
+ * @param {string} [options.fileBase] - folder prefix for bare file names (e.g. "1.jpg")
+ * @returns {string|null} image src
+ */
+export function resolveVehicleImage(value, { fallback = null, fileBase = "/carpic" } = {}) {
+  if (value == null) return fallback;
+  const v = String(value).trim();
+  if (!v || v === "null") return fallback;
+
+  // URL from the backend, absolute path or data URI: use as-is
+  if (/^(https?:)?\/\//i.test(v) || /^data:/i.test(v) || v.startsWith("/")) return v;
+
+  // Bare file name
+  if (/\.(jpg|jpeg|png|gif|webp)$/i.test(v)) return `${fileBase}/${v}`;
+
+  // Legacy inline base64
+  return `data:image/jpeg;base64,${v}`;
+}